@@ -1,7 +1,9 @@
 package com.hyperfresh.mcuniverse;
 
-import com.hyperfresh.mcuniverse.packets.PacketOutPlayerJoin;
-import com.hyperfresh.mcuniverse.packets.PacketOutPlayerLeave;
+import com.hyperfresh.mcuniverse.network.PresenceTracker;
+import com.hyperfresh.mcuniverse.packets.PacketInPlayerJoin;
+import com.hyperfresh.mcuniverse.packets.PacketInPlayerLeave;
+import com.hyperfresh.mcuniverse.server.UniverseProperty;
 import com.octopod.minecraft.BukkitConsole;
 import com.octopod.minecraft.BukkitPlayer;
 import com.octopod.util.minecraft.command.CommandManager;
@@ -62,13 +64,23 @@ public class BukkitListener implements Listener
 	@EventHandler
 	public void onPlayerJoin(PlayerJoinEvent event)
 	{
-		new PacketOutPlayerJoin(new BukkitPlayer(event.getPlayer())).broadcast();
+		BukkitPlayer player = new BukkitPlayer(event.getPlayer());
+		UniverseAPI.getInstance().invalidateState();
+		UniverseAPI.getInstance().getLocalProperties().invalidate(UniverseProperty.ONLINE_PLAYERS);
+		UniverseAPI.getInstance().getPlayerIndex().put(UniverseAPI.getInstance().getServerIdentifier(), player.getUUID(), player.getName());
+		PresenceTracker presence = UniverseAPI.getInstance().getPresenceTracker();
+		new PacketInPlayerJoin(player, presence.getEpoch(), presence.next()).broadcast();
 	}
 
 	@EventHandler
 	public void onPlayerLeave(PlayerQuitEvent event)
 	{
-		new PacketOutPlayerLeave(new BukkitPlayer(event.getPlayer())).broadcast();
+		BukkitPlayer player = new BukkitPlayer(event.getPlayer());
+		UniverseAPI.getInstance().invalidateState();
+		UniverseAPI.getInstance().getLocalProperties().invalidate(UniverseProperty.ONLINE_PLAYERS);
+		UniverseAPI.getInstance().getPlayerIndex().remove(UniverseAPI.getInstance().getServerIdentifier(), player.getUUID());
+		PresenceTracker presence = UniverseAPI.getInstance().getPresenceTracker();
+		new PacketInPlayerLeave(player, presence.getEpoch(), presence.next()).broadcast();
 //		if (QueueManager.instance.isQueued(event.getPlayer()
 //											   .getServerName())) {
 //			QueueManager.instance
@@ -1,5 +1,6 @@
 package com.hyperfresh.mcuniverse;
 
+import com.hyperfresh.mcuniverse.commands.NetworkCommands;
 import com.hyperfresh.mcuniverse.commands.ServerCommands;
 import com.octopod.minecraft.BukkitServer;
 import com.octopod.minecraft.MinecraftServer;
@@ -25,29 +26,30 @@ public class BukkitUniversePlugin extends JavaPlugin implements UniversePlugin
 	@Override
 	public void onEnable()
 	{
-		UniverseAPI.init(this);
-
-		UniverseAPI.getInstance().getCommandManager().registerCommands(new ServerCommands());
-
-		Bukkit.getPluginManager().registerEvents(new BukkitListener(), this);
-
+		//The config is loaded by init(), since most of what it sets up is configured by it
 		try
 		{
-			UniverseAPI.getInstance().reloadConfig();
+			UniverseAPI.init(this);
 		}
 		catch (IOException e)
 		{
-			UniverseAPI.getInstance().getInterface().console("Error Loading Config: " + e.getMessage());
+			getServerInterface().console("Error Loading Config: " + e.getMessage());
 			Bukkit.getPluginManager().disablePlugin(this);
+			return;
 		}
 
-		UniverseAPI.getInstance().getConnection().connect();
+		UniverseAPI.getInstance().getCommandManager().registerCommands(new ServerCommands());
+		UniverseAPI.getInstance().getCommandManager().registerCommands(new NetworkCommands());
+
+		Bukkit.getPluginManager().registerEvents(new BukkitListener(), this);
+
+		UniverseAPI.getInstance().connect();
 	}
 
 	@Override
 	public void onDisable()
 	{
-		UniverseAPI.getInstance().getConnection().disconnect();
+		UniverseAPI.getInstance().disconnect();
 		UniverseAPI.dinit();
 	}
 
@@ -89,6 +91,18 @@ public class BukkitUniversePlugin extends JavaPlugin implements UniversePlugin
 		return this.getDescription().getVersion();
 	}
 
+	@Override
+	public void runTask(Runnable task)
+	{
+		Bukkit.getScheduler().runTask(this, task);
+	}
+
+	@Override
+	public boolean isMainThread()
+	{
+		return Bukkit.isPrimaryThread();
+	}
+
 	@Override
 	public Connect getConnect()
 	{
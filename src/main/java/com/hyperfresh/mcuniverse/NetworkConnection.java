@@ -2,6 +2,8 @@ package com.hyperfresh.mcuniverse;
 
 import com.octopod.minecraft.MinecraftPlayer;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * @author Octopod - octopodsquad@gmail.com
  */
@@ -17,6 +19,13 @@ public interface NetworkConnection
 
 	public boolean isConnected();
 
+	/**
+	 * Attempts to reestablish a lost connection.
+	 * This is called by the ConnectionSupervisor with backoff while disconnected;
+	 * connections that reconnect on their own don't need to do anything.
+	 */
+	public default void reconnect() {}
+
 	/**
 	 * Attempts to send a message to a single server.
 	 *
@@ -34,5 +43,42 @@ public interface NetworkConnection
 	 */
 	public void broadcastMessage(String channel, String message);
 
-	public void sendPlayer(MinecraftPlayer player, String server);
+	/**
+	 * Attempts to send a message to a single server, and completes once the network has answered.
+	 * The future completes on a network thread; use the UniverseScheduler to move back onto the main thread.
+	 *
+	 * @param server the server's identifier
+	 * @param channel the channel
+	 * @param message the message
+	 * @return a future of whether the message was accepted
+	 */
+	public CompletableFuture<Boolean> sendMessageAsync(String server, String channel, String message);
+
+	/**
+	 * Attempts to redirect a player to another server, and completes once the network has answered.
+	 * The future completes on a network thread; use the UniverseScheduler to move back onto the main thread.
+	 *
+	 * @param player the player
+	 * @param server the destination server's identifier
+	 * @return a future of whether the player was redirected
+	 */
+	public CompletableFuture<Boolean> sendPlayerAsync(MinecraftPlayer player, String server);
+
+	/**
+	 * Redirects a player to another server without waiting for the result.
+	 * Failures are logged on the main thread.
+	 *
+	 * @param player the player
+	 * @param server the destination server's identifier
+	 */
+	public default void sendPlayer(final MinecraftPlayer player, final String server)
+	{
+		UniverseAPI.getInstance().getScheduler().onMainThread(sendPlayerAsync(player, server)).whenComplete((success, exception) ->
+		{
+			if(exception != null || !success)
+			{
+				UniverseAPI.getInstance().getLogger().w("Unable to send &b" + player.getName() + "&7 to &a" + server);
+			}
+		});
+	}
 }
@@ -97,5 +97,12 @@ public enum StaticChannel
 		this.channel = channel;
 	}
 
+	/**
+	 * Gets this channel's id, which is the same in every ChannelRegistry.
+	 *
+	 * @return the id
+	 */
+	public int getId() {return ordinal();}
+
 	public String toString() {return "switchcore." + channel;}
 }
@@ -1,30 +1,64 @@
 package com.hyperfresh.mcuniverse;
 
 import com.hyperfresh.mcuniverse.database.LocalFileDatabase;
+import com.hyperfresh.mcuniverse.database.PlayerLocationIndex;
 import com.hyperfresh.mcuniverse.database.ServerDatabase;
-import com.hyperfresh.mcuniverse.event.AsyncEventHandler;
+import com.hyperfresh.mcuniverse.database.ServerGroup;
+import com.hyperfresh.mcuniverse.exceptions.MessageNotSentException;
+import com.hyperfresh.mcuniverse.exceptions.ServerOfflineException;
 import com.hyperfresh.mcuniverse.event.EventBus;
+import com.hyperfresh.mcuniverse.event.Handler;
 import com.hyperfresh.mcuniverse.event.events.NetworkMessageOutEvent;
 import com.hyperfresh.mcuniverse.event.events.NetworkPacketInEvent;
 import com.hyperfresh.mcuniverse.event.events.NetworkPacketOutEvent;
 import com.hyperfresh.mcuniverse.extensions.LilypadEssentialsCompatability;
 import com.hyperfresh.mcuniverse.extensions.SwitchCoreExtension;
 import com.hyperfresh.mcuniverse.lilypad.LilypadConnection;
+import com.hyperfresh.mcuniverse.metrics.NetworkMetrics;
+import com.hyperfresh.mcuniverse.minecraft.MinecraftCommandSource;
 import com.hyperfresh.mcuniverse.minecraft.MinecraftPlayer;
 import com.hyperfresh.mcuniverse.minecraft.MinecraftServer;
+import com.hyperfresh.mcuniverse.network.ChannelRegistry;
+import com.hyperfresh.mcuniverse.network.ConnectionSupervisor;
+import com.hyperfresh.mcuniverse.network.DuplicateFilter;
+import com.hyperfresh.mcuniverse.network.HealthMonitor;
+import com.hyperfresh.mcuniverse.network.Lane;
+import com.hyperfresh.mcuniverse.network.LaneRegistry;
+import com.hyperfresh.mcuniverse.network.OutboundMessage;
+import com.hyperfresh.mcuniverse.network.OutboundQueue;
+import com.hyperfresh.mcuniverse.network.OverflowPolicy;
+import com.hyperfresh.mcuniverse.network.PresenceTracker;
+import com.hyperfresh.mcuniverse.network.PropertyReplicator;
+import com.hyperfresh.mcuniverse.network.RateLimiter;
+import com.hyperfresh.mcuniverse.network.StripedExecutor;
+import com.hyperfresh.mcuniverse.network.TrafficClass;
+import com.hyperfresh.mcuniverse.network.nio.NioConnection;
+import com.hyperfresh.mcuniverse.network.shm.SharedMemoryConnection;
 import com.hyperfresh.mcuniverse.packets.*;
 import com.hyperfresh.mcuniverse.serializer.GsonSerializer;
+import com.hyperfresh.mcuniverse.serializer.PacketCache;
 import com.hyperfresh.mcuniverse.serializer.PacketSerializer;
 import com.hyperfresh.mcuniverse.server.ServerProperty;
 import com.hyperfresh.mcuniverse.server.ServerPropertyManager;
+import com.hyperfresh.mcuniverse.server.UniverseProperty;
 import com.hyperfresh.mcuniverse.server.networked.UniverseServer;
+import com.hyperfresh.mcuniverse.server.networked.local.LocalPropertyCache;
 import com.octopod.util.configuration.yaml.YamlConfiguration;
 import com.octopod.util.minecraft.command.CommandManager;
 
+import java.io.File;
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
 
 /**
  * @author Octopod - octopodsquad@gmail.com
@@ -43,7 +77,21 @@ public class UniverseAPI
 	
 	private UniverseAPI() {}
 
-	public static void init(UniversePlugin plugin)
+	public static void init(UniversePlugin plugin) throws IOException
+	{
+		init(plugin, null);
+	}
+
+	/**
+	 * Initializes Universe over a specific NetworkConnection,
+	 * such as a LoopbackConnection when simulating a network inside one JVM.
+	 * The config is loaded first, since most of what's made here is configured by it.
+	 *
+	 * @param plugin the plugin
+	 * @param connection the connection, or null to connect through Lilypad
+	 * @throws IOException if the config couldn't be loaded
+	 */
+	public static void init(UniversePlugin plugin, NetworkConnection connection) throws IOException
 	{
 		instance.plugin = plugin;
 		instance.server = plugin.getServerInterface();
@@ -52,25 +100,81 @@ public class UniverseAPI
 		instance.logger.i("&8[ &esyncpod " + UniverseVersion.LATEST + " &8] &7is loading!");
 
 		instance.config = new UniverseConfig(plugin, instance.logger);
+		instance.config.load();
+		instance.scheduler = new UniverseScheduler(plugin, 2);
 		instance.serializer = new GsonSerializer();
-		instance.connection = new LilypadConnection();
-		instance.database = new LocalFileDatabase();
+		instance.packetCache = new PacketCache(instance.serializer, 1000);
+		instance.channelRegistry = new ChannelRegistry();
+		registerLanes(instance.laneRegistry);
+		int window = instance.getConfig().getInt("duplicate-window", 1024);
+		instance.duplicateFilter = window > 0 ? new DuplicateFilter(window) : null;
+		instance.presenceTracker = new PresenceTracker(
+			server -> new PacketInPlayerList().send(server),
+			instance.getConfig().getLong("presence-resync-timeout", 5000),
+			instance.getConfig().getInt("presence-max-held", 1000)
+		);
+		instance.metrics = new NetworkMetrics();
+		instance.metrics.register();
+		instance.connection = connection != null ? connection : new LilypadConnection();
+		instance.database = instance.getConfig().getBoolean("database-enabled", true) ? new LocalFileDatabase(
+			new File(plugin.getPluginFolder(), "database"),
+			instance.getConfig().getLong("database-flush-interval", 1000),
+			instance.getConfig().getInt("database-compact-after", 10000),
+			instance.getConfig().getBoolean("database-sync", false)
+		) : new LocalFileDatabase();
 		instance.serverPropertyManager = new ServerPropertyManager();
+		instance.localProperties = new LocalPropertyCache(
+			instance.serverPropertyManager,
+			instance.scheduler.getMainThreadExecutor(),
+			instance.scheduler.getExecutor(),
+			property -> instance.invalidateState()
+		);
+		instance.propertyReplicator = new PropertyReplicator(
+			instance.serverPropertyManager,
+			instance.localProperties,
+			//Clocks change on every read, and joins and leaves already carry the player list
+			property -> property != UniverseProperty.ONLINE_PLAYERS && !property.getRefreshPolicy().isUncached(),
+			instance::sendPacket,
+			server -> new PacketInPropertySubscribe().send(server),
+			instance.getConfig().getLong("property-resync-timeout", 5000)
+		);
+		long push = instance.getConfig().getLong("property-push-interval", 500);
+		if(push > 0)
+		{
+			instance.scheduler.scheduleRepeating(() -> instance.scheduler.runSync(instance.propertyReplicator::flush), push, push);
+		}
+		instance.applyConfig();
 
 		//instance.registerProperties(StaticProperties.class);
 		instance.registerExtension(LilypadEssentialsCompatability.class);
 
 		UniverseAPI.initialized = true;
+
+		//Servers from the last time the plugin ran, so it doesn't start out blind
+		instance.database.read();
 	}
 
 	public static void dinit()
 	{
 		instance.unregisterExtensions();
+		instance.localProperties.close();
+		instance.scheduler.shutdown();
+		for(StripedExecutor inbound: instance.inbound.values())
+		{
+			inbound.shutdown();
+		}
+		instance.metrics.unregister();
+		instance.database.close();
 
 		UniverseAPI.initialized = false;
 	}
 
-	final public String PREFIX = "&8[&esyncpod&8]&f ";
+	/**
+	 * The prefix of Universe's messages, for use before <code>init()</code> finishes.
+	 */
+	public static final String LOG_PREFIX = "&8[&esyncpod&8]&f ";
+
+	final public String PREFIX = LOG_PREFIX;
 
 	private MinecraftServer server = null;
 
@@ -82,10 +186,42 @@ public class UniverseAPI
 
 	private NetworkConnection connection = null;
 
+	/**
+	 * The queue that outgoing messages wait in until the sender thread sends them
+	 */
+	private OutboundQueue outbound = null;
+
+	/**
+	 * Handles recieved messages in each lane, in order for each sender (empty to handle them on the connection's thread)
+	 */
+	private final Map<Lane, StripedExecutor> inbound = new EnumMap<>(Lane.class);
+
+	/**
+	 * Decides which lane messages are sent and handled in
+	 */
+	private final LaneRegistry laneRegistry = new LaneRegistry();
+
+	/**
+	 * Watches the connection and reconnects when it is lost
+	 */
+	private ConnectionSupervisor supervisor = null;
+
+	/**
+	 * Pings other servers in the background
+	 */
+	private HealthMonitor healthMonitor = null;
+
 	private UniverseConfig config = null;
 
 	private UniversePlugin plugin = null;
 
+	private UniverseScheduler scheduler = null;
+
+	/**
+	 * The amount of time, in ms, to wait for responses from servers.
+	 */
+	private long requestTimeout = 500;
+
 	private List<SwitchCoreExtension> extensions = new ArrayList<>();
 
 	/**
@@ -93,13 +229,58 @@ public class UniverseAPI
 	 */
 	private PacketSerializer serializer = null;
 
+	/**
+	 * The cache of encoded packets describing this server's state
+	 */
+	private PacketCache packetCache = null;
+
+	/**
+	 * The ids of channels, and the ids other servers gave their channels
+	 */
+	private ChannelRegistry channelRegistry = null;
+
+	/**
+	 * Stamps sent packets and drops recieved duplicates (null if disabled)
+	 */
+	private DuplicateFilter duplicateFilter = null;
+
+	/**
+	 * Numbers the joins and leaves this server sends, and puts the ones recieved back in order
+	 */
+	private PresenceTracker presenceTracker = null;
+
+	/**
+	 * Counts the traffic sent and recieved
+	 */
+	private NetworkMetrics metrics = null;
+
 	/**
 	 * The Database where server information will be stored
 	 */
 	private ServerDatabase database = null;
 
+	/**
+	 * Which server every player on the network is on
+	 */
+	private final PlayerLocationIndex playerIndex = new PlayerLocationIndex();
+
 	private ServerPropertyManager serverPropertyManager = null;
 
+	/**
+	 * The values of this server's properties, refreshed in the background
+	 */
+	private LocalPropertyCache localProperties = null;
+
+	/**
+	 * Pushes this server's property changes to subscribers, and applies the changes other servers push
+	 */
+	private PropertyReplicator propertyReplicator = null;
+
+	/**
+	 * The names of the groups added from the config
+	 */
+	private final Set<String> configGroups = new HashSet<>();
+
 	/**
 	 * Gets the current MinecraftServer. (returns null if wasn't set before)
 	 *
@@ -107,12 +288,296 @@ public class UniverseAPI
 	 */
 	public MinecraftServer getInterface() {return server;}
 
-	public void reloadConfig() throws IOException {config.load();}
+	/**
+	 * Starts the outbound queue and connects to the network.
+	 * The connection is then watched by the ConnectionSupervisor until <code>disconnect()</code> is called.
+	 * The config should be loaded before calling this.
+	 */
+	public void connect()
+	{
+		int stripes = getConfig().getInt("inbound-stripes", 4);
+		if(inbound.isEmpty() && stripes > 0)
+		{
+			//Control packets are quick to handle, so one thread is plenty
+			inbound.put(Lane.CONTROL, new StripedExecutor("Universe Inbound Control", 1));
+			inbound.put(Lane.INTERACTIVE, new StripedExecutor("Universe Inbound", stripes));
+			inbound.put(Lane.BULK, new StripedExecutor("Universe Inbound Bulk", Math.max(1, getConfig().getInt("inbound-bulk-stripes", 1))));
+		}
+		String secret = getConfig().getString("direct-secret", "");
+		if(!(connection instanceof NioConnection) && getConfig().getBoolean("direct-enabled", false) && secret.isEmpty())
+		{
+			logger.w("direct-enabled is set without a direct-secret, so servers will only talk through " + connection.getName());
+		}
+		else if(!(connection instanceof NioConnection) && getConfig().getBoolean("direct-enabled", false))
+		{
+			//Talk to other servers directly, and only use the original connection for redirects and unreachable servers
+			NioConnection direct = new NioConnection(
+				connection.getServerIdentifier(),
+				secret,
+				new InetSocketAddress(getConfig().getString("direct-host", "127.0.0.1"), getConfig().getInt("direct-port", 25600)),
+				NioConnection.parseAddresses(getConfig().getString("direct-peers", "")),
+				connection,
+				UniverseEventPoster::onMessageInbound
+			);
+			direct.setPeerListener(server -> scheduler.runAsync(() -> UniverseEventPoster.onPeerConnected(server)));
+			connection = direct;
+		}
+		String shared = getConfig().getString("shared-memory-directory", "");
+		if(!(connection instanceof SharedMemoryConnection) && getConfig().getBoolean("shared-memory-enabled", false))
+		{
+			//Talk to servers on this host through shared memory, and use the connection above for everything else
+			connection = new SharedMemoryConnection(
+				connection.getServerIdentifier(),
+				shared.isEmpty() ? new File(plugin.getPluginFolder(), "shared-memory") : new File(shared),
+				getConfig().getInt("shared-memory-ring-size", 1048576),
+				connection,
+				UniverseEventPoster::onMessageInbound
+			);
+		}
+		if(outbound == null)
+		{
+			outbound = new OutboundQueue(
+				connection,
+				getConfig().getInt("outbound-queue-capacity", 1024),
+				getConfig().getLong("outbound-block-timeout", 50)
+			);
+			registerOverflowPolicies(outbound);
+			outbound.setLaneRegistry(laneRegistry);
+
+			if(getConfig().getBoolean("rate-limit-enabled", true))
+			{
+				RateLimiter limiter = new RateLimiter(
+					getConfig().getInt("rate-limit-server", 200),
+					getConfig().getInt("rate-limit-server-burst", 400),
+					getConfig().getInt("rate-limit-channel", 500),
+					getConfig().getInt("rate-limit-channel-burst", 1000)
+				);
+				limiter.setChannelLimits(getConfig().getString("rate-limit-channels", ""));
+				registerTrafficClasses(limiter);
+				outbound.setRateLimiter(limiter);
+			}
+		}
+		if(supervisor == null)
+		{
+			supervisor = new ConnectionSupervisor(
+				connection, outbound, scheduler,
+				getConfig().getLong("connection-check-interval", 1000),
+				getConfig().getLong("reconnect-backoff-initial", 500),
+				getConfig().getLong("reconnect-backoff-max", 30000)
+			);
+		}
+		if(healthMonitor == null)
+		{
+			healthMonitor = new HealthMonitor(
+				database, scheduler,
+				getConfig().getLong("health-check-interval", 2000),
+				getConfig().getLong("health-check-timeout", 1000),
+				getConfig().getInt("health-check-weight", 20) / 100.0,
+				getConfig().getInt("health-check-unreachable-after", 3)
+			);
+		}
+		outbound.start();
+		connection.connect();
+		supervisor.start();
+		healthMonitor.start();
+	}
+
+	/**
+	 * Disconnects from the network and stops the outbound queue.
+	 */
+	public void disconnect()
+	{
+		if(healthMonitor != null) healthMonitor.stop();
+		if(supervisor != null) supervisor.stop();
+		connection.disconnect();
+		if(outbound != null) outbound.stop();
+	}
+
+	/**
+	 * Asks each stale server for its information directly, a few servers at a time,
+	 * instead of broadcasting a discover that every server on the network answers at once.
+	 * Once they've all been asked, one server that answered is asked for the servers it knows,
+	 * to find the ones that started while this one was down.
+	 * Servers that are still stale after <code>warm-start-expire</code> ms are removed.
+	 *
+	 * @return false if there were no stale servers to refresh
+	 */
+	public boolean refreshStaleServers()
+	{
+		Collection<String> stale = database.getStaleServers();
+		if(stale.isEmpty()) return false;
+
+		long delay = discoverServers(stale);
+
+		//Servers that started while this one was down announced themselves to nobody
+		scheduler.schedule(this::requestServerList, delay);
+
+		long expire = getConfig().getLong("warm-start-expire", 60000);
+		if(expire > 0)
+		{
+			scheduler.schedule(() -> {
+				for(String server: database.getStaleServers())
+				{
+					logger.v("Removing &a" + server + "&7, it hasn't been seen since the last run");
+					database.removeServer(server);
+				}
+			}, delay + expire);
+		}
+		return true;
+	}
+
+	/**
+	 * Asks servers that are unknown or stale for their information directly, a few servers at a time.
+	 *
+	 * @param servers the servers' identifiers
+	 * @return the time, in ms, until the last one is asked
+	 */
+	public long discoverServers(Collection<String> servers)
+	{
+		long spacing = 1000 / Math.max(1, getConfig().getInt("warm-start-refresh-rate", 50));
+		long delay = 0;
+		for(String server: servers)
+		{
+			if(server.equals(getServerIdentifier())) continue;
+			scheduler.schedule(() -> {
+				//It might have announced itself in the meantime
+				if(!database.serverExists(server) || database.isStale(server)) sendStatePacket(server, "discover-request", PacketInServerDiscover::new);
+			}, delay);
+			delay += spacing;
+		}
+		return delay;
+	}
+
+	/**
+	 * Asks one server that has answered since this one started for the servers it knows.
+	 * If none has, nobody else is up to ask, so a discover is broadcast instead.
+	 */
+	private void requestServerList()
+	{
+		for(String server: database.getServerNames())
+		{
+			if(server.equals(getServerIdentifier()) || database.isStale(server)) continue;
+			if(healthMonitor != null && !healthMonitor.isReachable(server)) continue;
+
+			new PacketInServerList().send(server);
+			return;
+		}
+		new PacketInServerDiscover().broadcast();
+	}
+
+	private static void registerOverflowPolicies(OutboundQueue outbound)
+	{
+		//Pings are only useful while they're fresh
+		outbound.setPolicy(PacketInServerPing.class, OverflowPolicy.DROP_NEWEST);
+		outbound.setPolicy(PacketOutServerPing.class, OverflowPolicy.DROP_NEWEST);
+
+		//Only the newest state matters
+		outbound.setPolicy(PacketInServerDiscover.class, OverflowPolicy.DROP_OLDEST);
+		outbound.setPolicy(PacketOutServerDiscover.class, OverflowPolicy.DROP_OLDEST);
+		outbound.setPolicy(PacketOutServerUpdate.class, OverflowPolicy.DROP_OLDEST);
+
+		//Everything else (switches, commands, broadcasts and plain messages) waits for room
+		outbound.setDefaultPolicy(OverflowPolicy.BLOCK);
+	}
+
+	private static void registerLanes(LaneRegistry lanes)
+	{
+		//The network needs these to work at all
+		lanes.setLane(PacketInServerPing.class, Lane.CONTROL);
+		lanes.setLane(PacketOutServerPing.class, Lane.CONTROL);
+		lanes.setLane(PacketInServerDiscover.class, Lane.CONTROL);
+		lanes.setLane(PacketOutServerChannels.class, Lane.CONTROL);
+		lanes.setLane(PacketInPlayerList.class, Lane.CONTROL);
+		lanes.setLane(PacketInServerList.class, Lane.CONTROL);
+		lanes.setLane(PacketInPropertySubscribe.class, Lane.CONTROL);
+
+		//Someone is waiting on these
+		lanes.setLane(PacketInPlayerSwitch.class, Lane.INTERACTIVE);
+		lanes.setLane(PacketOutPlayerSwitch.class, Lane.INTERACTIVE);
+
+		//State transfer can wait
+		lanes.setLane(PacketOutServerDiscover.class, Lane.BULK);
+		lanes.setLane(PacketInServerUpdate.class, Lane.BULK);
+		lanes.setLane(PacketOutServerUpdate.class, Lane.BULK);
+		lanes.setLane(PacketOutPlayerList.class, Lane.BULK);
+		lanes.setLane(PacketOutServerList.class, Lane.BULK);
+		lanes.setLane(PacketOutPropertyChanges.class, Lane.BULK);
+
+		//Everything else (commands, broadcasts and plain messages) is INTERACTIVE unless its channel is given a lane
+	}
+
+	private static void registerTrafficClasses(RateLimiter limiter)
+	{
+		//The network needs these to work at all
+		limiter.setTrafficClass(PacketInServerPing.class, TrafficClass.CONTROL);
+		limiter.setTrafficClass(PacketOutServerPing.class, TrafficClass.CONTROL);
+		limiter.setTrafficClass(PacketInServerDiscover.class, TrafficClass.CONTROL);
+		limiter.setTrafficClass(PacketOutServerDiscover.class, TrafficClass.CONTROL);
+		limiter.setTrafficClass(PacketOutServerChannels.class, TrafficClass.CONTROL);
+		limiter.setTrafficClass(PacketOutPlayerSwitch.class, TrafficClass.CONTROL);
+
+		//Property updates are requested again when they're needed
+		limiter.setTrafficClass(PacketInServerUpdate.class, TrafficClass.BULK);
+		limiter.setTrafficClass(PacketOutServerUpdate.class, TrafficClass.BULK);
+
+		//Everything else (switches, commands, broadcasts and plain messages) waits for tokens
+	}
+
+	public void reloadConfig() throws IOException
+	{
+		config.load();
+		applyConfig();
+	}
+
+	/**
+	 * Applies the settings that can change when the config is reloaded.
+	 */
+	private void applyConfig()
+	{
+		requestTimeout = getConfig().getLong("request-timeout", 500);
+		packetCache.setMaxAge(getConfig().getLong("state-cache-ttl", 1000));
+		loadGroups();
+		localProperties.invalidateAll();
+		invalidateState();
+	}
+
+	/**
+	 * Adds the groups in the config, replacing the ones added from it before (so groups removed from the config go away too).
+	 * Groups added some other way, such as by other plugins, are left alone.
+	 */
+	private void loadGroups()
+	{
+		for(String name: configGroups)
+		{
+			database.removeGroup(name);
+		}
+		configGroups.clear();
+
+		for(ServerGroup group: ServerGroup.parse(getConfig().getString("server-groups", ""), invalid -> logger.w("Skipping invalid server group '" + invalid + "'")))
+		{
+			database.addGroup(group);
+			configGroups.add(group.getName());
+		}
+	}
 
 	public YamlConfiguration getConfig() {return config.getConfig();}
 
 	public UniversePlugin getPlugin() {return plugin;}
 
+	/**
+	 * Gets the shared scheduler.
+	 *
+	 * @return the current UniverseScheduler
+	 */
+	public UniverseScheduler getScheduler() {return scheduler;}
+
+	/**
+	 * Gets the amount of time, in ms, to wait for responses from servers.
+	 *
+	 * @return the request timeout
+	 */
+	public long getRequestTimeout() {return requestTimeout;}
+
 	public void registerExtension(Class<? extends SwitchCoreExtension> type)
 	{
 		try
@@ -152,6 +617,17 @@ public class UniverseAPI
 		return serverPropertyManager;
 	}
 
+	/**
+	 * Gets the cached values of this server's properties.
+	 * Invalidate a property here when something it depends on changes.
+	 *
+	 * @return the current LocalPropertyCache
+	 */
+	public LocalPropertyCache getLocalProperties()
+	{
+		return localProperties;
+	}
+
 	/**
 	 * Gets the current Logger.
 	 * Please use <code>addServer()</code> before using this method.
@@ -174,6 +650,27 @@ public class UniverseAPI
 	 */
 	public NetworkConnection getConnection() {return connection;}
 
+	/**
+	 * Gets the queue of outgoing messages. (returns null if not connected yet)
+	 *
+	 * @return the current OutboundQueue
+	 */
+	public OutboundQueue getOutboundQueue() {return outbound;}
+
+	/**
+	 * Gets the supervisor watching the connection. (returns null if not connected yet)
+	 *
+	 * @return the current ConnectionSupervisor
+	 */
+	public ConnectionSupervisor getConnectionSupervisor() {return supervisor;}
+
+	/**
+	 * Gets the monitor pinging other servers. (returns null if not connected yet)
+	 *
+	 * @return the current HealthMonitor
+	 */
+	public HealthMonitor getHealthMonitor() {return healthMonitor;}
+
 	/**
 	 * Gets the current EventBus.
 	 *
@@ -188,6 +685,8 @@ public class UniverseAPI
 	 */
 	public ServerDatabase getServerDatabase() {return database;}
 
+	public PlayerLocationIndex getPlayerIndex() {return playerIndex;}
+
 	/**
 	 * Gets the current Serializer for packets.
 	 *
@@ -195,6 +694,58 @@ public class UniverseAPI
 	 */
 	public PacketSerializer getSerializer() {return serializer;}
 
+	/**
+	 * Gets the cache of encoded state packets.
+	 *
+	 * @return the current PacketCache
+	 */
+	public PacketCache getPacketCache() {return packetCache;}
+
+	public ChannelRegistry getChannelRegistry() {return channelRegistry;}
+
+	public NetworkMetrics getMetrics() {return metrics;}
+
+	/**
+	 * Gets the filter that stamps sent packets and drops recieved duplicates.
+	 *
+	 * @return the current DuplicateFilter, or null if it's disabled
+	 */
+	public DuplicateFilter getDuplicateFilter() {return duplicateFilter;}
+
+	public PresenceTracker getPresenceTracker() {return presenceTracker;}
+
+	/**
+	 * Gets the PropertyReplicator, which keeps other servers' properties up to date.
+	 *
+	 * @return the current PropertyReplicator
+	 */
+	public PropertyReplicator getPropertyReplicator() {return propertyReplicator;}
+
+	/**
+	 * Gets the executor that recieved messages in a lane are handled on.
+	 *
+	 * @param lane the lane
+	 * @return the executor, or null if messages are handled on the connection's thread
+	 */
+	public StripedExecutor getInboundExecutor(Lane lane) {return inbound.get(lane);}
+
+	/**
+	 * Gets the registry that decides which lane messages are sent and handled in.
+	 * Extensions can give their channels a lane here.
+	 *
+	 * @return the current LaneRegistry
+	 */
+	public LaneRegistry getLaneRegistry() {return laneRegistry;}
+
+	/**
+	 * Marks this server's state as changed, so that state packets
+	 * sent after this will be created and serialized again.
+	 */
+	public void invalidateState()
+	{
+		packetCache.invalidate();
+	}
+
 	public String getServerIdentifier()
 	{
 		return connection.getServerIdentifier();
@@ -224,12 +775,58 @@ public class UniverseAPI
 
 	public boolean serverExists(String server)
 	{
-		return database.getServerNames().contains(server);
+		return database.serverExists(server);
+	}
+
+	/**
+	 * Finds the server a player is on, without asking the network.
+	 *
+	 * @param player the player's UUID or name
+	 * @return the server's identifier, or null if the player isn't online
+	 */
+	public String findPlayer(String player)
+	{
+		String server = playerIndex.getServer(player);
+		if(server == null) server = playerIndex.getServerByName(player);
+		if(server == null) return null;
+
+		//The server was removed since its players were indexed
+		if(!database.serverExists(server))
+		{
+			playerIndex.removeServer(server);
+			return null;
+		}
+		return server;
+	}
+
+	/**
+	 * Sends a private message to a player on any server.
+	 * Only the server the player is on is sent the message.
+	 *
+	 * @param source who the message is from
+	 * @param player the recipient's UUID or name
+	 * @param message the message
+	 * @return false if the player isn't online, or only their UUID is known
+	 */
+	public boolean sendPrivateMessage(MinecraftCommandSource source, String player, String message)
+	{
+		String server = findPlayer(player);
+		if(server == null) return false;
+
+		//The recipient's server looks them up by name
+		String name = playerIndex.getName(player);
+		if(name == null) return false;
+
+		new PacketInPlayerMessage(source, name, message).send(server);
+		return true;
 	}
 
 	public String serializePacket(Packet packet)
 	{
-		return serializer.serialize(packet);
+		long time = System.nanoTime();
+		String encoded = serializer.serialize(packet);
+		metrics.onSerialize(packet.getClass(), System.nanoTime() - time);
+		return encoded;
 	}
 
 	public Packet deserializePacket(String encoded)
@@ -238,32 +835,95 @@ public class UniverseAPI
 	}
 
 	public void sendMessage(String server, String channel, String message)
+	{
+		sendMessage(server, channel, message, null);
+	}
+
+	private boolean sendMessage(String server, String channel, String message, Class<?> type)
 	{
 		NetworkMessageOutEvent event = new NetworkMessageOutEvent(server, channel, message);
 		getEventBus().post(event);
-		if(!event.isCancelled())
+		if(event.isCancelled()) return false;
+
+		return queueMessage(server, channel, message, type);
+	}
+
+	/**
+	 * Sends a packet to a server.
+	 *
+	 * @param server the server's identifier
+	 * @param packet the packet
+	 * @return false if the packet was cancelled or dropped instead of being queued
+	 */
+	public boolean sendPacket(String server, Packet packet)
+	{
+		NetworkPacketOutEvent event = new NetworkPacketOutEvent(server, packet);
+		getEventBus().post(event);
+		if(event.isCancelled()) return false;
+
+		return sendMessage(server, "switchcore.packet", serializePacket(packet), packet.getClass());
+	}
+
+	/**
+	 * Sends a packet to several servers, serializing it only once.
+	 *
+	 * @param servers the servers' identifiers
+	 * @param packet the packet
+	 */
+	public void sendPacket(Collection<String> servers, Packet packet)
+	{
+		String encoded = null;
+		for(String server: servers)
 		{
-			connection.sendMessage(server, channel, message);
+			NetworkPacketOutEvent event = new NetworkPacketOutEvent(server, packet);
+			getEventBus().post(event);
+			if(event.isCancelled()) continue;
+
+			//Only reuse the encoded packet if no handler swapped it out
+			if(event.getPacket() != packet)
+			{
+				sendMessage(server, "switchcore.packet", serializePacket(event.getPacket()), event.getPacket().getClass());
+				continue;
+			}
+			if(encoded == null) encoded = serializePacket(packet);
+			sendMessage(server, "switchcore.packet", encoded, packet.getClass());
 		}
 	}
 
-	public void sendPacket(String server, Packet packet)
+	/**
+	 * Sends a packet describing this server's state.
+	 * The encoded form of the packet is reused between calls until the state changes,
+	 * so <code>factory</code> is only used when there isn't a cached packet of this kind.
+	 *
+	 * @param server the server's identifier
+	 * @param key the kind of state packet
+	 * @param factory creates the packet if it isn't cached
+	 */
+	public void sendStatePacket(String server, String key, Supplier<? extends Packet> factory)
 	{
-		NetworkPacketOutEvent event = new NetworkPacketOutEvent(server, packet);
+		PacketCache.Entry entry = packetCache.get(key, factory);
+		NetworkPacketOutEvent event = new NetworkPacketOutEvent(server, entry.getPacket());
 		getEventBus().post(event);
 		if(!event.isCancelled())
 		{
-			sendMessage(server, "switchcore.packet", serializePacket(packet));
+			//Only reuse the encoded packet if no handler swapped it out
+			String encoded = event.getPacket() == entry.getPacket() ? entry.getEncoded() : serializePacket(event.getPacket());
+			sendMessage(server, "switchcore.packet", encoded, event.getPacket().getClass());
 		}
 	}
 
 	public void broadcastMessage(String channel, String message)
+	{
+		broadcastMessage(channel, message, null);
+	}
+
+	private void broadcastMessage(String channel, String message, Class<?> type)
 	{
 		NetworkMessageOutEvent event = new NetworkMessageOutEvent(channel, message);
 		getEventBus().post(event);
 		if(!event.isCancelled())
 		{
-			connection.broadcastMessage(channel, message);
+			queueMessage(null, channel, message, type);
 		}
 	}
 
@@ -273,71 +933,189 @@ public class UniverseAPI
 		getEventBus().post(event);
 		if(!event.isCancelled())
 		{
-			broadcastMessage("switchcore.packet", serializePacket(packet));
+			broadcastMessage("switchcore.packet", serializePacket(packet), packet.getClass());
+		}
+	}
+
+	/**
+	 * Sends a message to every server in a group.
+	 *
+	 * @param group the group's name
+	 * @param channel the channel
+	 * @param message the message
+	 */
+	public void sendMessageToGroup(String group, String channel, String message)
+	{
+		sendMessageToGroup(getGroup(group), channel, message, null);
+	}
+
+	private void sendMessageToGroup(ServerGroup group, String channel, String message, Class<?> type)
+	{
+		for(String server: group.getMembers(database))
+		{
+			sendMessage(server, channel, message, type);
+		}
+	}
+
+	/**
+	 * Sends a packet to every server in a group.
+	 * The packet is only serialized once, and only the group's members recieve it.
+	 *
+	 * @param group the group's name
+	 * @param packet the packet
+	 */
+	public void sendPacketToGroup(String group, Packet packet)
+	{
+		ServerGroup serverGroup = getGroup(group);
+		NetworkPacketOutEvent event = new NetworkPacketOutEvent(serverGroup, packet);
+		getEventBus().post(event);
+		if(!event.isCancelled())
+		{
+			sendMessageToGroup(serverGroup, "switchcore.packet", serializePacket(event.getPacket()), event.getPacket().getClass());
+		}
+	}
+
+	private ServerGroup getGroup(String name)
+	{
+		ServerGroup group = database.getGroup(name);
+		if(group == null) throw new IllegalArgumentException("ServerGroup '" + name + "' not found");
+		return group;
+	}
+
+	/**
+	 * Hands a message to the outbound queue.
+	 * If <code>server</code> is null, the message will be sent to all servers.
+	 *
+	 * @return false if the outbound queue dropped the message
+	 */
+	private boolean queueMessage(String server, String channel, String message, Class<?> type)
+	{
+		//Queued packets are stamped by the sender thread instead, in the order they're really sent
+		if(outbound != null)
+		{
+			return outbound.offer(new OutboundMessage(server, channel, message, type));
+		}
+
+		//Packets get a sequence number, so receivers can drop copies that arrive twice
+		if(type != null && duplicateFilter != null) message = duplicateFilter.stamp(server, message);
+
+		if(server == null)
+		{
+			connection.broadcastMessage(channel, message);
+		}
+		else
+		{
+			connection.sendMessage(server, channelRegistry.encode(server, channel), message);
 		}
+		metrics.onSend(server, channel, type, message.length());
+		return true;
 	}
 
-	public PlayerSwitchResult redirectPlayer(final MinecraftPlayer player, final String server)
+	/**
+	 * Asks a server whether a player can join it, and redirects the player if it can.
+	 * The returned future completes on the main thread with the server's answer,
+	 * or fails with a TimeoutException if the server didn't answer in time.
+	 *
+	 * @param player the player
+	 * @param server the destination server's identifier
+	 * @return a future of the result of the switch
+	 */
+	public CompletableFuture<PlayerSwitchResult> redirectPlayerAsync(MinecraftPlayer player, String server)
 	{
-		final AtomicReference<PlayerSwitchResult> result = new AtomicReference<>();
-		final Packet message = new PacketInPlayerSwitch(player);
+		return scheduler.onMainThread(requestPlayerSwitch(player, server));
+	}
 
-		AsyncEventHandler<NetworkPacketInEvent> listener = new AsyncEventHandler<NetworkPacketInEvent>()
+	/**
+	 * Asks a server whether a player can join it, and waits for the answer.
+	 * Returns null if the server didn't answer in time.
+	 *
+	 * @param player the player
+	 * @param server the destination server's identifier
+	 * @return the result of the switch, or null if the request timed out
+	 */
+	public PlayerSwitchResult redirectPlayer(MinecraftPlayer player, String server)
+	{
+		try
 		{
-			public boolean handle(NetworkPacketInEvent event)
+			return requestPlayerSwitch(player, server).get();
+		}
+		catch (InterruptedException | ExecutionException e)
+		{
+			return null;
+		}
+	}
+
+	private CompletableFuture<PlayerSwitchResult> requestPlayerSwitch(final MinecraftPlayer player, String server)
+	{
+		final CompletableFuture<PlayerSwitchResult> result = new CompletableFuture<>();
+
+		//Don't make the player wait out the timeout for a server that isn't answering pings
+		if(healthMonitor != null && !healthMonitor.isReachable(server))
+		{
+			result.completeExceptionally(new ServerOfflineException("Server '" + server + "' isn't answering pings"));
+			return result;
+		}
+
+		final Handler<NetworkPacketInEvent> listener = new Handler<NetworkPacketInEvent>()
+		{
+			@Override
+			public void handle(NetworkPacketInEvent event)
 			{
 				if(event.getPacket() instanceof PacketOutPlayerSwitch)
 				{
 					PacketOutPlayerSwitch packet = (PacketOutPlayerSwitch)event.getPacket();
 					if(player.getUUID().equals(packet.getUUID()))
 					{
-						result.set(packet.getResult());
+						result.complete(packet.getResult());
 					}
-					return true;
 				}
-				return false;
+			}
+
+			@Override
+			public Class<NetworkPacketInEvent> getEventType()
+			{
+				return NetworkPacketInEvent.class;
 			}
 		};
 
-		message.send(server);
-		listener.waitFor(500);
+		eventBus.registerHandler(listener);
+		result.whenComplete((value, exception) -> eventBus.unregisterHandler(listener));
 
-		return result.get();
+		//Fail right away instead of waiting out the timeout for a request that never left
+		if(!sendPacket(server, new PacketInPlayerSwitch(player)))
+		{
+			result.completeExceptionally(new MessageNotSentException("Switch request to '" + server + "' couldn't be sent"));
+			return result;
+		}
+
+		return scheduler.timeout(result, requestTimeout);
 	}
 
+	/**
+	 * Gets the average amount of time (ms) it takes for a server to return a ping,
+	 * as last measured by the HealthMonitor. This doesn't wait on the network.
+	 *
+	 * @param serverID the server's identifier
+	 * @return the average round trip time, or null if the server isn't answering pings
+	 */
 	public Long pingServer(String serverID)
 	{
-		return pingServer(new PacketInServerPing(), serverID);
-	}
+		if(healthMonitor == null || !healthMonitor.isReachable(serverID)) return null;
 
-	public Long pingServer(int id, String serverID)
-	{
-		return pingServer(new PacketInServerPing(id), serverID);
+		double rtt = healthMonitor.getHealth(serverID).getRtt();
+		return rtt < 0 ? null : Math.round(rtt);
 	}
 
 	/**
-	 * Pings a server, and returns the amount of time (ms) it took for
-	 * the server to return the ping. If the ping timed out, it will
-	 * return null.
+	 * Pings a server right away, and returns a future of the amount of time (ms)
+	 * it took for the server to return the ping. If the ping timed out, the future completes with null.
 	 *
-	 * @param packet the ping packet
 	 * @param serverID the server's identifier
-	 * @return the time it took to complete the ping, or null if it timed out.
+	 * @return a future of the time it took to complete the ping
 	 */
-	private Long pingServer(PacketInServerPing packet, String serverID)
+	public CompletableFuture<Long> pingServerAsync(String serverID)
 	{
-		long time = System.currentTimeMillis();
-		final int id = packet.getPingID();
-
-		packet.send(serverID);
-		return new AsyncEventHandler<NetworkPacketInEvent>()
-		{
-			@Override
-			public boolean handle(NetworkPacketInEvent event)
-			{
-				Packet packet = event.getPacket();
-				return (packet instanceof PacketOutServerPing && ((PacketOutServerPing)packet).getPingID() == id);
-			}
-		}.waitFor(500) ? System.currentTimeMillis() - time : null;
+		if(healthMonitor == null) return CompletableFuture.completedFuture(null);
+		return healthMonitor.ping(serverID);
 	}
 }
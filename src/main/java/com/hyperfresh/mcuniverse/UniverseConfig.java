@@ -52,8 +52,8 @@ public class UniverseConfig
 		if(input != null)
 		{
 			YamlConfiguration config = new YamlConfiguration(input);
-			logger.i(UniverseAPI.getInstance().PREFIX + "&7Internal Config Version: &6" + config.getInt("version", 0));
-			logger.i(UniverseAPI.getInstance().PREFIX + "&7Local Config Version: &6" + getConfig().getInt("version", -1));
+			logger.i(UniverseAPI.LOG_PREFIX + "&7Internal Config Version: &6" + config.getInt("version", 0));
+			logger.i(UniverseAPI.LOG_PREFIX + "&7Local Config Version: &6" + getConfig().getInt("version", -1));
 			IOUtils.closeSilent(input);
 			return config.getInt("version", 0) > getConfig().getInt("version", -1);
 		} else {
@@ -80,7 +80,7 @@ public class UniverseConfig
 				FileUtil.write(new File(plugin.getPluginFolder(), fileName), input);
 				IOUtils.closeSilent(input);
 			}
-			logger.i(UniverseAPI.getInstance().PREFIX + "&7Old configuration renamed to &6" + fileName);
+			logger.i(UniverseAPI.LOG_PREFIX + "&7Old configuration renamed to &6" + fileName);
 		}
 
 		InputStream input = readInternalConfig();
@@ -90,10 +90,10 @@ public class UniverseConfig
 
 			try {
 				FileUtil.write(file, input);
-				logger.i(UniverseAPI.getInstance().PREFIX + "&7New config created, version: &6" + config.getInt("version"));
+				logger.i(UniverseAPI.LOG_PREFIX + "&7New config created, version: &6" + config.getInt("version"));
 			} catch (IOException e)
 			{
-				logger.i(UniverseAPI.getInstance().PREFIX + "&cError writing configuration!");
+				logger.i(UniverseAPI.LOG_PREFIX + "&cError writing configuration!");
 				e.printStackTrace();
 			}
 
@@ -1,21 +1,40 @@
 package com.hyperfresh.mcuniverse;
 
 import com.hyperfresh.mcuniverse.event.events.NetworkConnectedEvent;
+import com.hyperfresh.mcuniverse.event.events.NetworkDisconnectedEvent;
 import com.hyperfresh.mcuniverse.event.events.NetworkMessageInEvent;
 import com.hyperfresh.mcuniverse.event.events.NetworkPacketInEvent;
+import com.hyperfresh.mcuniverse.exceptions.DeserializationException;
+import com.hyperfresh.mcuniverse.metrics.NetworkMetrics;
 import com.hyperfresh.mcuniverse.minecraft.MinecraftPlayer;
+import com.hyperfresh.mcuniverse.network.ChannelRegistry;
+import com.hyperfresh.mcuniverse.network.DuplicateFilter;
+import com.hyperfresh.mcuniverse.network.HealthMonitor;
+import com.hyperfresh.mcuniverse.network.PropertyReplicator;
+import com.hyperfresh.mcuniverse.network.StripedExecutor;
 import com.hyperfresh.mcuniverse.packets.*;
+import com.hyperfresh.mcuniverse.server.PropertySlots;
+import com.hyperfresh.mcuniverse.server.ServerProperty;
 import com.hyperfresh.mcuniverse.server.ServerStatus;
-import com.hyperfresh.mcuniverse.server.networked.UniversePlayer;
+import com.hyperfresh.mcuniverse.server.UniverseProperty;
 import com.hyperfresh.mcuniverse.server.networked.UniverseServer;
+import com.hyperfresh.mcuniverse.server.networked.stored.StoredServer;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author Octopod - octopodsquad@gmail.com
  */
 public class UniverseEventPoster
 {
+	/**
+	 * Held while a server's players are changed. Joins and leaves are handled on a different lane than
+	 * discovers and player lists, and one could otherwise be lost between another's read and write.
+	 */
+	private static final Object PLAYERS_LOCK = new Object();
+
 	/**
 	 * Listens for when this plugin is connected according to the NetworkConnection instance.
 	 * This method should request ServerValueManager and playerlists from every server.
@@ -29,6 +48,35 @@ public class UniverseEventPoster
 			UniverseAPI.getInstance().PREFIX + "&7Successfully connected via &a" +
 			UniverseAPI.getInstance().getConnection().getName() + "&7!"
 		);
+
+		//Anything could have changed while we were gone, so discover the network again.
+		//Servers known from the last run are asked one by one, then one of them is asked for the servers it knows.
+		if(!UniverseAPI.getInstance().refreshStaleServers()) new PacketInServerDiscover().broadcast();
+		new PacketOutServerChannels().broadcast();
+	}
+
+	/**
+	 * Listens for when a server connects directly to this one.
+	 * It may have missed the discover and channel table broadcast when this server connected, so they're sent to it again.
+	 */
+	public static void onPeerConnected(String server)
+	{
+		UniverseAPI.getInstance().sendStatePacket(server, "discover-request", PacketInServerDiscover::new);
+		new PacketOutServerChannels().send(server);
+	}
+
+	/**
+	 * Listens for when the NetworkConnection loses its connection.
+	 * Outgoing messages are held in the OutboundQueue until the connection is back.
+	 */
+	public static void onNetworkDisconnected()
+	{
+		NetworkDisconnectedEvent event = new NetworkDisconnectedEvent();
+
+		UniverseAPI.getInstance().getEventBus().post(event);
+		UniverseAPI.getInstance().getLogger().w(
+			"&cLost connection to &a" + UniverseAPI.getInstance().getConnection().getName() + "&c, reconnecting..."
+		);
 	}
 
 	public static void onServerOnline(String server)
@@ -38,6 +86,14 @@ public class UniverseEventPoster
 
 	public static void onServerOffline(String server)
 	{
+		synchronized(PLAYERS_LOCK)
+		{
+			UniverseAPI.getInstance().getPlayerIndex().removeServer(server);
+		}
+		UniverseAPI.getInstance().getPresenceTracker().forgetPeer(server);
+		UniverseAPI.getInstance().getPropertyReplicator().forgetPeer(server);
+		DuplicateFilter filter = UniverseAPI.getInstance().getDuplicateFilter();
+		if(filter != null) filter.forgetPeer(server);
 
 	}
 
@@ -81,25 +137,95 @@ public class UniverseEventPoster
 
 	}
 
-	public static void onPlayerJoinServer(UniversePlayer player, String serverUsername)
+	public static void onPlayerJoinServer(String playerID, String playerName, String serverID)
 	{
-		UniverseServer server = UniverseAPI.getInstance().getServerDatabase().getServer(serverUsername);
+		synchronized(PLAYERS_LOCK)
+		{
+			UniverseAPI.getInstance().getPlayerIndex().put(serverID, playerID, playerName);
 
-		@SuppressWarnings("unchecked")
-		List<MinecraftPlayer> players = server.getOnlinePlayers();
-		if(!players.contains(player))
-			players.add(player);
-		server.setProperty(ONLINE_PLAYERS.class, players);
+			UniverseServer server = UniverseAPI.getInstance().getServerDatabase().getSnapshot().getServer(serverID);
+			if(server instanceof StoredServer) ((StoredServer)server).addOnlinePlayer(playerID);
+		}
 	}
 
 	public static void onPlayerLeaveServer(String playerID, String serverID)
 	{
-		UniverseServer server = UniverseAPI.getInstance().getServerDatabase().getServer(serverID);
+		synchronized(PLAYERS_LOCK)
+		{
+			UniverseAPI.getInstance().getPlayerIndex().remove(serverID, playerID);
+
+			UniverseServer server = UniverseAPI.getInstance().getServerDatabase().getSnapshot().getServer(serverID);
+			if(server instanceof StoredServer) ((StoredServer)server).removeOnlinePlayer(playerID);
+		}
+	}
+
+	/**
+	 * Replaces a server's players with its full player list.
+	 */
+	public static void onPlayerList(String serverID, List<String> UUIDs, List<String> names)
+	{
+		synchronized(PLAYERS_LOCK)
+		{
+			UniverseAPI.getInstance().getPlayerIndex().reconcile(serverID, UUIDs, names);
+
+			UniverseServer server = UniverseAPI.getInstance().getServerDatabase().getSnapshot().getServer(serverID);
+			if(server instanceof StoredServer) server.setProperty(UniverseProperty.ONLINE_PLAYERS, UUIDs);
+		}
+	}
+
+	/**
+	 * Applies the property values a server pushed to its StoredServer.
+	 *
+	 * @param properties the new values
+	 * @param removed the properties that no longer have a value
+	 * @param full whether <code>properties</code> has every replicated value, so replicated properties not in it are removed too
+	 */
+	@SuppressWarnings("unchecked")
+	public static void onServerProperties(String serverID, PropertySlots properties, List<ServerProperty> removed, boolean full)
+	{
+		UniverseServer server = UniverseAPI.getInstance().getServerDatabase().getSnapshot().getServer(serverID);
+		if(!(server instanceof StoredServer) || properties == null) return;
+		StoredServer stored = (StoredServer)server;
+
+		Object old_status = server.getProperty(UniverseProperty.STATUS);
+		if(full)
+		{
+			PropertyReplicator replicator = UniverseAPI.getInstance().getPropertyReplicator();
+			for(ServerProperty property: stored.getPropertyMap().keySet())
+			{
+				if(replicator.isReplicated(property) && !properties.contains(property)) stored.removeProperty(property);
+			}
+		}
+		for(ServerProperty property: removed)
+		{
+			stored.removeProperty(property);
+		}
+		for(Map.Entry<ServerProperty, Object> property: properties.toMap().entrySet())
+		{
+			server.setProperty(property.getKey(), property.getValue());
+		}
+		UniverseAPI.getInstance().getServerDatabase().updateServer(serverID);
+
+		Object new_status = properties.get(UniverseProperty.STATUS);
+		if(new_status == ServerStatus.ONLINE && old_status == ServerStatus.OFFLINE) onServerOnline(serverID);
+		if(new_status == ServerStatus.OFFLINE && old_status == ServerStatus.ONLINE) onServerOffline(serverID);
+	}
 
-		@SuppressWarnings("unchecked")
-		List<String> players = server.getProperty(ONLINE_PLAYERS.class);
-		if(players.contains(playerID)) players.remove(playerID);
-		server.setProperty(ONLINE_PLAYERS.class, players);
+	/**
+	 * Adds (or replaces) a server from a discover packet.
+	 * The server keeps the players it already had: a discover (sent as bulk state) can arrive after joins or leaves
+	 * that happened after it was made, so players are only replaced by a numbered player list (see onPlayerList).
+	 */
+	private static void onServerDiscovered(String serverID, UniverseServer server)
+	{
+		UniverseAPI api = UniverseAPI.getInstance();
+		synchronized(PLAYERS_LOCK)
+		{
+			UniverseServer current = api.getServerDatabase().getSnapshot().getServer(serverID);
+			List<String> players = current == null ? null : current.getProperty(UniverseProperty.ONLINE_PLAYERS);
+			server.setProperty(UniverseProperty.ONLINE_PLAYERS, players == null ? new ArrayList<>() : players);
+			api.getServerDatabase().addServer(server);
+		}
 	}
 
 	/**
@@ -137,7 +263,85 @@ public class UniverseEventPoster
 	}
 
 	/**
-	 * Listens for when any message is recieved from any server.
+	 * Listens for when any raw message is recieved from any server, by any NetworkConnection.
+	 * The message is handled on the sender's stripe in the message's Lane, so messages from one server
+	 * in the same lane are handled in order, while control packets never wait behind bulk state.
+	 *
+	 * @param serverID the sender's identifier
+	 * @param channel the channel
+	 * @param message the message
+	 */
+	public static void onMessageInbound(final String serverID, String channel, String message)
+	{
+		UniverseAPI api = UniverseAPI.getInstance();
+
+		//Channels sent as ids are turned back into names, so handlers can still compare names
+		ChannelRegistry registry = api.getChannelRegistry();
+		final int channelId = registry.decode(channel);
+		final String name = channelId == ChannelRegistry.UNREGISTERED ? channel : registry.getChannel(channelId);
+
+		//Packets that were already handled (say, recieved over two transports) are dropped before anything else
+		if(channelId == StaticChannel.SWITCH_PACKET.getId())
+		{
+			DuplicateFilter.Stamped stamped = DuplicateFilter.unstamp(message);
+			if(stamped != null)
+			{
+				DuplicateFilter filter = api.getDuplicateFilter();
+				if(filter != null && !filter.accept(serverID, stamped.epoch, stamped.broadcast, stamped.seq)) return;
+				message = stamped.payload;
+			}
+		}
+		final String payload = message;
+
+		StripedExecutor inbound = api.getInboundExecutor(api.getLaneRegistry().getLane(name, payload, api.getSerializer()));
+		if(inbound == null)
+		{
+			handleMessageInbound(serverID, channelId, name, payload);
+		}
+		else
+		{
+			inbound.execute(serverID, () -> handleMessageInbound(serverID, channelId, name, payload));
+		}
+	}
+
+	/**
+	 * Handles a raw message.
+	 * Messages on the packet channel are deserialized and passed on to <code>onPacketInbound()</code>.
+	 */
+	private static void handleMessageInbound(String serverID, int channelId, String channel, String message)
+	{
+
+		NetworkMetrics metrics = UniverseAPI.getInstance().getMetrics();
+		metrics.onReceive(serverID, channel, message.length());
+
+		NetworkMessageInEvent event = new NetworkMessageInEvent(serverID, channelId, channel, message);
+		UniverseAPI.getInstance().getEventBus().post(event);
+
+		if(!event.isCancelled() && event.getChannelId() == StaticChannel.SWITCH_PACKET.getId())
+		{
+			try
+			{
+				long time = System.nanoTime();
+				Packet packet = UniverseAPI.getInstance().getSerializer().deserialize(message);
+				if(packet != null)
+				{
+					metrics.onDecode(packet.getClass(), message.length(), System.nanoTime() - time);
+					onPacketInbound(serverID, packet);
+				}
+				else
+				{
+					metrics.onDecodeFailure(serverID, channel);
+				}
+			}
+			catch (DeserializationException e)
+			{
+				metrics.onDecodeFailure(serverID, channel);
+			}
+		}
+	}
+
+	/**
+	 * Listens for when any packet is recieved from any server.
 	 * This method is a gateway to other events and features.
 	 * Refer to NetworkConfig.MessageChannel to what each channel does.
 	 */
@@ -148,7 +352,16 @@ public class UniverseEventPoster
 		UniverseAPI.getInstance().getEventBus().post(event);
 		if(event.isCancelled()) return;
 
-		UniverseAPI.getInstance().getServer(serverID).setProperty(LAST_PACKET.class, System.currentTimeMillis());
+		//Set on every packet, so kept unboxed
+		UniverseServer sender = UniverseAPI.getInstance().getServer(serverID);
+		if(sender instanceof StoredServer)
+		{
+			((StoredServer)sender).setLong(UniverseProperty.LAST_PACKET, System.currentTimeMillis());
+		}
+		else if(sender != null)
+		{
+			sender.setProperty(UniverseProperty.LAST_PACKET, System.currentTimeMillis());
+		}
 
 		if(packetRaw instanceof PacketInServerPing)
 		{
@@ -157,20 +370,39 @@ public class UniverseEventPoster
 
 		if(packetRaw instanceof PacketOutServerPing)
 		{
+			HealthMonitor monitor = UniverseAPI.getInstance().getHealthMonitor();
+			if(monitor != null) monitor.onReply(serverID, ((PacketOutServerPing)packetRaw).getPingID());
 			return;
 		}
 
 		if(packetRaw instanceof PacketInServerDiscover)
 		{
-			new PacketOutServerDiscover().send(serverID);
+			UniverseAPI.getInstance().sendStatePacket(serverID, "discover", PacketOutServerDiscover::new);
 			if(serverID.equals(UniverseAPI.getInstance().getServerIdentifier())) return;
-			UniverseAPI.getInstance().getServerDatabase().addServer(((PacketInServerDiscover) packetRaw).getServer());
+
+			//The server might have restarted with different channel ids, so use names until it sends its table again
+			UniverseAPI.getInstance().getChannelRegistry().forgetPeer(serverID);
+			new PacketOutServerChannels().send(serverID);
+
+			//It might have restarted too, so the players from before don't count until its new list arrives
+			UniverseAPI.getInstance().getPresenceTracker().forgetPeer(serverID);
+			new PacketInPlayerList().send(serverID);
+			onServerDiscovered(serverID, ((PacketInServerDiscover) packetRaw).getServer());
+			UniverseAPI.getInstance().getPropertyReplicator().resubscribe(serverID);
 		}
 
 		if(packetRaw instanceof PacketOutServerDiscover)
 		{
 			if(serverID.equals(UniverseAPI.getInstance().getServerIdentifier())) return;
-			UniverseAPI.getInstance().getServerDatabase().addServer(((PacketOutServerDiscover) packetRaw).getServer());
+			if(!UniverseAPI.getInstance().getPresenceTracker().isTracked(serverID)) new PacketInPlayerList().send(serverID);
+			onServerDiscovered(serverID, ((PacketOutServerDiscover) packetRaw).getServer());
+			UniverseAPI.getInstance().getPropertyReplicator().resubscribe(serverID);
+		}
+
+		if(packetRaw instanceof PacketOutServerChannels)
+		{
+			PacketOutServerChannels packet = (PacketOutServerChannels)packetRaw;
+			UniverseAPI.getInstance().getChannelRegistry().setPeerChannels(serverID, packet.getEpoch(), packet.getStaticChannels(), packet.getChannels());
 		}
 
 		if(packetRaw instanceof PacketInServerUpdate)
@@ -178,7 +410,7 @@ public class UniverseEventPoster
 			PacketInServerUpdate packet = (PacketInServerUpdate)packetRaw;
 			try
 			{
-				new PacketOutServerUpdate(packet.getPropertyClass()).send(serverID);
+				UniverseAPI.getInstance().sendStatePacket(serverID, "update:" + packet.getPropertyClassName(), () -> new PacketOutServerUpdate(packet.getPropertyClass()));
 			}
 			catch (ClassNotFoundException e)
 			{
@@ -193,6 +425,7 @@ public class UniverseEventPoster
 			{
 				UniverseServer server = UniverseAPI.getInstance().getServerDatabase().getServer(serverID);
 				server.setProperty(packet.getPropertyClass(), packet.getValue());
+				UniverseAPI.getInstance().getServerDatabase().updateServer(serverID);
 
 				if(packet.getPropertyClass() == STATUS.class)
 				{
@@ -208,6 +441,19 @@ public class UniverseEventPoster
 			}
 		}
 
+		if(packetRaw instanceof PacketInPropertySubscribe && !serverID.equals(UniverseAPI.getInstance().getServerIdentifier()))
+		{
+			UniverseAPI.getInstance().getPropertyReplicator().addSubscriber(serverID);
+		}
+
+		if(packetRaw instanceof PacketOutPropertyChanges && !serverID.equals(UniverseAPI.getInstance().getServerIdentifier()))
+		{
+			PacketOutPropertyChanges packet = (PacketOutPropertyChanges)packetRaw;
+			UniverseAPI.getInstance().getPropertyReplicator().onChanges(serverID, packet.getEpoch(), packet.getSequence(), packet.isFull(),
+				() -> onServerProperties(serverID, packet.getProperties(), packet.getRemoved(UniverseAPI.getInstance().getPropertyManager()), packet.isFull())
+			);
+		}
+
 		if(packetRaw instanceof PacketInPlayerSwitch)
 		{
 			new PacketOutPlayerSwitch(((PacketInPlayerSwitch)packetRaw).getUUID()).send(serverID);
@@ -238,7 +484,55 @@ public class UniverseEventPoster
 			UniverseAPI.getInstance().getInterface().broadcast(message);
 		}
 
-		//TODO: Player Private Message Packet
+		if(packetRaw instanceof PacketInPlayerJoin && !serverID.equals(UniverseAPI.getInstance().getServerIdentifier()))
+		{
+			PacketInPlayerJoin packet = (PacketInPlayerJoin)packetRaw;
+			UniverseAPI.getInstance().getPresenceTracker().onChange(serverID, packet.getEpoch(), packet.getSequence(),
+				() -> onPlayerJoinServer(packet.getUUID(), packet.getName(), serverID)
+			);
+		}
+
+		if(packetRaw instanceof PacketInPlayerLeave && !serverID.equals(UniverseAPI.getInstance().getServerIdentifier()))
+		{
+			PacketInPlayerLeave packet = (PacketInPlayerLeave)packetRaw;
+			UniverseAPI.getInstance().getPresenceTracker().onChange(serverID, packet.getEpoch(), packet.getSequence(),
+				() -> onPlayerLeaveServer(packet.getUUID(), serverID)
+			);
+		}
+
+		if(packetRaw instanceof PacketInServerList)
+		{
+			new PacketOutServerList().send(serverID);
+		}
+
+		if(packetRaw instanceof PacketOutServerList)
+		{
+			UniverseAPI.getInstance().discoverServers(((PacketOutServerList)packetRaw).getServers());
+		}
+
+		if(packetRaw instanceof PacketInPlayerList)
+		{
+			//Made on the main thread, where players join and leave, so the list and its number agree
+			UniverseAPI.getInstance().getScheduler().runSync(() -> new PacketOutPlayerList().send(serverID));
+		}
+
+		if(packetRaw instanceof PacketOutPlayerList && !serverID.equals(UniverseAPI.getInstance().getServerIdentifier()))
+		{
+			PacketOutPlayerList packet = (PacketOutPlayerList)packetRaw;
+			UniverseAPI.getInstance().getPresenceTracker().onList(serverID, packet.getEpoch(), packet.getSequence(),
+				() -> onPlayerList(serverID, packet.getUUIDs(), packet.getNames())
+			);
+		}
+
+		if(packetRaw instanceof PacketInPlayerMessage)
+		{
+			PacketInPlayerMessage packet = (PacketInPlayerMessage)packetRaw;
+			MinecraftPlayer player = UniverseAPI.getInstance().getInterface().getPlayerByName(packet.getRecipientName());
+			if(player != null)
+			{
+				player.sendMessage("&7[&b" + packet.getSenderName() + " &7-> &bme&7] &f" + packet.getPrivateMessage());
+			}
+		}
 
 		//TODO: Player Chat Packet
 
@@ -24,4 +24,18 @@ public interface UniversePlugin extends LilypadGetter
 	public String getPluginName();
 
 	public String getPluginVersion();
+
+	/**
+	 * Runs a task on the server's main thread during the next tick.
+	 *
+	 * @param task the task
+	 */
+	public void runTask(Runnable task);
+
+	/**
+	 * Checks if the current thread is the server's main thread.
+	 *
+	 * @return if the current thread is the main thread
+	 */
+	public boolean isMainThread();
 }
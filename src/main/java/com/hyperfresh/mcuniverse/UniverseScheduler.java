@@ -0,0 +1,148 @@
+package com.hyperfresh.mcuniverse;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The scheduler shared by everything in Universe that needs to run later, repeatedly, or off the main thread.
+ * Request timeouts, background tasks and moving results back onto the main thread all go through here,
+ * instead of each feature starting its own threads.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class UniverseScheduler
+{
+	private final UniversePlugin plugin;
+
+	private final ScheduledExecutorService executor;
+
+	/**
+	 * Runs tasks on the main thread; tasks submitted from the main thread are run immediately.
+	 */
+	private final Executor mainThread;
+
+	public UniverseScheduler(final UniversePlugin plugin, int threads)
+	{
+		this.plugin = plugin;
+		this.executor = Executors.newScheduledThreadPool(threads, new ThreadFactory()
+		{
+			private final AtomicInteger count = new AtomicInteger(0);
+
+			@Override
+			public Thread newThread(Runnable task)
+			{
+				Thread thread = new Thread(task, "Universe Scheduler #" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.mainThread = (task) ->
+		{
+			if(plugin.isMainThread())
+			{
+				task.run();
+			}
+			else
+			{
+				plugin.runTask(task);
+			}
+		};
+	}
+
+	/**
+	 * Gets the executor that background tasks are run on.
+	 *
+	 * @return the shared ScheduledExecutorService
+	 */
+	public ScheduledExecutorService getExecutor()
+	{
+		return executor;
+	}
+
+	/**
+	 * Gets an executor that runs tasks on the main thread.
+	 *
+	 * @return the main thread executor
+	 */
+	public Executor getMainThreadExecutor()
+	{
+		return mainThread;
+	}
+
+	public void runAsync(Runnable task)
+	{
+		executor.execute(task);
+	}
+
+	public void runSync(Runnable task)
+	{
+		mainThread.execute(task);
+	}
+
+	public ScheduledFuture<?> schedule(Runnable task, long delay)
+	{
+		return executor.schedule(task, delay, TimeUnit.MILLISECONDS);
+	}
+
+	public ScheduledFuture<?> scheduleRepeating(Runnable task, long delay, long period)
+	{
+		return executor.scheduleAtFixedRate(task, delay, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Fails a future with a TimeoutException if it isn't completed within <code>timeout</code> ms.
+	 * A timeout below 0 means the future never times out.
+	 *
+	 * @param future the future
+	 * @param timeout the timeout, in ms
+	 * @return the same future
+	 */
+	public <T> CompletableFuture<T> timeout(final CompletableFuture<T> future, final long timeout)
+	{
+		if(timeout < 0 || future.isDone()) return future;
+
+		final ScheduledFuture<?> task = executor.schedule(
+			() -> future.completeExceptionally(new TimeoutException("Request timed out after " + timeout + " ms")),
+			timeout, TimeUnit.MILLISECONDS
+		);
+		future.whenComplete((value, exception) -> task.cancel(false));
+		return future;
+	}
+
+	/**
+	 * Returns a future that completes on the main thread once <code>future</code> completes,
+	 * so that callbacks attached to it can safely use the server.
+	 * Don't block the main thread waiting on the returned future; it can only complete on the main thread.
+	 *
+	 * @param future the future
+	 * @return a future completed on the main thread
+	 */
+	public <T> CompletableFuture<T> onMainThread(CompletableFuture<T> future)
+	{
+		final CompletableFuture<T> result = new CompletableFuture<>();
+		future.whenComplete((value, exception) -> mainThread.execute(() ->
+		{
+			if(exception != null)
+			{
+				result.completeExceptionally(exception);
+			}
+			else
+			{
+				result.complete(value);
+			}
+		}));
+		return result;
+	}
+
+	public void shutdown()
+	{
+		executor.shutdownNow();
+	}
+}
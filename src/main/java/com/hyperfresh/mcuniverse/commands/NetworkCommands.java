@@ -0,0 +1,155 @@
+package com.hyperfresh.mcuniverse.commands;
+
+import com.hyperfresh.mcuniverse.UniverseAPI;
+import com.hyperfresh.mcuniverse.metrics.NetworkMetrics;
+import com.hyperfresh.mcuniverse.metrics.TrafficStats;
+import com.hyperfresh.mcuniverse.minecraft.MinecraftCommandSource;
+import com.hyperfresh.mcuniverse.network.ConnectionSupervisor;
+import com.hyperfresh.mcuniverse.network.DuplicateFilter;
+import com.hyperfresh.mcuniverse.network.HealthMonitor;
+import com.hyperfresh.mcuniverse.network.Lane;
+import com.hyperfresh.mcuniverse.network.OutboundQueue;
+import com.hyperfresh.mcuniverse.network.RateLimiter;
+import com.hyperfresh.mcuniverse.network.StripedExecutor;
+import com.hyperfresh.mcuniverse.network.nio.NioConnection;
+import com.hyperfresh.mcuniverse.network.shm.SharedMemoryConnection;
+import com.octopod.util.common.Math;
+import com.octopod.util.minecraft.command.Command;
+import com.octopod.util.minecraft.command.Default;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class NetworkCommands
+{
+	@Command
+	(
+		aliases = {"/netstats"},
+		permission = "switchcore.network.stats",
+		description = "Shows statistics about the network connection."
+	)
+	public void networkStats(MinecraftCommandSource source)
+	{
+		UniverseAPI api = UniverseAPI.getInstance();
+
+		source.sendMessage("&8------ &bNetwork Statistics &8------");
+		source.sendMessage("&7Connection: &a" + api.getConnection().getName() + (api.getConnection().isConnected() ? " &a(connected)" : " &c(disconnected)"));
+
+		if(api.getConnection() instanceof SharedMemoryConnection)
+		{
+			SharedMemoryConnection shared = (SharedMemoryConnection)api.getConnection();
+			source.sendMessage("&7Local Servers: &f" + shared.getLocalServers().size() + " &7Sent: &f" + shared.getSentCount() + " &7Recieved: &f" + shared.getReceivedCount() + " &7Fell Back: &6" + shared.getFallbackCount());
+		}
+		if(api.getConnection() instanceof NioConnection)
+		{
+			NioConnection direct = (NioConnection)api.getConnection();
+			source.sendMessage("&7Direct Peers: &f" + direct.getPeers().size() + " &7Frames Sent: &f" + direct.getFramesSent() + " &7Recieved: &f" + direct.getFramesReceived());
+		}
+
+		ConnectionSupervisor supervisor = api.getConnectionSupervisor();
+		if(supervisor != null)
+		{
+			if(!supervisor.isConnected())
+			{
+				source.sendMessage("&7Disconnected For: &c" + supervisor.getDowntime() + "ms");
+			}
+			source.sendMessage("&7Recoveries: &f" + supervisor.getRecoveryCount() + " &7Last Recovery: &f" + supervisor.getLastRecoveryTime() + "ms &7Average: &f" + Math.round(supervisor.getAverageRecoveryTime(), 2) + "ms");
+		}
+
+		for(Lane lane: Lane.values())
+		{
+			StripedExecutor inbound = api.getInboundExecutor(lane);
+			if(inbound != null)
+			{
+				source.sendMessage("&7Inbound " + lane.name().toLowerCase() + ": &f" + inbound.getDepth() + " &7waiting on &f" + inbound.getStripeCount() + " &7stripes, &a" + inbound.getCompletedCount() + " &7handled");
+			}
+		}
+
+		DuplicateFilter duplicates = api.getDuplicateFilter();
+		if(duplicates != null)
+		{
+			source.sendMessage("&7Duplicates Dropped: &6" + duplicates.getDuplicateCount());
+		}
+
+		HealthMonitor monitor = api.getHealthMonitor();
+		if(monitor != null)
+		{
+			int unreachable = 0;
+			for(String server: api.getServerDatabase().getServerNames())
+			{
+				if(!monitor.isReachable(server)) unreachable++;
+			}
+			source.sendMessage("&7Pings Waiting: &f" + monitor.getOutstandingCount() + " &7Unreachable Servers: " + (unreachable == 0 ? "&a0" : "&c" + unreachable));
+		}
+
+		OutboundQueue outbound = api.getOutboundQueue();
+		if(outbound == null)
+		{
+			source.sendMessage("&7Outbound Queue: &cnot started");
+			return;
+		}
+
+		source.sendMessage("&7Outbound Queue: &f" + outbound.getDepth(Lane.CONTROL) + "&7/&f" + outbound.getDepth(Lane.INTERACTIVE) + "&7/&f" + outbound.getDepth(Lane.BULK) + " &7(control/interactive/bulk, &f" + outbound.getCapacity() + " &7each)" + (outbound.isPaused() ? " &6(paused)" : ""));
+		source.sendMessage("&7Queued: &f" + outbound.getQueuedCount() + " &7Sent: &a" + outbound.getSentCount() + " &7Failed: &c" + outbound.getFailedCount() + " &7Dropped: &6" + outbound.getDroppedCount());
+		RateLimiter limiter = outbound.getRateLimiter();
+		if(limiter != null)
+		{
+			source.sendMessage("&7Throttled: &f" + limiter.getThrottledServerCount() + " &7servers, &f" + outbound.getDeferredDepth() + " &7waiting &7Deferred: &6" + limiter.getDeferredCount() + " &7Shed: &c" + limiter.getShedCount());
+		}
+		source.sendMessage("&7Send Latency: &f" + Math.round(outbound.getAverageLatency(), 2) + "ms &7avg, &f" + Math.round(outbound.getMaxLatency(), 2) + "ms &7max");
+	}
+
+	@Command
+	(
+		aliases = {"/nettraffic"},
+		permission = "switchcore.network.stats",
+		description = "Shows the busiest channels, packet types or servers."
+	)
+	public void networkTraffic(MinecraftCommandSource source, @Default("channel") String by)
+	{
+		NetworkMetrics metrics = UniverseAPI.getInstance().getMetrics();
+
+		Map<String, TrafficStats> stats;
+		switch(by.toLowerCase())
+		{
+			case "channel":
+				stats = metrics.getChannelStats();
+				break;
+			case "packet":
+				stats = metrics.getPacketTypeStats();
+				break;
+			case "peer":
+			case "server":
+				stats = metrics.getPeerStats();
+				break;
+			default:
+				source.sendMessage("&cUsage: /nettraffic <channel|packet|peer>");
+				return;
+		}
+
+		TrafficStats total = metrics.getTotalStats();
+		source.sendMessage("&8------ &bNetwork Traffic by " + by.toLowerCase() + " &8------");
+		source.sendMessage("&7Total: &f" + total.getMessagesSent() + " &7sent (&f" + total.getBytesSent() + "&7 bytes), &f" + total.getMessagesReceived() + " &7recieved (&f" + total.getBytesReceived() + "&7 bytes), &c" + total.getDecodeFailures() + " &7failed to decode");
+
+		//Busiest first
+		List<Map.Entry<String, TrafficStats>> entries = new ArrayList<>(stats.entrySet());
+		entries.sort((a, b) -> Long.compare(
+			b.getValue().getBytesSent() + b.getValue().getBytesReceived(),
+			a.getValue().getBytesSent() + a.getValue().getBytesReceived()
+		));
+
+		for(Map.Entry<String, TrafficStats> entry: entries.subList(0, java.lang.Math.min(10, entries.size())))
+		{
+			TrafficStats traffic = entry.getValue();
+			String line = "&e" + entry.getKey() + "&7: &a" + traffic.getMessagesSent() + "&7/&f" + traffic.getBytesSent() + "B out, &a" + traffic.getMessagesReceived() + "&7/&f" + traffic.getBytesReceived() + "B in";
+			if(traffic.getDecodeFailures() > 0) line += ", &c" + traffic.getDecodeFailures() + " failed";
+			if(traffic.getSerializeTime().getCount() > 0) line += "&7, encode &f" + Math.round(traffic.getSerializeTime().getMean() / 1000.0, 1) + "us";
+			if(traffic.getDecodeTime().getCount() > 0) line += "&7, decode &f" + Math.round(traffic.getDecodeTime().getMean() / 1000.0, 1) + "us &7(p99 &f" + traffic.getDecodeTime().getPercentile(0.99) / 1000 + "us&7)";
+			source.sendMessage(line);
+		}
+	}
+}
@@ -1,10 +1,10 @@
 package com.hyperfresh.mcuniverse.commands;
 
 import com.hyperfresh.mcuniverse.*;
-import com.hyperfresh.mcuniverse.database.ServerDatabase;
-import com.hyperfresh.mcuniverse.event.events.NetworkPacketInEvent;
+import com.hyperfresh.mcuniverse.database.ServerSnapshot;
 import com.hyperfresh.mcuniverse.minecraft.MinecraftCommandSource;
-import com.hyperfresh.mcuniverse.packets.*;
+import com.hyperfresh.mcuniverse.network.HealthMonitor;
+import com.hyperfresh.mcuniverse.network.ServerHealth;
 import com.hyperfresh.mcuniverse.server.networked.UniverseServer;
 import com.hyperfresh.mcuniverse.server.networked.stored.StoredServer;
 import com.octopod.util.common.Math;
@@ -15,6 +15,7 @@ import com.octopod.util.minecraft.command.Default;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author Octopod - octopodsquad@gmail.com
@@ -30,16 +31,18 @@ public class ServerCommands
 	@SuppressWarnings("unchecked")
 	public void serverList(MinecraftCommandSource source)
 	{
-		ServerDatabase database = UniverseAPI.getInstance().getServerDatabase();
+		//A snapshot, so servers removed while listing don't disappear halfway through
+		ServerSnapshot snapshot = UniverseAPI.getInstance().getServerDatabase().getSnapshot();
 		new ChatElement("Server List", ChatColor.AQUA, ChatFormat.BOLD);//send(source);
-		List<String> servernames = new ArrayList<>(database.getServerNames());
+		List<String> servernames = new ArrayList<>(snapshot.getServerNames());
 		Collections.sort(servernames);
 		for(String servername: servernames)
 		{
-			UniverseServer server = database.getServer(servername);
-			int total_players = server.getOnlinePlayers().size();
+			UniverseServer server = snapshot.getServer(servername);
+			int total_players = server.getOnlinePlayerCount();
 			int max_players = server.getMaxPlayers();
 			boolean online = server.isOnline();
+			boolean stale = UniverseAPI.getInstance().getServerDatabase().isStale(servername);
 			ChatElement playercount;
 			ChatElement element = new ChatElement("    ");
 			if(server instanceof StoredServer)
@@ -54,7 +57,7 @@ public class ServerCommands
 				}
 				element.tooltip(
 					Chat.colorize(server.getServerName()),
-					ChatColor.GRAY + "(Discovered from an external source)",
+					ChatColor.GRAY + (stale ? "(Known from the last run, refreshing...)" : "(Discovered from an external source)"),
 					ChatColor.DARK_GRAY + "----------------",
 					ChatColor.GOLD + "Players: " + ChatColor.WHITE + total_players,
 					Chat.colorize("&6Max Players: &f" + (max_players == -1 ? "&7UNKNOWN" : max_players)),
@@ -112,65 +115,76 @@ public class ServerCommands
 		permission = "switchcore.server.ping",
 		description = "Pings a server."
 	)
-	public void ping(final MinecraftCommandSource source, final String server, @Default("1") final int pings)
+	public void ping(final MinecraftCommandSource source, final String server, @Default("0") final int pings)
 	{
-		source.sendMessage("&aPinging &f\"" + server + "\"&a " + pings + " times");
+		HealthMonitor monitor = UniverseAPI.getInstance().getHealthMonitor();
+		if(monitor == null)
+		{
+			source.sendMessage("&cNot connected yet");
+			return;
+		}
 
-		new Thread()
+		ServerHealth health = monitor.getHealth(server);
+		if(health.getRtt() < 0)
 		{
-			public void run()
-			{
-				double valid_pings = 0;
-				double total_time = 0;
-				for(int i = 0; i < pings; i++)
-				{
-					long ping = ping(i, server);
-					if(ping > -1)
-					{
-						valid_pings++;
-						total_time += ping;
-					}
-				}
-				if(valid_pings > 0)
-				{
-					ChatElement e_title = new ChatElement("- Ping Results -", ChatColor.GREEN);
-					ChatElement e_ping = new ChatElement(Chat.colorize("&aAverage Ping&7: &f" + Math.round(total_time / valid_pings, 2) + "ms"));
-					ChatElement e_time = new ChatElement(Chat.colorize("&aTotal Time&7: &f" + (int)total_time));
+			source.sendMessage("&aPing&7: &8(no answers yet)");
+		}
+		else
+		{
+			source.sendMessage("&aPing&7: &f" + Math.round(health.getRtt(), 2) + "ms &7(jitter &f" + Math.round(health.getJitter(), 2) + "ms&7)");
+		}
+		source.sendMessage("&aLoss&7: &f" + Math.round(health.getLoss() * 100, 1) + "%" + (monitor.isReachable(server) ? "" : " &c(UNREACHABLE)"));
 
-					new ChatElement(ChatColor.DARK_GRAY).
-						append("+------------------------+").
-						append(new ChatElement(ChatColor.DARK_GRAY).filler(2).append('|').append(e_title).block(148, ChatAlignment.CENTER).append('|')).
-						append(new ChatElement(ChatColor.DARK_GRAY).filler(2).append('|').filler(2).append("------------------------").filler(2).append('|')).
-						append(new ChatElement(ChatColor.DARK_GRAY).filler(2).append('|').sp().append(e_ping).block(144, ChatAlignment.LEFT).append('|')).
-						append(new ChatElement(ChatColor.DARK_GRAY).filler(2).append('|').sp().append(e_time).block(144, ChatAlignment.LEFT).append('|')).
-						append("+------------------------+");//.
-					//send(source, true);
-				}
-				else
+		if(pings <= 0) return;
+
+		//Send every ping at once, and report when the last one is answered or times out
+		source.sendMessage("&aPinging &f\"" + server + "\"&a " + pings + " times");
+		List<CompletableFuture<Long>> results = new ArrayList<>();
+		for(int i = 0; i < pings; i++)
+		{
+			results.add(monitor.ping(server));
+		}
+		CompletableFuture.allOf(results.toArray(new CompletableFuture[results.size()])).thenRun(() ->
+		{
+			double valid_pings = 0;
+			double total_time = 0;
+			for(CompletableFuture<Long> result: results)
+			{
+				Long ping = result.join();
+				if(ping != null)
 				{
-					source.sendMessage("&aPing&7: &cTIMED OUT");
+					valid_pings++;
+					total_time += ping;
 				}
 			}
-		}.start();
+			if(valid_pings > 0)
+			{
+				source.sendMessage("&aAverage Ping&7: &f" + Math.round(total_time / valid_pings, 2) + "ms &7(" + (int)valid_pings + "/" + pings + " answered)");
+			}
+			else
+			{
+				source.sendMessage("&aPing&7: &cTIMED OUT");
+			}
+		});
 	}
 
-	private long ping(final int id, String server)
+	@Command
+	(
+		aliases = {"/find"},
+		permission = "switchcore.player.find",
+		description = "Shows which server a player is on."
+	)
+	public void find(MinecraftCommandSource source, String player)
 	{
-		final Packet message = new PacketOutServerPing(id);
-		long time = System.currentTimeMillis();
-
-		TempListenerFilter<NetworkPacketInEvent> filter = new TempListenerFilter<NetworkPacketInEvent>()
+		String server = UniverseAPI.getInstance().findPlayer(player);
+		if(server == null)
 		{
-			@Override
-			public boolean onEvent(TempListener<NetworkPacketInEvent> listener, NetworkPacketInEvent event)
-			{
-				Packet packet = event.getPacket();
-				return (packet instanceof PacketInServerPing && ((PacketInServerPing)packet).getPingID() == id);
-			}
-		};
-
-		message.send(server);
-		return new TempListener<>(NetworkPacketInEvent.class, filter).waitFor(500) ? System.currentTimeMillis() - time : -1;
+			source.sendMessage("&b" + player + " &7isn't online");
+		}
+		else
+		{
+			source.sendMessage("&b" + player + " &7is on &a" + UniverseAPI.getInstance().getServer(server).getServerName());
+		}
 	}
 
 //	@Command
@@ -1,71 +1,473 @@
 package com.hyperfresh.mcuniverse.database;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import com.hyperfresh.mcuniverse.UniverseAPI;
+import com.hyperfresh.mcuniverse.network.ServerHealth;
+import com.hyperfresh.mcuniverse.server.ServerProperty;
+import com.hyperfresh.mcuniverse.server.UniverseProperty;
 import com.hyperfresh.mcuniverse.server.networked.UniverseServer;
 import com.hyperfresh.mcuniverse.server.networked.local.LocalServer;
+import com.hyperfresh.mcuniverse.server.networked.stored.StoredServer;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
+ * Keeps servers in an immutable ServerSnapshot that's swapped out whenever a server is added or removed.
+ * Reading never locks, and readers can keep using a snapshot while the database changes.
+ *
+ * When given a folder, other servers are also kept on disk in a ServerJournal, so they're known again after a restart.
+ * Changes only mark a server as dirty; a writer thread journals every dirty server at most once
+ * per <code>flushInterval</code>, and compacts the journal into a snapshot once it holds <code>compactAfter</code> records.
+ *
  * @author Octopod - octopodsquad@gmail.com
  */
 public class LocalFileDatabase implements ServerDatabase
 {
-	private Map<String, UniverseServer> servers = new HashMap<>();
+	private final AtomicReference<ServerSnapshot> snapshot = new AtomicReference<>(ServerSnapshot.EMPTY);
 
+	/**
+	 * Kept apart from the servers, since a server is replaced whenever it's discovered again.
+	 */
+	private Map<String, ServerHealth> health = new ConcurrentHashMap<>();
+
+	private Map<String, ServerGroup> groups = new ConcurrentHashMap<>();
+
+	private final Gson gson = new Gson();
+
+	/**
+	 * The files servers are kept in, or null if they're only kept in memory.
+	 */
+	private final ServerJournal journal;
+
+	private final long flushInterval;
+
+	private final int compactAfter;
+
+	/**
+	 * Servers that changed since they were last journaled.
+	 */
+	private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Servers loaded from disk that haven't been discovered again yet.
+	 */
+	private final Set<String> stale = ConcurrentHashMap.newKeySet();
+
+	private final Object signal = new Object();
+
+	private volatile boolean compactRequested = false;
+
+	private Thread writer = null;
+
+	private volatile boolean running = false;
+
+	/**
+	 * Creates a database that's only kept in memory.
+	 */
 	public LocalFileDatabase()
 	{
-		servers.put(UniverseAPI.getInstance().getConnection().getServerIdentifier(), new LocalServer(UniverseAPI.getInstance().getInterface()));
+		this(null, 0, 0, false);
+	}
+
+	/**
+	 * Creates a database that's kept on disk.
+	 *
+	 * @param directory the folder to keep servers in
+	 * @param flushInterval the shortest time, in ms, between writes to the journal
+	 * @param compactAfter the amount of journal records before the journal is compacted into a snapshot
+	 * @param sync whether to wait for every write to reach the disk
+	 */
+	public LocalFileDatabase(File directory, long flushInterval, int compactAfter, boolean sync)
+	{
+		this.journal = directory == null ? null : new ServerJournal(directory, sync);
+		this.flushInterval = flushInterval;
+		this.compactAfter = Math.max(1, compactAfter);
+		addServer(new LocalServer(UniverseAPI.getInstance().getInterface()));
+	}
+
+	@Override
+	public ServerSnapshot getSnapshot()
+	{
+		return snapshot.get();
 	}
 
 	@Override
 	public UniverseServer getServer(String server)
 	{
-		if(!servers.containsKey(server)) throw new NullPointerException("UniverseServer '" + server + "' not found");
-		return servers.get(server);
+		UniverseServer found = snapshot.get().getServer(server);
+		if(found == null) throw new NullPointerException("UniverseServer '" + server + "' not found");
+		return found;
 	}
 
 	@Override
 	public Collection<UniverseServer> getServers()
 	{
-		return servers.values();
+		return snapshot.get().getServers();
 	}
 
 	@Override
 	public boolean serverExists(String server)
 	{
-		return servers.containsKey(server);
+		return snapshot.get().contains(server);
 	}
 
 	@Override
 	public void addServer(UniverseServer server)
 	{
-		servers.put(server.getServerUsername(), server);
+		ServerSnapshot current;
+		do
+		{
+			current = snapshot.get();
+		}
+		while(!snapshot.compareAndSet(current, current.with(server)));
+		stale.remove(server.getServerUsername());
+		markDirty(server.getServerUsername());
+	}
+
+	@Override
+	public UniverseServer addServerIfAbsent(UniverseServer server)
+	{
+		ServerSnapshot current;
+		do
+		{
+			current = snapshot.get();
+			UniverseServer existing = current.getServer(server.getServerUsername());
+			if(existing != null) return existing;
+		}
+		while(!snapshot.compareAndSet(current, current.with(server)));
+		markDirty(server.getServerUsername());
+		return server;
+	}
+
+	@Override
+	public void updateServer(String server)
+	{
+		markDirty(server);
 	}
 
 	@Override
 	public void removeServer(String server)
 	{
-		servers.remove(server);
+		ServerSnapshot current;
+		do
+		{
+			current = snapshot.get();
+		}
+		while(!snapshot.compareAndSet(current, current.without(server)));
+		health.remove(server);
+		stale.remove(server);
+		markDirty(server);
+	}
+
+	@Override
+	public boolean isStale(String server)
+	{
+		return stale.contains(server);
+	}
+
+	@Override
+	public Collection<String> getStaleServers()
+	{
+		return new ArrayList<>(stale);
+	}
+
+	@Override
+	public ServerHealth getHealth(String server)
+	{
+		return health.get(server);
+	}
+
+	@Override
+	public void setHealth(String server, ServerHealth health)
+	{
+		this.health.put(server, health);
+	}
+
+	@Override
+	public void addGroup(ServerGroup group)
+	{
+		groups.put(group.getName(), group);
+	}
+
+	@Override
+	public ServerGroup getGroup(String name)
+	{
+		return groups.get(name);
+	}
+
+	@Override
+	public void removeGroup(String name)
+	{
+		groups.remove(name);
+	}
+
+	@Override
+	public Collection<ServerGroup> getGroups()
+	{
+		return groups.values();
 	}
 
 	@Override
 	public Collection<String> getServerNames()
 	{
-		return servers.keySet();
+		return snapshot.get().getServerNames();
+	}
+
+	private void markDirty(String server)
+	{
+		if(journal == null || !running) return;
+
+		if(dirty.add(server))
+		{
+			synchronized(signal)
+			{
+				signal.notify();
+			}
+		}
 	}
 
+	/**
+	 * Saves every server in a new snapshot right away. The writer thread keeps running.
+	 */
 	@Override
 	public void write()
 	{
+		if(journal == null) return;
 
+		//The journal isn't thread-safe, so this takes turns with the writer thread
+		synchronized(journal)
+		{
+			try
+			{
+				dirty.clear();
+				journal.compact(encodeAll(snapshot.get()));
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+		}
 	}
 
+	/**
+	 * Loads the servers kept on disk, and starts the writer thread.
+	 * Servers that are already in the database (like this one) aren't replaced.
+	 * Loaded servers are stale until they're added again, such as when they answer a discover.
+	 */
 	@Override
 	public void read()
 	{
+		if(journal == null || running) return;
+
+		try
+		{
+			String self = UniverseAPI.getInstance().getServerIdentifier();
+			for(Map.Entry<String, String> entry: journal.load().entrySet())
+			{
+				if(entry.getKey().equals(self)) continue;
+
+				UniverseServer server = decode(entry.getKey(), entry.getValue());
+				if(server != null && addServerIfAbsent(server) == server) stale.add(entry.getKey());
+			}
+			if(!stale.isEmpty()) UniverseAPI.getInstance().getLogger().i("Loaded &a" + stale.size() + "&7 servers from the last run");
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+			return;
+		}
+		startWriter();
+	}
+
+	@Override
+	public void close()
+	{
+		if(journal == null) return;
+
+		stopWriter();
+		write();
+		try
+		{
+			journal.close();
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	private synchronized void startWriter()
+	{
+		running = true;
+		writer = new Thread("Universe Database Writer")
+		{
+			@Override
+			public void run()
+			{
+				while(running)
+				{
+					try
+					{
+						synchronized(signal)
+						{
+							while(running && dirty.isEmpty() && !compactRequested) signal.wait();
+						}
+						flush();
+
+						//Changes made in the meantime are written together in the next batch
+						Thread.sleep(flushInterval);
+					}
+					catch (InterruptedException e)
+					{
+						return;
+					}
+					catch (Exception e)
+					{
+						e.printStackTrace();
+					}
+				}
+			}
+		};
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	private synchronized void stopWriter()
+	{
+		running = false;
+		if(writer == null) return;
+
+		writer.interrupt();
+		try
+		{
+			writer.join(5000);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		writer = null;
+	}
+
+	/**
+	 * Asks the writer thread to compact the journal soon.
+	 */
+	public void requestCompaction()
+	{
+		compactRequested = true;
+		synchronized(signal)
+		{
+			signal.notify();
+		}
+	}
+
+	/**
+	 * Journals every dirty server, and compacts the journal if it's grown too big.
+	 */
+	private void flush() throws IOException
+	{
+		synchronized(journal)
+		{
+			Map<String, String> changes = new LinkedHashMap<>();
+			Iterator<String> iterator = dirty.iterator();
+			while(iterator.hasNext())
+			{
+				String server = iterator.next();
+				iterator.remove();
+
+				//Read the server after unmarking it, so changes made from here on mark it again
+				UniverseServer current = snapshot.get().getServer(server);
+				if(current == null)
+				{
+					changes.put(server, null);
+				}
+				else if(!(current instanceof LocalServer))
+				{
+					changes.put(server, encode(current));
+				}
+			}
+			journal.append(changes);
+
+			if(compactRequested || journal.getJournalSize() >= compactAfter)
+			{
+				compactRequested = false;
+				journal.compact(encodeAll(snapshot.get()));
+			}
+		}
+	}
+
+	private Map<String, String> encodeAll(ServerSnapshot snapshot)
+	{
+		Map<String, String> servers = new LinkedHashMap<>();
+		for(UniverseServer server: snapshot.getServers())
+		{
+			if(!(server instanceof LocalServer)) servers.put(server.getServerUsername(), encode(server));
+		}
+		return servers;
+	}
+
+	/**
+	 * Encodes a server's name and properties. Only UniverseProperties are kept, by name.
+	 * The players online are left out, since they'll have left by the time the file is read again.
+	 */
+	private String encode(UniverseServer server)
+	{
+		JsonObject object = new JsonObject();
+		object.addProperty("name", server.getServerName());
+
+		JsonObject properties = new JsonObject();
+		for(Map.Entry<ServerProperty, Object> property: server.getPropertyMap().entrySet())
+		{
+			if(property.getKey() instanceof UniverseProperty && property.getKey() != UniverseProperty.ONLINE_PLAYERS && property.getValue() != null)
+			{
+				properties.add(((UniverseProperty)property.getKey()).name(), gson.toJsonTree(property.getValue()));
+			}
+		}
+		object.add("properties", properties);
+		return gson.toJson(object);
+	}
+
+	@SuppressWarnings("unchecked")
+	private UniverseServer decode(String id, String data)
+	{
+		try
+		{
+			JsonObject object = new JsonParser().parse(data).getAsJsonObject();
+			StoredServer server = new StoredServer(id);
+			if(object.has("name")) server.setServerName(object.get("name").getAsString());
 
+			for(Map.Entry<String, JsonElement> property: object.getAsJsonObject("properties").entrySet())
+			{
+				UniverseProperty key;
+				try
+				{
+					key = UniverseProperty.valueOf(property.getKey());
+				}
+				catch (IllegalArgumentException e)
+				{
+					continue; //A property from a newer version
+				}
+				if(key == UniverseProperty.ONLINE_PLAYERS) continue; //Written by older versions
+				server.setProperty(key, gson.fromJson(property.getValue(), key.getType()));
+			}
+			return server;
+		}
+		catch (Exception e)
+		{
+			UniverseAPI.getInstance().getLogger().w("Unable to load stored server " + id + ": " + e.getMessage());
+			return null;
+		}
 	}
 }
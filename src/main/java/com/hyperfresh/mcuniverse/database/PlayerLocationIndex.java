@@ -0,0 +1,223 @@
+package com.hyperfresh.mcuniverse.database;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Knows which server every player on the network is on, by UUID and by lowercase name,
+ * so finding a player is a lookup instead of asking every server.
+ *
+ * Kept up to date from join and leave packets, and reconciled whenever a server's full player list arrives
+ * (from a player list packet, or a LilypadEssentials sync). Some sources only know names, so a player can be indexed
+ * without a UUID until a join packet fills it in.
+ *
+ * Lookups never lock; changes are synchronized so the maps always agree with each other.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class PlayerLocationIndex
+{
+	private static class Location
+	{
+		final String uuid;
+		final String name;
+		final String server;
+
+		Location(String uuid, String name, String server)
+		{
+			this.uuid = uuid;
+			this.name = name;
+			this.server = server;
+		}
+	}
+
+	private final Map<String, Location> byUUID = new ConcurrentHashMap<>();
+
+	private final Map<String, Location> byName = new ConcurrentHashMap<>();
+
+	/**
+	 * Every player on each server, so a server's players can be reconciled or dropped at once.
+	 */
+	private final Map<String, Set<Location>> byServer = new ConcurrentHashMap<>();
+
+	/**
+	 * Records that a player is on a server, moving them off any server they were on before.
+	 *
+	 * @param server the server's identifier
+	 * @param uuid the player's UUID, or null if it isn't known
+	 * @param name the player's name, or null if it isn't known
+	 */
+	public synchronized void put(String server, String uuid, String name)
+	{
+		index(server, uuid, name);
+	}
+
+	/**
+	 * @return the player's new entry, or null if neither the UUID nor the name is known
+	 */
+	private Location index(String server, String uuid, String name)
+	{
+		if(uuid == null && name == null) return null;
+		name = name == null ? null : name.toLowerCase();
+
+		Location old = uuid == null ? null : byUUID.get(uuid);
+		if(old == null && name != null) old = byName.get(name);
+		if(old != null)
+		{
+			//Keep whatever the old entry knew that this one doesn't
+			if(uuid == null) uuid = old.uuid;
+			if(name == null) name = old.name;
+			remove(old);
+		}
+		Location location = new Location(uuid, name, server);
+
+		//Someone else can't be indexed under this name anymore
+		Location other = name == null ? null : byName.get(name);
+		if(other != null) remove(other);
+
+		if(uuid != null) byUUID.put(uuid, location);
+		if(name != null) byName.put(name, location);
+		byServer.computeIfAbsent(server, k -> new HashSet<>()).add(location);
+		return location;
+	}
+
+	/**
+	 * Records that a player left a server.
+	 * Does nothing if the player has already been seen on another server, since leave and join packets
+	 * from two different servers can arrive in either order.
+	 *
+	 * @param server the server's identifier
+	 * @param uuid the player's UUID
+	 */
+	public synchronized void remove(String server, String uuid)
+	{
+		Location location = byUUID.get(uuid);
+		if(location != null && location.server.equals(server)) remove(location);
+	}
+
+	private void remove(Location location)
+	{
+		if(location.uuid != null) byUUID.remove(location.uuid, location);
+		if(location.name != null) byName.remove(location.name, location);
+
+		Set<Location> players = byServer.get(location.server);
+		if(players != null)
+		{
+			players.remove(location);
+			if(players.isEmpty()) byServer.remove(location.server);
+		}
+	}
+
+	/**
+	 * Replaces the players on a server with its full player list.
+	 * Players in the list are moved to this server and merged with what was already known about them,
+	 * and every other player on the server is dropped. That includes players only known by the kind of key
+	 * the list doesn't have, since they can't be matched to it, and would otherwise be counted twice.
+	 *
+	 * @param server the server's identifier
+	 * @param UUIDs the players' UUIDs, or null if the list only has names
+	 * @param names the players' names in the same order, or null if the list only has UUIDs
+	 */
+	public synchronized void reconcile(String server, List<String> UUIDs, List<String> names)
+	{
+		int size = Math.max(UUIDs == null ? 0 : UUIDs.size(), names == null ? 0 : names.size());
+		Set<Location> listed = new HashSet<>();
+		for(int i = 0; i < size; i++)
+		{
+			String uuid = UUIDs == null || i >= UUIDs.size() ? null : UUIDs.get(i);
+			String name = names == null || i >= names.size() ? null : names.get(i);
+			Location location = index(server, uuid, name);
+			if(location != null) listed.add(location);
+		}
+
+		Set<Location> current = byServer.get(server);
+		if(current == null) return;
+		for(Location location: current.toArray(new Location[current.size()]))
+		{
+			if(!listed.contains(location)) remove(location);
+		}
+	}
+
+	/**
+	 * Drops every player on a server, such as when the server goes offline.
+	 *
+	 * @param server the server's identifier
+	 */
+	public synchronized void removeServer(String server)
+	{
+		Set<Location> players = byServer.remove(server);
+		if(players == null) return;
+
+		for(Location location: players)
+		{
+			if(location.uuid != null) byUUID.remove(location.uuid, location);
+			if(location.name != null) byName.remove(location.name, location);
+		}
+	}
+
+	/**
+	 * Gets the server a player is on.
+	 *
+	 * @param uuid the player's UUID
+	 * @return the server's identifier, or null if the player isn't online
+	 */
+	public String getServer(String uuid)
+	{
+		Location location = byUUID.get(uuid);
+		return location == null ? null : location.server;
+	}
+
+	/**
+	 * Gets the server a player is on.
+	 *
+	 * @param name the player's name, in any case
+	 * @return the server's identifier, or null if the player isn't online
+	 */
+	public String getServerByName(String name)
+	{
+		Location location = byName.get(name.toLowerCase());
+		return location == null ? null : location.server;
+	}
+
+	/**
+	 * Gets a player's name, as it's indexed (in lowercase).
+	 *
+	 * @param player the player's UUID or name
+	 * @return the name, or null if the player isn't online or is only known by UUID
+	 */
+	public String getName(String player)
+	{
+		Location location = byUUID.get(player);
+		if(location == null) location = byName.get(player.toLowerCase());
+		return location == null ? null : location.name;
+	}
+
+	/**
+	 * Gets the servers that have players on them.
+	 *
+	 * @return the servers' identifiers
+	 */
+	public Set<String> getServers()
+	{
+		return Collections.unmodifiableSet(byServer.keySet());
+	}
+
+	/**
+	 * Gets the amount of players on the network.
+	 *
+	 * @return the amount of players
+	 */
+	public synchronized int size()
+	{
+		int size = 0;
+		for(Set<Location> players: byServer.values())
+		{
+			size += players.size();
+		}
+		return size;
+	}
+}
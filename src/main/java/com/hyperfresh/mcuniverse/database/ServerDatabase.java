@@ -1,5 +1,6 @@
 package com.hyperfresh.mcuniverse.database;
 
+import com.hyperfresh.mcuniverse.network.ServerHealth;
 import com.hyperfresh.mcuniverse.server.networked.UniverseServer;
 
 import java.util.Collection;
@@ -26,6 +27,14 @@ public interface ServerDatabase
 	 */
 	public void addServer(UniverseServer server);
 
+	/**
+	 * Adds a server to the database, unless there's already a server with the same identifier.
+	 *
+	 * @param server the server
+	 * @return the server already in the database, or <code>server</code> if it was added
+	 */
+	public UniverseServer addServerIfAbsent(UniverseServer server);
+
 	public boolean serverExists(String server);
 
 	/**
@@ -35,15 +44,82 @@ public interface ServerDatabase
 	 */
 	public void removeServer(String server);
 
+	/**
+	 * Tells the database that a server's properties were changed in place, so it can save them.
+	 *
+	 * @param server the server's identifier
+	 */
+	public void updateServer(String server);
+
+	/**
+	 * Gets an immutable view of every server right now.
+	 * Use this instead of several calls to the other methods when they need to agree with each other.
+	 *
+	 * @return the current snapshot
+	 */
+	public ServerSnapshot getSnapshot();
+
+	/**
+	 * Checks if a server was loaded from disk and hasn't been heard from since.
+	 * Stale servers are shown and redirected to like any other, but their properties may be out of date.
+	 *
+	 * @param server the server's identifier
+	 * @return true if the server is stale
+	 */
+	public boolean isStale(String server);
+
+	/**
+	 * Gets every server that was loaded from disk and hasn't been heard from since.
+	 *
+	 * @return the stale servers' identifiers
+	 */
+	public Collection<String> getStaleServers();
+
 	/**
 	 * Gets all the currently saved server identifiers.
+	 * The collection doesn't change when servers are added or removed later.
 	 *
 	 * @return all the saved server identifiers
 	 */
 	public Collection<String> getServerNames();
 
+	/**
+	 * Gets all the currently saved servers.
+	 * The collection doesn't change when servers are added or removed later.
+	 *
+	 * @return all the saved servers
+	 */
 	public Collection<UniverseServer> getServers();
 
+	/**
+	 * Gets how well this server can reach a server, as last measured by the HealthMonitor.
+	 *
+	 * @param server the server's identifier
+	 * @return the server's health, or null if it hasn't been pinged yet
+	 */
+	public ServerHealth getHealth(String server);
+
+	public void setHealth(String server, ServerHealth health);
+
+	/**
+	 * Adds a group of servers to the database, replacing any group with the same name.
+	 *
+	 * @param group the group
+	 */
+	public void addGroup(ServerGroup group);
+
+	/**
+	 * Gets a group of servers.
+	 *
+	 * @param name the group's name
+	 * @return the group, or null if there isn't one with that name
+	 */
+	public ServerGroup getGroup(String name);
+
+	public void removeGroup(String name);
+
+	public Collection<ServerGroup> getGroups();
+
 	/**
 	 * Saves this database.
 	 */
@@ -53,4 +129,9 @@ public interface ServerDatabase
 	 * Reads the database.
 	 */
 	public void read();
+
+	/**
+	 * Saves this database and stops saving it in the background.
+	 */
+	public void close();
 }
@@ -0,0 +1,161 @@
+package com.hyperfresh.mcuniverse.database;
+
+import com.hyperfresh.mcuniverse.server.ServerProperty;
+import com.hyperfresh.mcuniverse.server.UniverseProperty;
+import com.hyperfresh.mcuniverse.server.networked.UniverseServer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A named set of servers that packets can be sent to at once, such as a cluster of minigame servers.
+ * Members are picked by a rule (an explicit list, a tag, or a property value) whenever the group is used,
+ * so servers join and leave the group as they're discovered or their properties change.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class ServerGroup
+{
+	private final String name;
+
+	private final Predicate<UniverseServer> rule;
+
+	public ServerGroup(String name, Predicate<UniverseServer> rule)
+	{
+		this.name = name;
+		this.rule = rule;
+	}
+
+	/**
+	 * Creates a group of specific servers.
+	 *
+	 * @param name the group's name
+	 * @param servers the servers' identifiers
+	 * @return the group
+	 */
+	public static ServerGroup of(String name, String... servers)
+	{
+		return of(name, Arrays.asList(servers));
+	}
+
+	public static ServerGroup of(String name, Collection<String> servers)
+	{
+		final Set<String> members = new HashSet<>(servers);
+		return new ServerGroup(name, server -> members.contains(server.getServerUsername()));
+	}
+
+	/**
+	 * Creates a group of every server with a tag, set by <code>server-tags</code> in their config.
+	 *
+	 * @param name the group's name
+	 * @param tag the tag
+	 * @return the group
+	 */
+	@SuppressWarnings("unchecked")
+	public static ServerGroup withTag(String name, final String tag)
+	{
+		return new ServerGroup(name, server ->
+		{
+			Object tags = server.getProperty(UniverseProperty.TAGS);
+			return tags instanceof Collection && ((Collection<Object>)tags).contains(tag);
+		});
+	}
+
+	/**
+	 * Creates a group of every server where a property has a certain value.
+	 *
+	 * @param name the group's name
+	 * @param property the property
+	 * @param value the value
+	 * @return the group
+	 */
+	public static <T> ServerGroup withProperty(String name, final ServerProperty<T> property, final T value)
+	{
+		return new ServerGroup(name, server -> Objects.equals(server.getProperty(property), value));
+	}
+
+	/**
+	 * Parses groups in the form <code>name:tag:tag</code> or <code>name:servers:server1|server2</code>, separated by commas.
+	 *
+	 * @param groups the groups
+	 * @return the parsed groups
+	 * @throws IllegalArgumentException if a group is malformed
+	 */
+	public static List<ServerGroup> parse(String groups)
+	{
+		return parse(groups, group -> {throw new IllegalArgumentException("Invalid server group '" + group + "'");});
+	}
+
+	/**
+	 * Parses groups in the form <code>name:tag:tag</code> or <code>name:servers:server1|server2</code>, separated by commas,
+	 * skipping malformed ones.
+	 *
+	 * @param groups the groups
+	 * @param invalid given each malformed group
+	 * @return the parsed groups
+	 */
+	public static List<ServerGroup> parse(String groups, Consumer<String> invalid)
+	{
+		List<ServerGroup> parsed = new ArrayList<>();
+		if(groups == null) return parsed;
+
+		for(String group: groups.split(","))
+		{
+			group = group.trim();
+			if(group.isEmpty()) continue;
+
+			String[] split = group.split(":");
+			if(split.length != 3 || split[0].isEmpty())
+			{
+				invalid.accept(group);
+				continue;
+			}
+
+			switch(split[1])
+			{
+				case "tag":
+					parsed.add(withTag(split[0], split[2]));
+					break;
+				case "servers":
+					parsed.add(of(split[0], split[2].split("\\|")));
+					break;
+				default:
+					invalid.accept(group);
+			}
+		}
+		return parsed;
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	public boolean contains(UniverseServer server)
+	{
+		return rule.test(server);
+	}
+
+	/**
+	 * Gets the identifiers of the servers in this group.
+	 *
+	 * @param database the database to pick the servers from
+	 * @return the servers' identifiers
+	 */
+	public List<String> getMembers(ServerDatabase database)
+	{
+		List<String> members = new ArrayList<>();
+		for(UniverseServer server: database.getServers())
+		{
+			if(rule.test(server)) members.add(server.getServerUsername());
+		}
+		return members;
+	}
+}
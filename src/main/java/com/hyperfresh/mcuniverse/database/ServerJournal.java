@@ -0,0 +1,296 @@
+package com.hyperfresh.mcuniverse.database;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Stores servers on disk as a compacted snapshot file plus an append-only journal of the changes made since.
+ * Loading replays the journal over the snapshot, so the time it takes is bounded by the snapshot's size plus
+ * however many records the journal is allowed to grow to before it's compacted into a new snapshot.
+ *
+ * Both files are a list of records: <code>[int length][int crc][byte op][server id]\0[data]</code>.
+ * A record that's cut short or fails its checksum (say, from a crash halfway through a write) ends the file,
+ * and is cut off the journal so new records don't end up behind it.
+ *
+ * Both files start with a GENERATION record, and a new snapshot gets a new generation. A journal whose generation
+ * doesn't match the snapshot's was written before that snapshot (the server crashed before the journal was emptied),
+ * so it's thrown away instead of being replayed over newer data.
+ *
+ * Not thread-safe; LocalFileDatabase only uses it from its writer thread.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class ServerJournal
+{
+	public static final byte PUT = 1;
+	public static final byte REMOVE = 2;
+	public static final byte GENERATION = 3;
+
+	/**
+	 * The length, crc and op of every record.
+	 */
+	private static final int HEADER = 9;
+
+	private final File snapshotFile;
+
+	private final File journalFile;
+
+	private final boolean sync;
+
+	private FileChannel journal = null;
+
+	private ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+
+	private int records = 0;
+
+	/**
+	 * The generation of the snapshot, which the journal has to match. Files written before generations had none (0).
+	 */
+	private long generation = 0;
+
+	/**
+	 * @param directory the folder to keep the files in
+	 * @param sync whether to wait for every write to reach the disk
+	 */
+	public ServerJournal(File directory, boolean sync)
+	{
+		this.snapshotFile = new File(directory, "servers.snapshot");
+		this.journalFile = new File(directory, "servers.journal");
+		this.sync = sync;
+	}
+
+	/**
+	 * Reads the snapshot and the journal, and opens the journal for appending.
+	 *
+	 * @return the data of every stored server, by server id
+	 */
+	public Map<String, String> load() throws IOException
+	{
+		Files.createDirectories(journalFile.getParentFile().toPath());
+
+		Map<String, String> servers = new LinkedHashMap<>();
+		if(snapshotFile.exists()) read(snapshotFile, servers);
+
+		open();
+		long end = read(journalFile, servers);
+		journal.truncate(end);
+		journal.position(end);
+		if(end == 0) startJournal();
+		return servers;
+	}
+
+	private void open() throws IOException
+	{
+		if(journal == null) journal = FileChannel.open(journalFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+	}
+
+	/**
+	 * Writes the snapshot's generation at the start of an empty journal.
+	 */
+	private void startJournal() throws IOException
+	{
+		buffer.clear();
+		put(GENERATION, Long.toString(generation), null);
+		buffer.flip();
+		while(buffer.hasRemaining()) journal.write(buffer);
+		if(sync) journal.force(false);
+	}
+
+	/**
+	 * Replays the records in a file.
+	 * The file is streamed rather than memory-mapped: a mapping stays open until it's garbage collected,
+	 * and on Windows an open mapping stops the journal from being truncated or the snapshot from being replaced.
+	 *
+	 * @return the position after the last good record
+	 */
+	private long read(File file, Map<String, String> servers) throws IOException
+	{
+		long size = file.length();
+		if(size == 0) return 0;
+
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath()), 64 * 1024)))
+		{
+			CRC32 crc = new CRC32();
+			int count = 0;
+			long position = 0;
+
+			while(size - position >= HEADER)
+			{
+				int length = in.readInt();
+				int checksum = in.readInt();
+				if(length < 1 || length > size - position - 8) break;
+
+				byte[] record = new byte[length];
+				in.readFully(record);
+				crc.reset();
+				crc.update(record, 0, length);
+				if((int)crc.getValue() != checksum) break;
+				position += 8 + length;
+
+				String payload = new String(record, 1, length - 1, StandardCharsets.UTF_8);
+				int split = payload.indexOf('\0');
+				String server = split == -1 ? payload : payload.substring(0, split);
+
+				if(record[0] == GENERATION)
+				{
+					long written = parseGeneration(server);
+					if(file.equals(snapshotFile))
+					{
+						generation = written;
+					}
+					else if(written != generation)
+					{
+						//Left over from before the last snapshot, which already has everything in it
+						records = 0;
+						return 0;
+					}
+					continue;
+				}
+
+				if(record[0] == PUT && split != -1)
+				{
+					servers.put(server, payload.substring(split + 1));
+				}
+				else if(record[0] == REMOVE)
+				{
+					servers.remove(server);
+				}
+				count++;
+			}
+
+			if(file.equals(journalFile)) records = count;
+			return position;
+		}
+	}
+
+	private static long parseGeneration(String generation)
+	{
+		try
+		{
+			return Long.parseLong(generation);
+		}
+		catch (NumberFormatException e)
+		{
+			return -1;
+		}
+	}
+
+	/**
+	 * Appends records to the journal in one write.
+	 *
+	 * @param changes the new data of each changed server, or null for servers that were removed
+	 */
+	public void append(Map<String, String> changes) throws IOException
+	{
+		if(changes.isEmpty()) return;
+		if(journal == null) throw new IOException("The journal hasn't been loaded");
+
+		buffer.clear();
+		for(Map.Entry<String, String> change: changes.entrySet())
+		{
+			put(change.getValue() == null ? REMOVE : PUT, change.getKey(), change.getValue());
+		}
+		buffer.flip();
+		while(buffer.hasRemaining()) journal.write(buffer);
+		if(sync) journal.force(false);
+
+		records += changes.size();
+	}
+
+	/**
+	 * Writes every server to a new snapshot, and empties the journal.
+	 * The snapshot is written to a temporary file first, so a crash leaves either the old or the new snapshot.
+	 * Works even if <code>load()</code> failed or was never called, since the new snapshot replaces everything.
+	 *
+	 * @param servers the data of every server, by server id
+	 */
+	public void compact(Map<String, String> servers) throws IOException
+	{
+		Files.createDirectories(snapshotFile.getParentFile().toPath());
+
+		//Never reused, even when the old snapshot couldn't be read, so no old journal can match it
+		long next = Math.max(generation + 1, System.currentTimeMillis());
+
+		File temp = new File(snapshotFile.getPath() + ".tmp");
+		try(FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+		{
+			buffer.clear();
+			put(GENERATION, Long.toString(next), null);
+			for(Map.Entry<String, String> server: servers.entrySet())
+			{
+				put(PUT, server.getKey(), server.getValue());
+
+				//Write out in chunks, so the buffer doesn't have to hold every server at once
+				if(buffer.position() > buffer.capacity() / 2)
+				{
+					buffer.flip();
+					while(buffer.hasRemaining()) channel.write(buffer);
+					buffer.clear();
+				}
+			}
+			buffer.flip();
+			while(buffer.hasRemaining()) channel.write(buffer);
+			channel.force(true);
+		}
+		Files.move(temp.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		generation = next;
+
+		//If the server crashes here, the old journal's generation no longer matches, so it won't be replayed
+		open();
+		journal.truncate(0);
+		journal.position(0);
+		records = 0;
+		startJournal();
+	}
+
+	private void put(byte op, String server, String data)
+	{
+		byte[] payload = (data == null ? server : server + '\0' + data).getBytes(StandardCharsets.UTF_8);
+		CRC32 crc = new CRC32();
+		crc.update(op);
+		crc.update(payload, 0, payload.length);
+
+		ensureCapacity(HEADER + payload.length);
+		buffer.putInt(payload.length + 1);
+		buffer.putInt((int)crc.getValue());
+		buffer.put(op);
+		buffer.put(payload);
+	}
+
+	private void ensureCapacity(int needed)
+	{
+		if(buffer.remaining() >= needed) return;
+
+		ByteBuffer larger = ByteBuffer.allocateDirect(Math.max(buffer.capacity() * 2, buffer.position() + needed));
+		buffer.flip();
+		larger.put(buffer);
+		buffer = larger;
+	}
+
+	/**
+	 * Gets the amount of records in the journal since the last snapshot.
+	 *
+	 * @return the amount of records
+	 */
+	public int getJournalSize()
+	{
+		return records;
+	}
+
+	public void close() throws IOException
+	{
+		if(journal != null) journal.close();
+		journal = null;
+	}
+}
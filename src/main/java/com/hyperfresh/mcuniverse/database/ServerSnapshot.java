@@ -0,0 +1,107 @@
+package com.hyperfresh.mcuniverse.database;
+
+import com.hyperfresh.mcuniverse.server.networked.UniverseServer;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable view of every server in a ServerDatabase at one point in time.
+ * Servers added or removed after the snapshot was taken don't show up in it, so it can be iterated
+ * (or looked up in several times) while the database keeps changing.
+ *
+ * Every change to the database makes a new snapshot with a higher version.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class ServerSnapshot
+{
+	public static final ServerSnapshot EMPTY = new ServerSnapshot(0, Collections.emptyMap());
+
+	private final long version;
+
+	private final Map<String, UniverseServer> servers;
+
+	private ServerSnapshot(long version, Map<String, UniverseServer> servers)
+	{
+		this.version = version;
+		this.servers = servers;
+	}
+
+	/**
+	 * Makes the next snapshot, with one server added or replaced.
+	 *
+	 * @param server the server
+	 * @return the new snapshot
+	 */
+	public ServerSnapshot with(UniverseServer server)
+	{
+		Map<String, UniverseServer> servers = new HashMap<>(this.servers);
+		servers.put(server.getServerUsername(), server);
+		return new ServerSnapshot(version + 1, Collections.unmodifiableMap(servers));
+	}
+
+	/**
+	 * Makes the next snapshot, with one server removed.
+	 *
+	 * @param server the server's identifier
+	 * @return the new snapshot, or this snapshot if the server wasn't in it
+	 */
+	public ServerSnapshot without(String server)
+	{
+		if(!servers.containsKey(server)) return this;
+
+		Map<String, UniverseServer> servers = new HashMap<>(this.servers);
+		servers.remove(server);
+		return new ServerSnapshot(version + 1, Collections.unmodifiableMap(servers));
+	}
+
+	/**
+	 * Gets the version of this snapshot. Later snapshots of the same database have higher versions.
+	 *
+	 * @return the version
+	 */
+	public long getVersion()
+	{
+		return version;
+	}
+
+	/**
+	 * Gets a server.
+	 *
+	 * @param server the server's identifier
+	 * @return the server, or null if it wasn't in the database when this snapshot was taken
+	 */
+	public UniverseServer getServer(String server)
+	{
+		return servers.get(server);
+	}
+
+	public boolean contains(String server)
+	{
+		return servers.containsKey(server);
+	}
+
+	public Set<String> getServerNames()
+	{
+		return servers.keySet();
+	}
+
+	public Collection<UniverseServer> getServers()
+	{
+		return servers.values();
+	}
+
+	public Map<String, UniverseServer> getServerMap()
+	{
+		return servers;
+	}
+
+	public int size()
+	{
+		return servers.size();
+	}
+}
@@ -17,10 +17,7 @@ public class EventBus
 
 	private <E extends Event> void checkHandlers(Class<E> type)
 	{
-		if (!handlerMap.containsKey(type))
-		{
-			handlerMap.put(type, new HashSet<>());
-		}
+		handlerMap.computeIfAbsent(type, t -> ConcurrentHashMap.newKeySet());
 	}
 
 	@SuppressWarnings("unchecked")
@@ -129,7 +126,7 @@ public class EventBus
 	}
 
 	@SuppressWarnings("unchecked")
-	public synchronized <E extends Event> void postEvent(final E event)
+	public <E extends Event> void postEvent(final E event)
 	{
 		if (handlerMap.containsKey(event.getClass()) || handlerMap.containsKey(Event.class))
 		{
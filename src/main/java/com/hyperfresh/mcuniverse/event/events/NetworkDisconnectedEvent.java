@@ -0,0 +1,8 @@
+package com.hyperfresh.mcuniverse.event.events;
+
+import com.hyperfresh.mcuniverse.event.Event;
+
+public class NetworkDisconnectedEvent extends Event
+{
+
+}
@@ -1,7 +1,9 @@
 package com.hyperfresh.mcuniverse.event.events;
 
+import com.hyperfresh.mcuniverse.UniverseAPI;
 import com.hyperfresh.mcuniverse.event.CancellableEvent;
 import com.hyperfresh.mcuniverse.event.Event;
+import com.hyperfresh.mcuniverse.network.ChannelRegistry;
 
 /**
  * @author Octopod - octopodsquad@gmail.com
@@ -10,9 +12,23 @@ public class NetworkMessageInEvent extends Event implements CancellableEvent
 {
 	String server, channel, message;
 
+	int channelId;
+
 	public NetworkMessageInEvent(String server, String channel, String message)
+	{
+		this(server, ChannelRegistry.UNREGISTERED, channel, message);
+	}
+
+	/**
+	 * @param server the sender's identifier
+	 * @param channelId the channel's id in this server's ChannelRegistry, or ChannelRegistry.UNREGISTERED
+	 * @param channel the channel
+	 * @param message the message
+	 */
+	public NetworkMessageInEvent(String server, int channelId, String channel, String message)
 	{
 		this.server = server;
+		this.channelId = channelId;
 		this.channel = channel;
 		this.message = message;
 	}
@@ -25,6 +41,7 @@ public class NetworkMessageInEvent extends Event implements CancellableEvent
 	public void setChannel(String channel)
 	{
 		this.channel = channel;
+		this.channelId = UniverseAPI.getInstance().getChannelRegistry().getId(channel);
 	}
 
 	public void setMessage(String message)
@@ -42,6 +59,17 @@ public class NetworkMessageInEvent extends Event implements CancellableEvent
 		return channel;
 	}
 
+	/**
+	 * Gets the channel's id in this server's ChannelRegistry.
+	 * Comparing ids is cheaper than comparing channel names.
+	 *
+	 * @return the channel's id, or ChannelRegistry.UNREGISTERED
+	 */
+	public int getChannelId()
+	{
+		return channelId;
+	}
+
 	public String getMessage()
 	{
 		return message;
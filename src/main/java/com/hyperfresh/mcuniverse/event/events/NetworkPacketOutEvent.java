@@ -1,5 +1,6 @@
 package com.hyperfresh.mcuniverse.event.events;
 
+import com.hyperfresh.mcuniverse.database.ServerGroup;
 import com.hyperfresh.mcuniverse.event.CancellableEvent;
 import com.hyperfresh.mcuniverse.event.Event;
 import com.hyperfresh.mcuniverse.packets.Packet;
@@ -10,6 +11,7 @@ import com.hyperfresh.mcuniverse.packets.Packet;
 public class NetworkPacketOutEvent extends Event implements CancellableEvent
 {
 	private String server;
+	private ServerGroup group = null;
 	private Packet packet;
 
 	private boolean cancelled = false;
@@ -26,6 +28,13 @@ public class NetworkPacketOutEvent extends Event implements CancellableEvent
 		this.packet = packet;
 	}
 
+	public NetworkPacketOutEvent(ServerGroup group, Packet packet)
+	{
+		this.server = null;
+		this.group = group;
+		this.packet = packet;
+	}
+
 	public void setServer(String server)
 	{
 		this.server = server;
@@ -41,6 +50,16 @@ public class NetworkPacketOutEvent extends Event implements CancellableEvent
 		return server;
 	}
 
+	/**
+	 * Gets the group this packet is being sent to.
+	 *
+	 * @return the group, or null if the packet isn't being sent to a group
+	 */
+	public ServerGroup getGroup()
+	{
+		return group;
+	}
+
 	public Packet getPacket()
 	{
 		return packet;
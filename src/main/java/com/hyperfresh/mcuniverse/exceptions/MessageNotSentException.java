@@ -0,0 +1,14 @@
+package com.hyperfresh.mcuniverse.exceptions;
+
+/**
+ * Thrown when a message couldn't be handed to the network, such as when the outbound queue is full.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class MessageNotSentException extends Exception
+{
+	public MessageNotSentException(String message)
+	{
+		super(message);
+	}
+}
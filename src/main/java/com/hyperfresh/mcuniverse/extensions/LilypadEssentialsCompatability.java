@@ -5,11 +5,15 @@ import com.hyperfresh.mcuniverse.database.ServerDatabase;
 import com.hyperfresh.mcuniverse.event.EventSubscribe;
 import com.hyperfresh.mcuniverse.event.events.NetworkMessageInEvent;
 import com.hyperfresh.mcuniverse.event.events.NetworkPacketOutEvent;
+import com.hyperfresh.mcuniverse.network.ChannelRegistry;
+import com.hyperfresh.mcuniverse.network.Lane;
 import com.hyperfresh.mcuniverse.server.networked.UniverseServer;
 import com.hyperfresh.mcuniverse.server.networked.stored.StoredServer;
 import net.minecraft.util.com.google.common.collect.Lists;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author Octopod - octopodsquad@gmail.com
@@ -22,9 +26,49 @@ public class LilypadEssentialsCompatability implements SwitchCoreExtension
 		return "LilypadEssentials Compatability";
 	}
 
+	//The ids of LilypadEssentials' channels
+	private int syncChannel;
+	private int dispatchChannel;
+	private int alertChannel;
+	private int findChannel;
+	private int sendAllChannel;
+	private int blackMessageChannel;
+	private int messageSuccessChannel;
+	private int messageChannel;
+	private int adminChannel;
+	private int glistChannel;
+	private int glistReturnChannel;
+	private int sendChannel;
+	private int sendRequestChannel;
+	private int sendResponseChannel;
+
+	/**
+	 * The last sync message from each server.
+	 */
+	private final Map<String, String> lastSync = new ConcurrentHashMap<>();
+
 	@Override
 	public void onEnable()
 	{
+		ChannelRegistry registry = UniverseAPI.getInstance().getChannelRegistry();
+		syncChannel = registry.register("lilyessentials.sync");
+		dispatchChannel = registry.register("lilyessentials.dispatch");
+		alertChannel = registry.register("lilyessentials.alert");
+		findChannel = registry.register("lilyessentials.find");
+		sendAllChannel = registry.register("lilyessentials.sendall");
+		blackMessageChannel = registry.register("lilyessentials.blackmessage");
+		messageSuccessChannel = registry.register("lilyessentials.messagesuccess");
+		messageChannel = registry.register("lilyessentials.message");
+		adminChannel = registry.register("lilyessentials.admin");
+		glistChannel = registry.register("lilyessentials.glist");
+		glistReturnChannel = registry.register("lilyessentials.glistreturn");
+		sendChannel = registry.register("lilyessentials.send");
+		sendRequestChannel = registry.register("lilyessentials.sendrequest");
+		sendResponseChannel = registry.register("lilyessentials.sendresponse");
+
+		//Sync messages are sent constantly, and shouldn't hold up anything players are waiting on
+		UniverseAPI.getInstance().getLaneRegistry().setLane("lilyessentials.sync", Lane.BULK);
+
 		UniverseAPI.getInstance().getEventBus().register(this);
 	}
 
@@ -43,95 +87,105 @@ public class LilypadEssentialsCompatability implements SwitchCoreExtension
 	@EventSubscribe
 	public void onMessageInbound(NetworkMessageInEvent event)
 	{
+		int channel = event.getChannelId();
+
 		//This runs so often that you'd might as well strangle your server with your hands right now.
 		//Seriously, it would probably be less painful.
-		if(event.getChannel().equals("lilyessentials.sync"))
+		if(channel == syncChannel)
 		{
+			event.setCancelled(true);
+
+			//Servers running Universe send numbered joins and leaves instead, and an unchanged list has nothing new
+			if(UniverseAPI.getInstance().getPresenceTracker().isTracked(event.getServer())) return;
+			if(event.getMessage().equals(lastSync.put(event.getServer(), event.getMessage()))) return;
+
 			String[] split = event.getMessage().split("\0");
 			String servername = split[0];
 			List<String> players = Lists.newArrayList(split);
 			players.remove(0);
 
+			//Creates the server if it's new, without replacing one another thread just added
 			ServerDatabase database = UniverseAPI.getInstance().getServerDatabase();
-			if(!database.serverExists(event.getServer()))
-			{
-				//Create new server
-				database.addServer(new StoredServer(event.getServer()));
-			}
-			UniverseServer server = database.getServer(event.getServer());
+			UniverseServer server = database.getSnapshot().getServer(event.getServer());
+			if(server == null) server = database.addServerIfAbsent(new StoredServer(event.getServer()));
 			if(server instanceof StoredServer)
 			{
 				StoredServer sserver = (StoredServer)server;
-				sserver.setServerName(servername);
-				sserver.setOnlinePlayers(players);
+				if(!servername.equals(sserver.getServerName()))
+				{
+					sserver.setServerName(servername);
+					database.updateServer(event.getServer());
+				}
+				sserver.setOnlinePlayerNames(players);
 			}
-			event.setCancelled(true);
+			UniverseAPI.getInstance().getPlayerIndex().reconcile(event.getServer(), null, players);
 		}
 
-		if(event.getChannel().equals("lilyessentials.dispatch"))
+		if(channel == dispatchChannel)
 		{
 			event.setCancelled(true);
 		}
 
-		if(event.getChannel().equals("lilyessentials.alert"))
+		if(channel == alertChannel)
 		{
 			event.setCancelled(true);
 		}
 
-		if(event.getChannel().equals("lilyessentials.find"))
+		//Players are found with the PlayerLocationIndex instead
+		if(channel == findChannel)
 		{
 			event.setCancelled(true);
 		}
 
-		if(event.getChannel().equals("lilyessentials.sendall"))
+		if(channel == sendAllChannel)
 		{
 			event.setCancelled(true);
 		}
 
-		if(event.getChannel().equals("lilyessentials.blackmessage"))
+		if(channel == blackMessageChannel)
 		{
 			event.setCancelled(true);
 		}
 
-		if(event.getChannel().equals("lilyessentials.messagesuccess"))
+		if(channel == messageSuccessChannel)
 		{
 			event.setCancelled(true);
 		}
 
-		if(event.getChannel().equals("lilyessentials.message"))
+		if(channel == messageChannel)
 		{
 			event.setCancelled(true);
 		}
 
-		if(event.getChannel().equals("lilyessentials.admin"))
+		if(channel == adminChannel)
 		{
 			event.setCancelled(true);
 		}
 
-		if(event.getChannel().equals("lilyessentials.glist"))
+		if(channel == glistChannel)
 		{
 			event.setCancelled(true);
 		}
 
-		if(event.getChannel().equals("lilyessentials.glistreturn"))
+		if(channel == glistReturnChannel)
 		{
 			event.setCancelled(true);
 		}
 
 		//The redirect request?
-		if(event.getChannel().equals("lilyessentials.send"))
+		if(channel == sendChannel)
 		{
 			event.setCancelled(true);
 		}
 
 		//Send back whether the player is welcomed on this server
-		if(event.getChannel().equals("lilyessentials.sendrequest"))
+		if(channel == sendRequestChannel)
 		{
 			event.setCancelled(true);
 		}
 
 		//This is the response to the above channel
-		if(event.getChannel().equals("lilyessentials.sendresponse"))
+		if(channel == sendResponseChannel)
 		{
 			event.setCancelled(true);
 		}
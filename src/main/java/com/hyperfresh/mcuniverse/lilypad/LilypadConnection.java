@@ -2,15 +2,16 @@ package com.hyperfresh.mcuniverse.lilypad;
 
 import com.hyperfresh.mcuniverse.*;
 import com.octopod.minecraft.MinecraftPlayer;
-import com.octopod.util.configuration.yaml.YamlConfiguration;
 import lilypad.client.connect.api.Connect;
 import lilypad.client.connect.api.request.Request;
 import lilypad.client.connect.api.request.RequestException;
 import lilypad.client.connect.api.request.impl.MessageRequest;
 import lilypad.client.connect.api.request.impl.RedirectRequest;
 import lilypad.client.connect.api.result.Result;
+import lilypad.client.connect.api.result.StatusCode;
 
 import java.io.UnsupportedEncodingException;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author Octopod - octopodsquad@gmail.com
@@ -60,75 +61,44 @@ public class LilypadConnection implements NetworkConnection
 		connection.unregisterEvents(listener);
 	}
 
+	/**
+	 * Starts listening to Lilypad messages.
+	 * Waiting for Lilypad to connect (and noticing when it disconnects) is left to the ConnectionSupervisor;
+	 * the Connect client reconnects on its own, so <code>reconnect()</code> doesn't need to do anything.
+	 */
 	@Override
 	public void connect()
 	{
+		connection.unregisterEvents(listener);
 		connection.registerEvents(listener);
-
-		final YamlConfiguration config = UniverseAPI.getInstance().getConfig();
-		final Logger logger = UniverseAPI.getInstance().getLogger();
-		final UniversePlugin plugin = UniverseAPI.getInstance().getPlugin();
-
-		if(connection != null && !connection.isConnected()) {
-
-			new Thread(new Runnable() {
-
-				@Override
-				public void run()
-				{
-					if(!connection.isConnected())
-					{
-						logger.i("Waiting for LilyPad to connect...");
-
-						int connectionAttempts = 0;
-						int maxConnectionAttempts = config.getInt("connection-attempts-max", 10);
-						long connectionAttemptInterval = config.getLong("connection-attempts-interval", 1000);
-
-						while(!connection.isConnected() && connectionAttempts < maxConnectionAttempts) {
-							try {
-								logger.i("Waiting for LilyPad connection... " + connectionAttempts);
-								synchronized(this) {
-									wait(connectionAttemptInterval);
-								}
-							} catch (InterruptedException e) {}
-							connectionAttempts++;
-						}
-
-						//If LilyPad still isn't connected, then most commands should be disabled.
-						if(!connection.isConnected())
-						{
-							logger.i("&cLilypad could not connect!");
-							plugin.disablePlugin();
-							return;
-						}
-					}
-					UniverseEventPoster.onNetworkConnected();
-				}
-
-			}).start();
-		} else
-		if(isConnected()) {
-			UniverseEventPoster.onNetworkConnected();
-		}
 	}
 
 	/**
-	 * Sends a Lilypad request. Returns the result, or null if an exception occured.
+	 * Sends a Lilypad request without blocking.
+	 * The returned future completes with the result, or fails if the request couldn't be sent
+	 * or wasn't answered within the request timeout.
+	 *
 	 * @param request The request to send.
-	 * @return The Result object.
+	 * @return a future of the Result object.
 	 */
-	private Result sendRequest(Request request) {
-		try {
-			return connection.request(request).awaitUninterruptibly(UniverseAPI.getInstance().getConfig().getInt("request-timeout", 500));
-		} catch (RequestException e) {
-			e.printStackTrace();
-			return null;
+	private <T extends Result> CompletableFuture<T> request(Request<T> request)
+	{
+		final CompletableFuture<T> future = new CompletableFuture<>();
+		try
+		{
+			connection.request(request).registerListener(future::complete);
 		}
+		catch (RequestException e)
+		{
+			future.completeExceptionally(e);
+			return future;
+		}
+		return UniverseAPI.getInstance().getScheduler().timeout(future, UniverseAPI.getInstance().getRequestTimeout());
 	}
 
-	private void sendRequestAsync(Request request)
+	private static boolean isSuccess(Result result)
 	{
-		try {connection.request(request);} catch (RequestException e) {}
+		return result != null && result.getStatusCode() == StatusCode.SUCCESS;
 	}
 
 	/**
@@ -143,7 +113,7 @@ public class LilypadConnection implements NetworkConnection
 	@Override
 	public void sendMessage(String server, String channel, String message)
 	{
-		try {sendRequestAsync(new MessageRequest(server, channel, message));} catch (UnsupportedEncodingException e) {}
+		sendMessageAsync(server, channel, message);
 	}
 
 	@Override
@@ -153,8 +123,23 @@ public class LilypadConnection implements NetworkConnection
 	}
 
 	@Override
-	public void sendPlayer(MinecraftPlayer player, String server)
+	public CompletableFuture<Boolean> sendMessageAsync(String server, String channel, String message)
+	{
+		try
+		{
+			return request(new MessageRequest(server, channel, message)).thenApply(LilypadConnection::isSuccess);
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			CompletableFuture<Boolean> future = new CompletableFuture<>();
+			future.completeExceptionally(e);
+			return future;
+		}
+	}
+
+	@Override
+	public CompletableFuture<Boolean> sendPlayerAsync(MinecraftPlayer player, String server)
 	{
-		sendRequest(new RedirectRequest(server, player.getName()));
+		return request(new RedirectRequest(server, player.getName())).thenApply(LilypadConnection::isSuccess);
 	}
 }
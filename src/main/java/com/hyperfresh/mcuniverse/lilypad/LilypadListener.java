@@ -1,11 +1,6 @@
 package com.hyperfresh.mcuniverse.lilypad;
 
-import com.hyperfresh.mcuniverse.StaticChannel;
-import com.hyperfresh.mcuniverse.UniverseAPI;
 import com.hyperfresh.mcuniverse.UniverseEventPoster;
-import com.hyperfresh.mcuniverse.event.events.NetworkMessageInEvent;
-import com.hyperfresh.mcuniverse.exceptions.DeserializationException;
-import com.hyperfresh.mcuniverse.packets.Packet;
 import lilypad.client.connect.api.event.EventListener;
 import lilypad.client.connect.api.event.MessageEvent;
 
@@ -30,19 +25,6 @@ public class LilypadListener
 			return;
 		}
 
-		NetworkMessageInEvent event = new NetworkMessageInEvent(server, channel, message);
-		UniverseAPI.getInstance().getEventBus().post(event);
-
-		if(!event.isCancelled() && event.getChannel().equals(StaticChannel.SWITCH_PACKET.toString()))
-		{
-			try
-			{
-				Packet packet = UniverseAPI.getInstance().getSerializer().deserialize(message);
-				if(packet != null)
-				{
-					UniverseEventPoster.onPacketInbound(server, packet);
-				}
-			} catch (DeserializationException e) {}
-		}
+		UniverseEventPoster.onMessageInbound(server, channel, message);
 	}
 }
@@ -0,0 +1,90 @@
+package com.hyperfresh.mcuniverse.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram with a bucket for every power of two, so recording a value is just a few adds.
+ * Percentiles are only accurate to within a factor of two, which is plenty for timings.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class Histogram
+{
+	private final LongAdder[] buckets = new LongAdder[64];
+
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong(0);
+
+	public Histogram()
+	{
+		for(int i = 0; i < buckets.length; i++)
+		{
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Records a value. Negative values are recorded as 0.
+	 *
+	 * @param value the value
+	 */
+	public void record(long value)
+	{
+		if(value < 0) value = 0;
+
+		buckets[64 - Long.numberOfLeadingZeros(value) - (value == 0 ? 0 : 1)].increment();
+		count.increment();
+		sum.add(value);
+		if(value > max.get()) max.accumulateAndGet(value, Math::max);
+	}
+
+	public long getCount()
+	{
+		return count.sum();
+	}
+
+	public long getSum()
+	{
+		return sum.sum();
+	}
+
+	public long getMax()
+	{
+		return max.get();
+	}
+
+	public double getMean()
+	{
+		long count = this.count.sum();
+		return count == 0 ? 0 : sum.sum() / (double)count;
+	}
+
+	/**
+	 * Gets the upper bound of the bucket the percentile falls in.
+	 *
+	 * @param percentile the percentile, from 0 to 1
+	 * @return the value
+	 */
+	public long getPercentile(double percentile)
+	{
+		long[] counts = new long[buckets.length];
+		long total = 0;
+		for(int i = 0; i < buckets.length; i++)
+		{
+			counts[i] = buckets[i].sum();
+			total += counts[i];
+		}
+		if(total == 0) return 0;
+
+		long target = (long)Math.ceil(total * percentile);
+		long seen = 0;
+		for(int i = 0; i < counts.length; i++)
+		{
+			seen += counts[i];
+			if(seen >= target && counts[i] > 0) return Math.min(i >= 63 ? Long.MAX_VALUE : (1L << (i + 1)) - 1, max.get());
+		}
+		return max.get();
+	}
+}
@@ -0,0 +1,228 @@
+package com.hyperfresh.mcuniverse.metrics;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Counts the messages and bytes sent and recieved, broken down by channel, packet type and peer.
+ * Everything is counted with striped adders, so counting stays cheap when many threads send and recieve at once.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class NetworkMetrics implements NetworkMetricsMXBean
+{
+	/**
+	 * The peer that broadcasts are counted under.
+	 */
+	public static final String BROADCAST = "*";
+
+	public static final String OBJECT_NAME = "com.hyperfresh.mcuniverse:type=NetworkMetrics";
+
+	private volatile TrafficStats total = new TrafficStats();
+
+	private final ConcurrentMap<String, TrafficStats> channels = new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<String, TrafficStats> packetTypes = new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<String, TrafficStats> peers = new ConcurrentHashMap<>();
+
+	private static TrafficStats get(ConcurrentMap<String, TrafficStats> stats, String key)
+	{
+		TrafficStats traffic = stats.get(key);
+		return traffic != null ? traffic : stats.computeIfAbsent(key, k -> new TrafficStats());
+	}
+
+	/**
+	 * Counts a message that was sent.
+	 *
+	 * @param server the destination server, or null for a broadcast
+	 * @param channel the channel
+	 * @param type the type of packet the message carries, or null for a plain message
+	 * @param length the length of the message
+	 */
+	public void onSend(String server, String channel, Class<?> type, int length)
+	{
+		count(total, length);
+		count(get(channels, channel), length);
+		count(get(peers, server == null ? BROADCAST : server), length);
+		if(type != null) count(get(packetTypes, type.getSimpleName()), length);
+	}
+
+	private static void count(TrafficStats stats, int length)
+	{
+		stats.messagesSent.increment();
+		stats.bytesSent.add(length);
+	}
+
+	/**
+	 * Counts a message that was recieved.
+	 *
+	 * @param server the sender
+	 * @param channel the channel
+	 * @param length the length of the message
+	 */
+	public void onReceive(String server, String channel, int length)
+	{
+		total.messagesReceived.increment();
+		total.bytesReceived.add(length);
+
+		TrafficStats stats = get(channels, channel);
+		stats.messagesReceived.increment();
+		stats.bytesReceived.add(length);
+
+		stats = get(peers, server);
+		stats.messagesReceived.increment();
+		stats.bytesReceived.add(length);
+	}
+
+	/**
+	 * Records how long a packet took to serialize.
+	 *
+	 * @param type the packet type
+	 * @param time the time, in ns
+	 */
+	public void onSerialize(Class<?> type, long time)
+	{
+		total.serializeTime.record(time);
+		get(packetTypes, type.getSimpleName()).serializeTime.record(time);
+	}
+
+	/**
+	 * Counts a packet that was recieved and records how long it took to deserialize.
+	 *
+	 * @param type the packet type
+	 * @param length the length of the message
+	 * @param time the time, in ns
+	 */
+	public void onDecode(Class<?> type, int length, long time)
+	{
+		total.decodeTime.record(time);
+
+		TrafficStats stats = get(packetTypes, type.getSimpleName());
+		stats.messagesReceived.increment();
+		stats.bytesReceived.add(length);
+		stats.decodeTime.record(time);
+	}
+
+	/**
+	 * Counts a message that couldn't be deserialized.
+	 *
+	 * @param server the sender
+	 * @param channel the channel
+	 */
+	public void onDecodeFailure(String server, String channel)
+	{
+		total.decodeFailures.increment();
+		get(channels, channel).decodeFailures.increment();
+		get(peers, server).decodeFailures.increment();
+	}
+
+	public TrafficStats getTotalStats()
+	{
+		return total;
+	}
+
+	public Map<String, TrafficStats> getChannelStats()
+	{
+		return channels;
+	}
+
+	public Map<String, TrafficStats> getPacketTypeStats()
+	{
+		return packetTypes;
+	}
+
+	public Map<String, TrafficStats> getPeerStats()
+	{
+		return peers;
+	}
+
+	private static Map<String, TrafficSnapshot> snapshot(Map<String, TrafficStats> stats)
+	{
+		Map<String, TrafficSnapshot> snapshots = new TreeMap<>();
+		for(Map.Entry<String, TrafficStats> entry: stats.entrySet())
+		{
+			snapshots.put(entry.getKey(), entry.getValue().snapshot());
+		}
+		return snapshots;
+	}
+
+	@Override
+	public TrafficSnapshot getTotal()
+	{
+		return total.snapshot();
+	}
+
+	@Override
+	public Map<String, TrafficSnapshot> getByChannel()
+	{
+		return snapshot(channels);
+	}
+
+	@Override
+	public Map<String, TrafficSnapshot> getByPacketType()
+	{
+		return snapshot(packetTypes);
+	}
+
+	@Override
+	public Map<String, TrafficSnapshot> getByPeer()
+	{
+		return snapshot(peers);
+	}
+
+	@Override
+	public void reset()
+	{
+		total = new TrafficStats();
+		channels.clear();
+		packetTypes.clear();
+		peers.clear();
+	}
+
+	/**
+	 * Makes these metrics readable through JMX, replacing any metrics registered before (like after a reload).
+	 */
+	public void register()
+	{
+		try
+		{
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			try
+			{
+				server.registerMBean(this, name);
+			}
+			catch (InstanceAlreadyExistsException e)
+			{
+				server.unregisterMBean(name);
+				server.registerMBean(this, name);
+			}
+		}
+		catch (JMException e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	public void unregister()
+	{
+		try
+		{
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if(server.isRegistered(name)) server.unregisterMBean(name);
+		}
+		catch (JMException e)
+		{
+			e.printStackTrace();
+		}
+	}
+}
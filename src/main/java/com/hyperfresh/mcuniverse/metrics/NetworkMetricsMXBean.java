@@ -0,0 +1,21 @@
+package com.hyperfresh.mcuniverse.metrics;
+
+import java.util.Map;
+
+/**
+ * The network traffic of this server, as seen through JMX.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public interface NetworkMetricsMXBean
+{
+	public TrafficSnapshot getTotal();
+
+	public Map<String, TrafficSnapshot> getByChannel();
+
+	public Map<String, TrafficSnapshot> getByPacketType();
+
+	public Map<String, TrafficSnapshot> getByPeer();
+
+	public void reset();
+}
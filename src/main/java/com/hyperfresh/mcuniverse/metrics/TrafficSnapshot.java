@@ -0,0 +1,51 @@
+package com.hyperfresh.mcuniverse.metrics;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * A copy of TrafficStats at one point in time. Times are in microseconds.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class TrafficSnapshot
+{
+	private final long messagesSent, bytesSent, messagesReceived, bytesReceived, decodeFailures;
+
+	private final double serializeTimeMean, serializeTime99, decodeTimeMean, decodeTime99;
+
+	@ConstructorProperties({
+		"messagesSent", "bytesSent", "messagesReceived", "bytesReceived", "decodeFailures",
+		"serializeTimeMean", "serializeTime99", "decodeTimeMean", "decodeTime99"
+	})
+	public TrafficSnapshot(long messagesSent, long bytesSent, long messagesReceived, long bytesReceived, long decodeFailures,
+		double serializeTimeMean, double serializeTime99, double decodeTimeMean, double decodeTime99)
+	{
+		this.messagesSent = messagesSent;
+		this.bytesSent = bytesSent;
+		this.messagesReceived = messagesReceived;
+		this.bytesReceived = bytesReceived;
+		this.decodeFailures = decodeFailures;
+		this.serializeTimeMean = serializeTimeMean;
+		this.serializeTime99 = serializeTime99;
+		this.decodeTimeMean = decodeTimeMean;
+		this.decodeTime99 = decodeTime99;
+	}
+
+	public long getMessagesSent() {return messagesSent;}
+
+	public long getBytesSent() {return bytesSent;}
+
+	public long getMessagesReceived() {return messagesReceived;}
+
+	public long getBytesReceived() {return bytesReceived;}
+
+	public long getDecodeFailures() {return decodeFailures;}
+
+	public double getSerializeTimeMean() {return serializeTimeMean;}
+
+	public double getSerializeTime99() {return serializeTime99;}
+
+	public double getDecodeTimeMean() {return decodeTimeMean;}
+
+	public double getDecodeTime99() {return decodeTime99;}
+}
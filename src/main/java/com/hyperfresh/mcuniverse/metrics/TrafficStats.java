@@ -0,0 +1,56 @@
+package com.hyperfresh.mcuniverse.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The traffic for one channel, packet type or peer.
+ * Sizes are counted in characters, which are bytes for the ASCII JSON that packets are encoded as.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class TrafficStats
+{
+	final LongAdder messagesSent = new LongAdder();
+	final LongAdder bytesSent = new LongAdder();
+	final LongAdder messagesReceived = new LongAdder();
+	final LongAdder bytesReceived = new LongAdder();
+	final LongAdder decodeFailures = new LongAdder();
+
+	/**
+	 * How long packets took to serialize, in ns.
+	 */
+	final Histogram serializeTime = new Histogram();
+
+	/**
+	 * How long packets took to deserialize, in ns.
+	 */
+	final Histogram decodeTime = new Histogram();
+
+	public long getMessagesSent() {return messagesSent.sum();}
+
+	public long getBytesSent() {return bytesSent.sum();}
+
+	public long getMessagesReceived() {return messagesReceived.sum();}
+
+	public long getBytesReceived() {return bytesReceived.sum();}
+
+	public long getDecodeFailures() {return decodeFailures.sum();}
+
+	public Histogram getSerializeTime() {return serializeTime;}
+
+	public Histogram getDecodeTime() {return decodeTime;}
+
+	/**
+	 * Gets a copy of these stats that can be read through JMX.
+	 *
+	 * @return the snapshot
+	 */
+	public TrafficSnapshot snapshot()
+	{
+		return new TrafficSnapshot(
+			getMessagesSent(), getBytesSent(), getMessagesReceived(), getBytesReceived(), getDecodeFailures(),
+			serializeTime.getMean() / 1000.0, serializeTime.getPercentile(0.99) / 1000.0,
+			decodeTime.getMean() / 1000.0, decodeTime.getPercentile(0.99) / 1000.0
+		);
+	}
+}
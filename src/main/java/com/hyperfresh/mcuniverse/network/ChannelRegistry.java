@@ -0,0 +1,222 @@
+package com.hyperfresh.mcuniverse.network;
+
+import com.hyperfresh.mcuniverse.StaticChannel;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gives channels small integer ids, so messages can carry "#5" instead of "switchcore.packet".
+ *
+ * Every server has its own ids, and sends its table to other servers in a PacketOutServerChannels.
+ * Messages to a server are sent with the id from <i>that server's</i> table, so the server can route them
+ * by indexing an array. Channels that the destination hasn't registered (or destinations whose table
+ * we don't have, and broadcasts) are sent with their full name, like before.
+ *
+ * StaticChannels are registered first and in order, so their ids stay the same across restarts.
+ * Every other channel's id only holds until the server restarts, so it's sent with the table's epoch ("#12:kq3x9a0b"),
+ * and an id from an older table is rejected instead of being routed to whatever channel has that id now.
+ * Servers on other versions can have a different amount of StaticChannels, so each table says how many it has.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class ChannelRegistry
+{
+	/**
+	 * The id of channels that aren't registered.
+	 */
+	public static final int UNREGISTERED = -1;
+
+	/**
+	 * The prefix of channels sent as ids.
+	 */
+	public static final char ID_PREFIX = '#';
+
+	/**
+	 * Separates an id from the epoch of the table it's from.
+	 */
+	public static final char EPOCH_SEPARATOR = ':';
+
+	/**
+	 * The amount of StaticChannels, whose ids are sent without an epoch.
+	 */
+	public static final int STATIC_CHANNELS = StaticChannel.values().length;
+
+	/**
+	 * Identifies this run's table, so ids from before a restart can be told apart.
+	 */
+	private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+	private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+
+	/**
+	 * The channels, by id. Replaced whenever a channel is registered.
+	 */
+	private volatile String[] channels = new String[0];
+
+	/**
+	 * The encoded ids of other servers' channels, by server and then by channel.
+	 */
+	private final Map<String, Map<String, String>> peers = new ConcurrentHashMap<>();
+
+	public ChannelRegistry()
+	{
+		for(StaticChannel channel: StaticChannel.values())
+		{
+			register(channel.toString());
+		}
+	}
+
+	/**
+	 * Registers a channel, if it isn't registered already.
+	 *
+	 * @param channel the channel
+	 * @return the channel's id
+	 */
+	public synchronized int register(String channel)
+	{
+		if(channel.isEmpty() || channel.charAt(0) == ID_PREFIX)
+		{
+			throw new IllegalArgumentException("Channel names can't be empty or start with " + ID_PREFIX);
+		}
+
+		Integer id = ids.get(channel);
+		if(id != null) return id;
+
+		String[] channels = Arrays.copyOf(this.channels, this.channels.length + 1);
+		channels[channels.length - 1] = channel;
+		this.channels = channels;
+		ids.put(channel, channels.length - 1);
+		return channels.length - 1;
+	}
+
+	/**
+	 * Gets a channel's id.
+	 *
+	 * @param channel the channel
+	 * @return the id, or UNREGISTERED
+	 */
+	public int getId(String channel)
+	{
+		Integer id = ids.get(channel);
+		return id == null ? UNREGISTERED : id;
+	}
+
+	/**
+	 * Gets a channel by its id.
+	 *
+	 * @param id the id
+	 * @return the channel, or null if no channel has that id
+	 */
+	public String getChannel(int id)
+	{
+		String[] channels = this.channels;
+		return id >= 0 && id < channels.length ? channels[id] : null;
+	}
+
+	public String getEpoch()
+	{
+		return epoch;
+	}
+
+	/**
+	 * Gets every registered channel, in order of their ids.
+	 *
+	 * @return the channels
+	 */
+	public List<String> getChannels()
+	{
+		return Collections.unmodifiableList(Arrays.asList(channels));
+	}
+
+	/**
+	 * Stores another server's table, replacing any table it sent before.
+	 *
+	 * @param server the server's identifier
+	 * @param epoch the epoch of the server's table, or null if it didn't send one (only its StaticChannels are sent as ids then)
+	 * @param staticChannels the amount of StaticChannels in the server's table, or 0 if it didn't say (every id is sent with the epoch then)
+	 * @param channels the server's channels, in order of their ids
+	 */
+	public void setPeerChannels(String server, String epoch, int staticChannels, List<String> channels)
+	{
+		Map<String, String> encoded = new HashMap<>();
+		for(int i = 0; i < channels.size(); i++)
+		{
+			//The server only takes bare ids for its own StaticChannels
+			if(i < staticChannels)
+			{
+				encoded.put(channels.get(i), ID_PREFIX + Integer.toString(i));
+			}
+			else if(epoch != null)
+			{
+				encoded.put(channels.get(i), ID_PREFIX + Integer.toString(i) + EPOCH_SEPARATOR + epoch);
+			}
+		}
+		peers.put(server, encoded);
+	}
+
+	/**
+	 * Forgets another server's table, like when it restarts.
+	 * Messages to that server use full channel names until it sends its table again.
+	 *
+	 * @param server the server's identifier
+	 */
+	public void forgetPeer(String server)
+	{
+		peers.remove(server);
+	}
+
+	public boolean hasPeer(String server)
+	{
+		return peers.containsKey(server);
+	}
+
+	/**
+	 * Gets the form of a channel to send to a server.
+	 *
+	 * @param server the destination server's identifier, or null for a broadcast
+	 * @param channel the channel
+	 * @return the channel's id in the server's table, or the channel itself
+	 */
+	public String encode(String server, String channel)
+	{
+		if(server == null) return channel;
+
+		Map<String, String> table = peers.get(server);
+		if(table == null) return channel;
+
+		String encoded = table.get(channel);
+		return encoded == null ? channel : encoded;
+	}
+
+	/**
+	 * Gets the id of a recieved channel, which is either a channel name or an id from our table.
+	 *
+	 * @param channel the recieved channel
+	 * @return the channel's id, or UNREGISTERED (including for ids from a table before this server restarted)
+	 */
+	public int decode(String channel)
+	{
+		if(channel.length() > 1 && channel.charAt(0) == ID_PREFIX)
+		{
+			int id = 0;
+			for(int i = 1; i < channel.length(); i++)
+			{
+				char c = channel.charAt(i);
+				if(c == EPOCH_SEPARATOR && i > 1)
+				{
+					boolean current = channel.length() - i - 1 == epoch.length() && channel.startsWith(epoch, i + 1);
+					return current && id < channels.length ? id : UNREGISTERED;
+				}
+				if(c < '0' || c > '9' || id > 0xFFFFFF) return getId(channel);
+				id = id * 10 + (c - '0');
+			}
+			return id < STATIC_CHANNELS ? id : UNREGISTERED;
+		}
+		return getId(channel);
+	}
+}
@@ -0,0 +1,231 @@
+package com.hyperfresh.mcuniverse.network;
+
+import com.hyperfresh.mcuniverse.NetworkConnection;
+import com.hyperfresh.mcuniverse.UniverseAPI;
+import com.hyperfresh.mcuniverse.UniverseEventPoster;
+import com.hyperfresh.mcuniverse.UniverseScheduler;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Watches the NetworkConnection for as long as the plugin is enabled.
+ * It checks the connection every <code>checkInterval</code> ms, connected or not.
+ * Once the connection is lost, it pauses the OutboundQueue and retries with exponential backoff and jitter
+ * until the connection is back, then resumes the queue and lets UniverseEventPoster rediscover the network.
+ * Only the reconnection attempts back off, so a connection that comes back by itself is noticed within one check.
+ *
+ * All checks run on the shared UniverseScheduler.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class ConnectionSupervisor
+{
+	private final NetworkConnection connection;
+
+	private final OutboundQueue outbound;
+
+	private final UniverseScheduler scheduler;
+
+	private final long checkInterval;
+
+	private final long initialBackoff;
+
+	private final long maxBackoff;
+
+	private ScheduledFuture<?> task = null;
+
+	private boolean stopped = true;
+
+	/**
+	 * Counts up every time the supervisor is started, so checks left over from an earlier start don't schedule more.
+	 */
+	private int generation = 0;
+
+	private volatile boolean connected = false;
+
+	/**
+	 * The amount of reconnection attempts since the connection was lost.
+	 */
+	private volatile int attempts = 0;
+
+	/**
+	 * When the next reconnection attempt is due, in ms.
+	 */
+	private volatile long nextAttempt = 0;
+
+	/**
+	 * When the connection was lost (or when the supervisor started), in ms.
+	 */
+	private volatile long disconnectedSince;
+
+	private volatile long lastRecoveryTime = -1;
+	private final LongAdder recoveries = new LongAdder();
+	private final LongAdder totalRecoveryTime = new LongAdder();
+
+	public ConnectionSupervisor(NetworkConnection connection, OutboundQueue outbound, UniverseScheduler scheduler, long checkInterval, long initialBackoff, long maxBackoff)
+	{
+		this.connection = connection;
+		this.outbound = outbound;
+		this.scheduler = scheduler;
+		this.checkInterval = checkInterval;
+		this.initialBackoff = initialBackoff;
+		this.maxBackoff = maxBackoff;
+	}
+
+	public synchronized void start()
+	{
+		if(task != null) return;
+
+		connected = false;
+		attempts = 0;
+		nextAttempt = 0;
+		disconnectedSince = System.currentTimeMillis();
+		outbound.pause();
+
+		stopped = false;
+		generation++;
+
+		UniverseAPI.getInstance().getLogger().i("Waiting for " + connection.getName() + " to connect...");
+		schedule(generation, 0);
+	}
+
+	public synchronized void stop()
+	{
+		stopped = true;
+		if(task != null) task.cancel(false);
+		task = null;
+	}
+
+	/**
+	 * Schedules the next check, unless the supervisor was stopped (or restarted) since the check calling this started.
+	 */
+	private synchronized void schedule(int generation, long delay)
+	{
+		if(stopped || generation != this.generation) return;
+
+		task = scheduler.schedule(() -> check(generation), delay);
+	}
+
+	private void check(int generation)
+	{
+		synchronized(this)
+		{
+			if(stopped || generation != this.generation) return;
+		}
+
+		try
+		{
+			boolean now = connection.isConnected();
+
+			if(now && !connected)
+			{
+				onConnected();
+			}
+			else if(!now && connected)
+			{
+				onDisconnected();
+			}
+			else if(!now && System.currentTimeMillis() >= nextAttempt)
+			{
+				attempts++;
+				nextAttempt = System.currentTimeMillis() + nextBackoff();
+				UniverseAPI.getInstance().getLogger().v("Waiting for " + connection.getName() + " connection... " + attempts);
+				connection.reconnect();
+			}
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+		}
+
+		//Checked at the usual interval either way, but woken early if a reconnection attempt is due before then
+		long delay = checkInterval;
+		if(!connected) delay = Math.max(0, Math.min(delay, nextAttempt - System.currentTimeMillis()));
+		schedule(generation, delay);
+	}
+
+	/**
+	 * Gets the delay before the next reconnection attempt: doubling with each attempt up to
+	 * <code>maxBackoff</code>, with a random jitter of up to half of the delay.
+	 *
+	 * @return the delay, in ms
+	 */
+	private long nextBackoff()
+	{
+		long delay = maxBackoff;
+		if(attempts < 31)
+		{
+			delay = Math.min(maxBackoff, initialBackoff << attempts);
+		}
+		long jitter = delay / 2;
+		return delay - jitter + (jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter + 1) : 0);
+	}
+
+	private void onConnected()
+	{
+		connected = true;
+
+		long recoveryTime = System.currentTimeMillis() - disconnectedSince;
+		lastRecoveryTime = recoveryTime;
+		recoveries.increment();
+		totalRecoveryTime.add(recoveryTime);
+		attempts = 0;
+
+		outbound.resume();
+		scheduler.runSync(UniverseEventPoster::onNetworkConnected);
+	}
+
+	private void onDisconnected()
+	{
+		connected = false;
+		attempts = 0;
+		disconnectedSince = System.currentTimeMillis();
+		nextAttempt = disconnectedSince + nextBackoff();
+
+		outbound.pause();
+		scheduler.runSync(UniverseEventPoster::onNetworkDisconnected);
+	}
+
+	public boolean isConnected()
+	{
+		return connected;
+	}
+
+	/**
+	 * Gets how long it took to connect the last time the connection was established or recovered.
+	 *
+	 * @return the last recovery time in ms, or -1 if the connection was never established
+	 */
+	public long getLastRecoveryTime()
+	{
+		return lastRecoveryTime;
+	}
+
+	public long getRecoveryCount()
+	{
+		return recoveries.sum();
+	}
+
+	/**
+	 * Gets the average time it took to connect or recover.
+	 *
+	 * @return the average recovery time, in ms
+	 */
+	public double getAverageRecoveryTime()
+	{
+		long count = recoveries.sum();
+		return count == 0 ? 0 : totalRecoveryTime.sum() / (double)count;
+	}
+
+	/**
+	 * Gets how long the connection has currently been down for.
+	 *
+	 * @return the downtime in ms, or 0 if connected
+	 */
+	public long getDowntime()
+	{
+		return connected ? 0 : System.currentTimeMillis() - disconnectedSince;
+	}
+}
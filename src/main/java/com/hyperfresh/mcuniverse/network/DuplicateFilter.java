@@ -0,0 +1,184 @@
+package com.hyperfresh.mcuniverse.network;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stamps sent packets with a sequence number, and drops recieved packets that were already handled,
+ * such as ones that arrived over two transports or were sent again after a reconnect.
+ *
+ * A stamped message looks like <code>!epoch.seq|payload</code>, or <code>!epoch.*seq|payload</code> for a broadcast.
+ * The epoch is when the sender started, so a restarted server (whose sequence numbers start over) isn't mistaken for duplicates.
+ *
+ * Every destination gets its own sequence, and so do broadcasts, since they can take a different (slower) transport
+ * than messages to one server. Otherwise a broadcast held up behind a few thousand direct messages would be too old
+ * for the receiver's window when it arrived. Receivers keep one SequenceWindow for each sender's direct messages
+ * and one for its broadcasts, so memory stays bounded no matter how many packets are sent.
+ * Messages without a stamp (like ones from older versions) are always accepted.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class DuplicateFilter
+{
+	public static final char STAMP_PREFIX = '!';
+
+	/**
+	 * Marks the sequence number of a broadcast.
+	 */
+	public static final char BROADCAST_MARK = '*';
+
+	private static class Peer
+	{
+		final long epoch;
+		final SequenceWindow direct;
+		final SequenceWindow broadcast;
+
+		Peer(long epoch, int windowSize)
+		{
+			this.epoch = epoch;
+			this.direct = new SequenceWindow(windowSize);
+			this.broadcast = new SequenceWindow(windowSize);
+		}
+	}
+
+	/**
+	 * A recieved message with its stamp taken off.
+	 */
+	public static class Stamped
+	{
+		public final long epoch;
+		public final boolean broadcast;
+		public final long seq;
+		public final String payload;
+
+		Stamped(long epoch, boolean broadcast, long seq, String payload)
+		{
+			this.epoch = epoch;
+			this.broadcast = broadcast;
+			this.seq = seq;
+			this.payload = payload;
+		}
+	}
+
+	private final long epoch = System.currentTimeMillis();
+
+	/**
+	 * The next sequence number for each destination, by identifier ("" for broadcasts).
+	 */
+	private final Map<String, AtomicLong> sequences = new ConcurrentHashMap<>();
+
+	private final int windowSize;
+
+	private final Map<String, Peer> peers = new ConcurrentHashMap<>();
+
+	private final LongAdder duplicates = new LongAdder();
+
+	/**
+	 * @param windowSize how many of each sender's latest sequence numbers to remember
+	 */
+	public DuplicateFilter(int windowSize)
+	{
+		this.windowSize = windowSize;
+	}
+
+	/**
+	 * Stamps a message with the next sequence number for its destination.
+	 * Messages should be stamped right as they're sent (not when they're queued), so a receiver never gets
+	 * a number more than the window older than one it already saw, which it would reject as a duplicate.
+	 *
+	 * @param server the destination server's identifier, or null for a broadcast
+	 * @param message the message
+	 * @return the stamped message
+	 */
+	public String stamp(String server, String message)
+	{
+		long seq = sequences.computeIfAbsent(server == null ? "" : server, k -> new AtomicLong()).getAndIncrement();
+		return STAMP_PREFIX + Long.toString(epoch) + '.' + (server == null ? String.valueOf(BROADCAST_MARK) : "") + seq + '|' + message;
+	}
+
+	/**
+	 * Takes the stamp off a message.
+	 *
+	 * @param message the message
+	 * @return the stamp and payload, or null if the message isn't stamped
+	 */
+	public static Stamped unstamp(String message)
+	{
+		if(message.isEmpty() || message.charAt(0) != STAMP_PREFIX) return null;
+
+		int dot = message.indexOf('.');
+		int bar = dot == -1 ? -1 : message.indexOf('|', dot);
+		if(bar == -1) return null;
+
+		boolean broadcast = dot + 1 < bar && message.charAt(dot + 1) == BROADCAST_MARK;
+		try
+		{
+			return new Stamped(
+				Long.parseLong(message.substring(1, dot)),
+				broadcast,
+				Long.parseLong(message.substring(broadcast ? dot + 2 : dot + 1, bar)),
+				message.substring(bar + 1)
+			);
+		}
+		catch (NumberFormatException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Checks if a message from a server wasn't handled before, and remembers it if it wasn't.
+	 *
+	 * @param server the sender's identifier
+	 * @param epoch the sender's epoch
+	 * @param broadcast whether the message was broadcast
+	 * @param seq the message's sequence number
+	 * @return true if the message is new, false if it's a duplicate
+	 */
+	public boolean accept(String server, long epoch, boolean broadcast, long seq)
+	{
+		Peer peer = peers.get(server);
+		if(peer == null || peer.epoch < epoch)
+		{
+			//The sender started (again), so its old sequence numbers don't matter anymore
+			peer = peers.compute(server, (s, old) -> old == null || old.epoch < epoch ? new Peer(epoch, windowSize) : old);
+		}
+
+		boolean accepted;
+		synchronized(peer)
+		{
+			//Messages from before the sender restarted are stale
+			accepted = peer.epoch == epoch && (broadcast ? peer.broadcast : peer.direct).accept(seq);
+		}
+		if(!accepted) duplicates.increment();
+		return accepted;
+	}
+
+	/**
+	 * Forgets a server's sequence numbers, such as when it's removed.
+	 *
+	 * @param server the server's identifier
+	 */
+	public void forgetPeer(String server)
+	{
+		//Its sequence isn't reset: the server may still remember ours, and would drop numbers it already saw
+		peers.remove(server);
+	}
+
+	/**
+	 * Gets the amount of recieved messages that were dropped as duplicates.
+	 *
+	 * @return the amount of messages
+	 */
+	public long getDuplicateCount()
+	{
+		return duplicates.sum();
+	}
+
+	public long getEpoch()
+	{
+		return epoch;
+	}
+}
@@ -0,0 +1,233 @@
+package com.hyperfresh.mcuniverse.network;
+
+import com.hyperfresh.mcuniverse.UniverseAPI;
+import com.hyperfresh.mcuniverse.UniverseScheduler;
+import com.hyperfresh.mcuniverse.database.ServerDatabase;
+import com.hyperfresh.mcuniverse.packets.PacketInServerPing;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pings every known server in the background and keeps their ServerHealth in the ServerDatabase,
+ * so commands and redirects can check how a server is doing without waiting on the network.
+ *
+ * Pings are pipelined: every server is pinged at once each round, without waiting for the previous answer,
+ * and answers are matched to their ping by its id. Pings that aren't answered within <code>timeout</code> ms count as lost.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class HealthMonitor
+{
+	private static class Probe
+	{
+		final String server;
+		final long sent = System.nanoTime();
+		final CompletableFuture<Long> result = new CompletableFuture<>();
+
+		Probe(String server)
+		{
+			this.server = server;
+		}
+	}
+
+	private final ServerDatabase database;
+
+	private final UniverseScheduler scheduler;
+
+	private final long interval;
+
+	private final long timeout;
+
+	private final double weight;
+
+	private final int unreachableAfter;
+
+	private final AtomicInteger ids = new AtomicInteger();
+
+	/**
+	 * Pings waiting for an answer, by id.
+	 */
+	private final Map<Integer, Probe> outstanding = new ConcurrentHashMap<>();
+
+	private ScheduledFuture<?> task = null;
+
+	/**
+	 * @param database the database to keep the results in
+	 * @param scheduler the scheduler to ping on
+	 * @param interval the time between rounds of pings, in ms
+	 * @param timeout the time to wait for an answer, in ms
+	 * @param weight how much each new ping counts towards the averages, from 0 to 1
+	 * @param unreachableAfter the amount of lost pings in a row before a server counts as unreachable
+	 */
+	public HealthMonitor(ServerDatabase database, UniverseScheduler scheduler, long interval, long timeout, double weight, int unreachableAfter)
+	{
+		if(weight <= 0 || weight > 1) throw new IllegalArgumentException("Weight must be above 0 and at most 1");
+
+		this.database = database;
+		this.scheduler = scheduler;
+		this.interval = interval;
+		this.timeout = timeout;
+		this.weight = weight;
+		this.unreachableAfter = unreachableAfter;
+	}
+
+	public synchronized void start()
+	{
+		if(task != null || interval <= 0) return;
+		task = scheduler.scheduleRepeating(this::round, interval, interval);
+	}
+
+	public synchronized void stop()
+	{
+		if(task != null) task.cancel(false);
+		task = null;
+	}
+
+	private void round()
+	{
+		try
+		{
+			expire();
+
+			String self = UniverseAPI.getInstance().getServerIdentifier();
+			for(String server: database.getServerNames())
+			{
+				if(!server.equals(self)) probe(server);
+			}
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	private Probe probe(String server)
+	{
+		int id = ids.incrementAndGet();
+		Probe probe = new Probe(server);
+		outstanding.put(id, probe);
+		new PacketInServerPing(id).send(server);
+		return probe;
+	}
+
+	/**
+	 * Pings a server right away, instead of waiting for the next round.
+	 *
+	 * @param server the server's identifier
+	 * @return a future of the round trip time, in ms, which completes with null if the ping timed out
+	 */
+	public CompletableFuture<Long> ping(String server)
+	{
+		Probe probe = probe(server);
+		scheduler.schedule(this::expire, timeout);
+		return probe.result;
+	}
+
+	/**
+	 * Called when a server answers a ping.
+	 *
+	 * @param server the server's identifier
+	 * @param id the ping's id
+	 */
+	public void onReply(String server, int id)
+	{
+		long now = System.nanoTime();
+		Probe probe = outstanding.get(id);
+		if(probe == null || !probe.server.equals(server) || !outstanding.remove(id, probe)) return;
+
+		double rtt = (now - probe.sent) / 1000000.0;
+		update(server, true, rtt);
+		probe.result.complete(Math.round(rtt));
+	}
+
+	/**
+	 * Counts pings that have waited longer than the timeout as lost.
+	 */
+	private void expire()
+	{
+		long deadline = System.nanoTime() - timeout * 1000000L;
+
+		Iterator<Probe> iterator = outstanding.values().iterator();
+		while(iterator.hasNext())
+		{
+			Probe probe = iterator.next();
+			if(probe.sent - deadline > 0) continue;
+
+			iterator.remove();
+			if(database.serverExists(probe.server)) update(probe.server, false, 0);
+			probe.result.complete(null);
+		}
+	}
+
+	private synchronized void update(String server, boolean replied, double rtt)
+	{
+		ServerHealth health = getHealth(server);
+		database.setHealth(server, replied ? health.withReply(rtt, weight) : health.withLoss(weight));
+	}
+
+	/**
+	 * Gets the last known health of a server.
+	 *
+	 * @param server the server's identifier
+	 * @return the server's health, or ServerHealth.UNKNOWN if it hasn't been pinged yet
+	 */
+	public ServerHealth getHealth(String server)
+	{
+		ServerHealth health = database.getHealth(server);
+		return health == null ? ServerHealth.UNKNOWN : health;
+	}
+
+	/**
+	 * Checks if a server is answering pings.
+	 * Servers that haven't been pinged yet count as reachable.
+	 *
+	 * @param server the server's identifier
+	 * @return false if the server's last <code>unreachableAfter</code> pings all timed out
+	 */
+	public boolean isReachable(String server)
+	{
+		return getHealth(server).getConsecutiveLosses() < unreachableAfter;
+	}
+
+	/**
+	 * Picks the reachable server with the lowest round trip time, such as when choosing a hub.
+	 * Servers that haven't answered yet are only picked if no server has.
+	 *
+	 * @param servers the servers' identifiers
+	 * @return the server's identifier, or null if none are reachable
+	 */
+	public String getFastest(Collection<String> servers)
+	{
+		String fastest = null;
+		double best = Double.MAX_VALUE;
+		for(String server: servers)
+		{
+			if(!isReachable(server)) continue;
+
+			double rtt = getHealth(server).getRtt();
+			if(rtt < 0) rtt = Double.MAX_VALUE - 1;
+			if(fastest == null || rtt < best)
+			{
+				fastest = server;
+				best = rtt;
+			}
+		}
+		return fastest;
+	}
+
+	/**
+	 * Gets the amount of pings waiting for an answer.
+	 *
+	 * @return the amount of pings
+	 */
+	public int getOutstandingCount()
+	{
+		return outstanding.size();
+	}
+}
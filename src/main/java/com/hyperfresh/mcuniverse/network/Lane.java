@@ -0,0 +1,27 @@
+package com.hyperfresh.mcuniverse.network;
+
+/**
+ * Which queue a message waits in, both when it's sent and when it's recieved.
+ * Messages in a lane never wait behind messages in a lower lane.
+ *
+ * This is separate from the TrafficClass, which decides what happens to a message that's over the rate limit.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public enum Lane
+{
+	/**
+	 * Pings, discovery requests and channel tables, which the network needs to work at all.
+	 */
+	CONTROL,
+
+	/**
+	 * Player switches and player-facing messages, where someone is waiting on the answer.
+	 */
+	INTERACTIVE,
+
+	/**
+	 * State transfer, like discover replies, property updates and sync messages.
+	 */
+	BULK
+}
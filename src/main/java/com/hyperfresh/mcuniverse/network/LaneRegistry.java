@@ -0,0 +1,82 @@
+package com.hyperfresh.mcuniverse.network;
+
+import com.hyperfresh.mcuniverse.StaticChannel;
+import com.hyperfresh.mcuniverse.serializer.PacketSerializer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides which Lane a message goes in.
+ * Packets are put in a lane by their type, and plain messages by their channel.
+ * Anything without a lane of its own is INTERACTIVE.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class LaneRegistry
+{
+	/**
+	 * The lanes of packet types, by class name, since recieved packets are looked up before they're decoded.
+	 */
+	private final Map<String, Lane> types = new ConcurrentHashMap<>();
+
+	private final Map<String, Lane> channels = new ConcurrentHashMap<>();
+
+	/**
+	 * Puts a type of packet in a lane.
+	 *
+	 * @param type the packet type
+	 * @param lane the lane
+	 */
+	public void setLane(Class<?> type, Lane lane)
+	{
+		types.put(type.getName(), lane);
+	}
+
+	/**
+	 * Puts plain messages on a channel in a lane.
+	 *
+	 * @param channel the channel
+	 * @param lane the lane
+	 */
+	public void setLane(String channel, Lane lane)
+	{
+		channels.put(channel, lane);
+	}
+
+	/**
+	 * Gets the lane of a message being sent.
+	 *
+	 * @param type the packet type, or null if it's a plain message
+	 * @param channel the channel
+	 * @return the lane
+	 */
+	public Lane getLane(Class<?> type, String channel)
+	{
+		Lane lane = type == null ? channels.get(channel) : types.get(type.getName());
+		return lane == null ? Lane.INTERACTIVE : lane;
+	}
+
+	/**
+	 * Gets the lane of a recieved message, without decoding it.
+	 *
+	 * @param channel the channel's name
+	 * @param message the message
+	 * @param serializer the serializer packets are decoded with
+	 * @return the lane
+	 */
+	public Lane getLane(String channel, String message, PacketSerializer serializer)
+	{
+		Lane lane;
+		if(StaticChannel.SWITCH_PACKET.toString().equals(channel))
+		{
+			String type = serializer.getPacketType(message);
+			lane = type == null ? null : types.get(type);
+		}
+		else
+		{
+			lane = channels.get(channel);
+		}
+		return lane == null ? Lane.INTERACTIVE : lane;
+	}
+}
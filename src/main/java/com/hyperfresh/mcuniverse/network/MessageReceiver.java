@@ -0,0 +1,19 @@
+package com.hyperfresh.mcuniverse.network;
+
+/**
+ * Something that raw network messages are delivered to.
+ * For the server running Universe this is <code>UniverseEventPoster::onMessageInbound</code>.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public interface MessageReceiver
+{
+	/**
+	 * Recieves a message from another server.
+	 *
+	 * @param server the sender's identifier
+	 * @param channel the channel
+	 * @param message the message
+	 */
+	public void receive(String server, String channel, String message);
+}
@@ -0,0 +1,62 @@
+package com.hyperfresh.mcuniverse.network;
+
+/**
+ * A message waiting in the OutboundQueue to be sent.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class OutboundMessage
+{
+	final String server;
+	final String channel;
+	final String message;
+
+	/**
+	 * The type of packet this message carries, or null if it's a plain message.
+	 */
+	final Class<?> type;
+
+	/**
+	 * When this message was queued, in ns.
+	 */
+	final long queued;
+
+	public OutboundMessage(String server, String channel, String message, Class<?> type)
+	{
+		this.server = server;
+		this.channel = channel;
+		this.message = message;
+		this.type = type;
+		this.queued = System.nanoTime();
+	}
+
+	/**
+	 * Gets the destination server's identifier, or null if this message is a broadcast.
+	 *
+	 * @return the destination server's identifier
+	 */
+	public String getServer()
+	{
+		return server;
+	}
+
+	public String getChannel()
+	{
+		return channel;
+	}
+
+	public String getMessage()
+	{
+		return message;
+	}
+
+	public Class<?> getType()
+	{
+		return type;
+	}
+
+	public long getQueuedTime()
+	{
+		return queued;
+	}
+}
@@ -0,0 +1,563 @@
+package com.hyperfresh.mcuniverse.network;
+
+import com.hyperfresh.mcuniverse.NetworkConnection;
+import com.hyperfresh.mcuniverse.UniverseAPI;
+import com.hyperfresh.mcuniverse.metrics.NetworkMetrics;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded queue of outgoing messages, drained by a single sender thread.
+ * Any thread can queue messages, but only the sender thread ever touches the NetworkConnection,
+ * so the main thread never waits on network I/O.
+ *
+ * Every Lane has its own queue, and the sender always takes from the highest lane that has messages,
+ * so pings and switches never wait behind bulk state. The LaneRegistry decides which lane a message goes in.
+ *
+ * When a lane's queue is full, the OverflowPolicy registered for the message's packet type decides
+ * whether to wait, drop the oldest message of the same type to the same server, or drop the new message.
+ * Messages over the RateLimiter's limits wait in a separate deferred list, or are dropped if they're BULK traffic.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class OutboundQueue
+{
+	private final NetworkConnection connection;
+
+	/**
+	 * The queue of each lane, by the lane's ordinal.
+	 */
+	private final BlockingQueue<OutboundMessage>[] lanes;
+
+	/**
+	 * Counts the queued messages across every lane, so the sender can wait on all of them at once.
+	 * There can be more permits than messages (when messages are dropped), but never fewer.
+	 */
+	private final Semaphore ready = new Semaphore(0);
+
+	private volatile LaneRegistry laneRegistry = new LaneRegistry();
+
+	/**
+	 * The longest time, in ms, a thread other than the main thread will wait for room in the queue.
+	 */
+	private final long blockTimeout;
+
+	private final Map<Class<?>, OverflowPolicy> policies = new ConcurrentHashMap<>();
+
+	private volatile OverflowPolicy defaultPolicy = OverflowPolicy.BLOCK;
+
+	private volatile Thread sender = null;
+
+	/**
+	 * Limits how fast messages are sent, or null to send them as fast as possible.
+	 */
+	private volatile RateLimiter limiter = null;
+
+	/**
+	 * Messages waiting for the RateLimiter, in the order they were queued. Only used by the sender thread.
+	 */
+	private final Deque<OutboundMessage> deferred = new ArrayDeque<>();
+
+	/**
+	 * The amount of deferred messages to each server, so newer messages to a server don't overtake older ones.
+	 * Only used by the sender thread.
+	 */
+	private final Map<String, Integer> deferredServers = new HashMap<>();
+
+	private volatile int deferredDepth = 0;
+
+	/**
+	 * While paused, messages are kept in the queue instead of being sent.
+	 */
+	private volatile boolean paused = false;
+
+	private final Object pauseLock = new Object();
+
+	private final LongAdder queued = new LongAdder();
+	private final LongAdder sent = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+
+	/**
+	 * The total time, in ns, between messages being queued and the network answering them.
+	 */
+	private final LongAdder totalLatency = new LongAdder();
+	private final AtomicLong maxLatency = new AtomicLong(0);
+
+	/**
+	 * @param connection the connection to send messages through
+	 * @param capacity the amount of messages each lane can hold
+	 * @param blockTimeout the longest time, in ms, to wait for room in a full lane
+	 */
+	@SuppressWarnings("unchecked")
+	public OutboundQueue(NetworkConnection connection, int capacity, long blockTimeout)
+	{
+		this.connection = connection;
+		this.lanes = new BlockingQueue[Lane.values().length];
+		for(int i = 0; i < lanes.length; i++)
+		{
+			lanes[i] = new ArrayBlockingQueue<>(capacity);
+		}
+		this.blockTimeout = blockTimeout;
+	}
+
+	public void setLaneRegistry(LaneRegistry laneRegistry)
+	{
+		this.laneRegistry = laneRegistry;
+	}
+
+	public LaneRegistry getLaneRegistry()
+	{
+		return laneRegistry;
+	}
+
+	/**
+	 * Sets the OverflowPolicy used for a type of packet.
+	 *
+	 * @param type the packet type
+	 * @param policy the policy
+	 */
+	public void setPolicy(Class<?> type, OverflowPolicy policy)
+	{
+		policies.put(type, policy);
+	}
+
+	/**
+	 * Sets the OverflowPolicy used for plain messages and packet types without their own policy.
+	 *
+	 * @param policy the policy
+	 */
+	public void setDefaultPolicy(OverflowPolicy policy)
+	{
+		this.defaultPolicy = policy;
+	}
+
+	public OverflowPolicy getPolicy(Class<?> type)
+	{
+		OverflowPolicy policy = type == null ? null : policies.get(type);
+		return policy == null ? defaultPolicy : policy;
+	}
+
+	/**
+	 * Queues a message to be sent.
+	 *
+	 * @param message the message
+	 * @return true if the message was queued, false if it was dropped (a BLOCK message that's dropped is also logged)
+	 */
+	public boolean offer(OutboundMessage message)
+	{
+		OverflowPolicy policy = getPolicy(message.type);
+		BlockingQueue<OutboundMessage> queue = lanes[laneRegistry.getLane(message.type, message.channel).ordinal()];
+
+		if(policy == OverflowPolicy.BLOCK && !UniverseAPI.getInstance().getPlugin().isMainThread())
+		{
+			try
+			{
+				if(queue.offer(message, blockTimeout, TimeUnit.MILLISECONDS))
+				{
+					queued.increment();
+					ready.release();
+					return true;
+				}
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			reject(message);
+			return false;
+		}
+
+		//DROP_OLDEST only makes room by dropping an older message of its own type and destination,
+		//so it can't push out messages that mustn't be lost, or another server's state
+		while(!queue.offer(message))
+		{
+			if(policy == OverflowPolicy.BLOCK)
+			{
+				//The main thread can't wait for room
+				reject(message);
+				return false;
+			}
+			if(policy != OverflowPolicy.DROP_OLDEST || !evictOldest(queue, message))
+			{
+				dropped.increment();
+				return false;
+			}
+			dropped.increment();
+		}
+		queued.increment();
+		ready.release();
+		return true;
+	}
+
+	/**
+	 * Drops a message that wasn't supposed to be lost, and says so.
+	 */
+	private void reject(OutboundMessage message)
+	{
+		dropped.increment();
+		UniverseAPI.getInstance().getLogger().w(
+			"Outbound queue is full, dropped " + (message.type == null ? "message on " + message.channel : message.type.getSimpleName()) +
+			" to " + (message.server == null ? "all servers" : message.server)
+		);
+	}
+
+	/**
+	 * Removes the oldest queued message with the same type and destination as a new one from a lane.
+	 *
+	 * @return true if a message was removed
+	 */
+	private static boolean evictOldest(BlockingQueue<OutboundMessage> queue, OutboundMessage message)
+	{
+		for(OutboundMessage old: queue)
+		{
+			if(old.type == message.type && Objects.equals(old.server, message.server) && queue.remove(old)) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Takes the next message from the highest lane that has one.
+	 *
+	 * @return the message, or null if every lane is empty
+	 */
+	private OutboundMessage poll()
+	{
+		for(BlockingQueue<OutboundMessage> lane: lanes)
+		{
+			OutboundMessage message = lane.poll();
+			if(message != null) return message;
+		}
+		return null;
+	}
+
+	/**
+	 * Starts the sender thread, if it isn't running already.
+	 */
+	public synchronized void start()
+	{
+		if(sender != null) return;
+
+		sender = new Thread("Universe Sender")
+		{
+			@Override
+			public void run()
+			{
+				while(!isInterrupted())
+				{
+					try
+					{
+						synchronized(pauseLock)
+						{
+							while(paused) pauseLock.wait();
+						}
+
+						if(deferred.isEmpty())
+						{
+							ready.acquire();
+						}
+						else if(!ready.tryAcquire(getDeferredWaitTime(), TimeUnit.NANOSECONDS))
+						{
+							if(!paused) retryDeferred();
+							continue;
+						}
+
+						if(paused)
+						{
+							//Paused while waiting; the message stays queued until resume()
+							ready.release();
+							continue;
+						}
+
+						OutboundMessage message = poll();
+						if(message != null) dispatch(message);
+						if(!deferred.isEmpty()) retryDeferred();
+					}
+					catch (InterruptedException e)
+					{
+						return;
+					}
+				}
+			}
+		};
+		sender.setDaemon(true);
+		sender.start();
+	}
+
+	/**
+	 * Stops the sender thread. Messages still in the queue are kept.
+	 */
+	public synchronized void stop()
+	{
+		if(sender == null) return;
+
+		sender.interrupt();
+		sender = null;
+	}
+
+	/**
+	 * Stops sending messages, keeping them in the queue until <code>resume()</code> is called.
+	 * If the queue fills up in the meantime, the overflow policies decide what is kept.
+	 */
+	public void pause()
+	{
+		paused = true;
+	}
+
+	/**
+	 * Starts sending queued messages again.
+	 */
+	public void resume()
+	{
+		synchronized(pauseLock)
+		{
+			paused = false;
+			pauseLock.notifyAll();
+		}
+	}
+
+	public boolean isPaused()
+	{
+		return paused;
+	}
+
+	public void setRateLimiter(RateLimiter limiter)
+	{
+		this.limiter = limiter;
+	}
+
+	public RateLimiter getRateLimiter()
+	{
+		return limiter;
+	}
+
+	/**
+	 * Sends a message, unless the RateLimiter says to defer or shed it.
+	 */
+	private void dispatch(OutboundMessage message)
+	{
+		RateLimiter limiter = this.limiter;
+		if(limiter == null)
+		{
+			send(message);
+			return;
+		}
+
+		switch(limiter.acquire(message, deferredServers.containsKey(key(message))))
+		{
+			case SEND:
+				send(message);
+				break;
+			case DEFER:
+				defer(message);
+				break;
+			case SHED:
+				dropped.increment();
+				break;
+		}
+	}
+
+	private static String key(OutboundMessage message)
+	{
+		return message.server == null ? "" : message.server;
+	}
+
+	private void defer(OutboundMessage message)
+	{
+		//Deferred messages count towards the capacity, so the oldest are dropped when there's no room
+		while(deferred.size() >= getCapacity())
+		{
+			undefer(deferred.poll());
+			dropped.increment();
+		}
+		deferred.add(message);
+		deferredServers.merge(key(message), 1, Integer::sum);
+		deferredDepth = deferred.size();
+	}
+
+	private void undefer(OutboundMessage message)
+	{
+		deferredServers.computeIfPresent(key(message), (server, count) -> count == 1 ? null : count - 1);
+	}
+
+	/**
+	 * Sends the deferred messages that have tokens now.
+	 * Once a server's oldest deferred message can't be sent, its newer ones aren't tried either.
+	 */
+	private void retryDeferred()
+	{
+		RateLimiter limiter = this.limiter;
+		Set<String> blocked = new HashSet<>();
+
+		Iterator<OutboundMessage> iterator = deferred.iterator();
+		while(iterator.hasNext())
+		{
+			OutboundMessage message = iterator.next();
+			if(blocked.contains(key(message))) continue;
+
+			if(limiter == null || limiter.retry(message))
+			{
+				iterator.remove();
+				undefer(message);
+				send(message);
+			}
+			else
+			{
+				blocked.add(key(message));
+			}
+		}
+		deferredDepth = deferred.size();
+	}
+
+	/**
+	 * Gets how long the sender thread can wait for new messages before retrying deferred ones.
+	 */
+	private long getDeferredWaitTime()
+	{
+		RateLimiter limiter = this.limiter;
+		OutboundMessage oldest = deferred.peek();
+		if(limiter == null || oldest == null) return 0;
+
+		return Math.min(Math.max(limiter.getWaitTime(oldest), 100000), 50000000);
+	}
+
+	private void send(final OutboundMessage message)
+	{
+		try
+		{
+			String channel = UniverseAPI.getInstance().getChannelRegistry().encode(message.server, message.channel);
+
+			//Stamped here rather than when queued, so lanes and deferrals can't send a later number before an earlier one
+			String payload = message.message;
+			DuplicateFilter filter = UniverseAPI.getInstance().getDuplicateFilter();
+			if(message.type != null && filter != null) payload = filter.stamp(message.server, payload);
+
+			connection.sendMessageAsync(message.server, channel, payload).whenComplete((success, exception) ->
+			{
+				long latency = System.nanoTime() - message.queued;
+				totalLatency.add(latency);
+				maxLatency.accumulateAndGet(latency, Math::max);
+
+				if(exception == null && success)
+				{
+					sent.increment();
+				}
+				else
+				{
+					failed.increment();
+					UniverseAPI.getInstance().getLogger().v("Failed to send message on &e" + message.channel + "&7 to &a" + (message.server == null ? "all servers" : message.server));
+				}
+			});
+
+			//Counted once the connection has it, so messages dropped or shed on the way aren't counted as sent
+			NetworkMetrics metrics = UniverseAPI.getInstance().getMetrics();
+			if(metrics != null) metrics.onSend(message.server, message.channel, message.type, payload.length());
+		}
+		catch (Exception e)
+		{
+			failed.increment();
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Gets the amount of messages waiting to be sent.
+	 *
+	 * @return the queue depth
+	 */
+	public int getDepth()
+	{
+		int depth = 0;
+		for(BlockingQueue<OutboundMessage> lane: lanes)
+		{
+			depth += lane.size();
+		}
+		return depth;
+	}
+
+	/**
+	 * Gets the amount of messages waiting to be sent in a lane.
+	 *
+	 * @param lane the lane
+	 * @return the lane's depth
+	 */
+	public int getDepth(Lane lane)
+	{
+		return lanes[lane.ordinal()].size();
+	}
+
+	/**
+	 * Gets the amount of messages waiting for the RateLimiter.
+	 *
+	 * @return the amount of deferred messages
+	 */
+	public int getDeferredDepth()
+	{
+		return deferredDepth;
+	}
+
+	/**
+	 * Gets the amount of messages each lane can hold.
+	 *
+	 * @return the capacity
+	 */
+	public int getCapacity()
+	{
+		return lanes[0].size() + lanes[0].remainingCapacity();
+	}
+
+	public long getQueuedCount()
+	{
+		return queued.sum();
+	}
+
+	public long getSentCount()
+	{
+		return sent.sum();
+	}
+
+	public long getFailedCount()
+	{
+		return failed.sum();
+	}
+
+	public long getDroppedCount()
+	{
+		return dropped.sum();
+	}
+
+	/**
+	 * Gets the average time between a message being queued and the network answering it.
+	 *
+	 * @return the average send latency, in ms
+	 */
+	public double getAverageLatency()
+	{
+		long count = sent.sum() + failed.sum();
+		return count == 0 ? 0 : totalLatency.sum() / (double)count / 1000000.0;
+	}
+
+	/**
+	 * Gets the longest time between a message being queued and the network answering it.
+	 *
+	 * @return the maximum send latency, in ms
+	 */
+	public double getMaxLatency()
+	{
+		return maxLatency.get() / 1000000.0;
+	}
+}
@@ -0,0 +1,27 @@
+package com.hyperfresh.mcuniverse.network;
+
+/**
+ * What the OutboundQueue does with a message when the queue is full.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public enum OverflowPolicy
+{
+	/**
+	 * Waits for room in the queue.
+	 * The main thread never waits; on the main thread the message is rejected (and a warning logged) if there's no room.
+	 */
+	BLOCK,
+
+	/**
+	 * Drops the oldest queued message of the same type to the same server to make room for this one,
+	 * or this message if there isn't one. Best for state, where only the newest message matters.
+	 */
+	DROP_OLDEST,
+
+	/**
+	 * Drops this message.
+	 * Best for messages that are safe to lose, like pings.
+	 */
+	DROP_NEWEST
+}
@@ -0,0 +1,207 @@
+package com.hyperfresh.mcuniverse.network;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Numbers the joins and leaves this server sends, and applies the ones recieved from other servers in order,
+ * so servers only have to send what changed instead of their whole player list.
+ *
+ * Every join or leave has the sender's epoch (when it started) and the next number in its sequence.
+ * When a number is skipped (a packet was lost) or the sender restarted, its full player list is requested
+ * and changes are held back until it arrives. Changes numbered 0 are from servers that don't number them,
+ * and are always applied right away.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class PresenceTracker
+{
+	private static class Peer
+	{
+		long epoch = 0;
+
+		/**
+		 * The number of the last change applied, or -1 if the player list is needed first.
+		 */
+		long applied = -1;
+
+		/**
+		 * When the player list was last requested, or 0 if it isn't being waited on.
+		 */
+		long requested = 0;
+
+		/**
+		 * Changes recieved out of order or while waiting for the player list, by number.
+		 */
+		final TreeMap<Long, Runnable> held = new TreeMap<>();
+	}
+
+	private final long epoch = System.currentTimeMillis();
+
+	private final AtomicLong sequence = new AtomicLong();
+
+	private final Map<String, Peer> peers = new ConcurrentHashMap<>();
+
+	private final Consumer<String> requestList;
+
+	private final long timeout;
+
+	private final int maxHeld;
+
+	/**
+	 * @param requestList asks a server for its full player list
+	 * @param timeout the time, in ms, to wait for a player list before asking again
+	 * @param maxHeld the most changes to hold back per server while waiting for its player list
+	 */
+	public PresenceTracker(Consumer<String> requestList, long timeout, int maxHeld)
+	{
+		this.requestList = requestList;
+		this.timeout = timeout;
+		this.maxHeld = maxHeld;
+	}
+
+	public long getEpoch()
+	{
+		return epoch;
+	}
+
+	/**
+	 * Gets the number for the next join or leave this server sends.
+	 *
+	 * @return the next number, starting at 1
+	 */
+	public long next()
+	{
+		return sequence.incrementAndGet();
+	}
+
+	/**
+	 * Gets the number of the last join or leave this server sent, to send along with its player list.
+	 *
+	 * @return the last number
+	 */
+	public long current()
+	{
+		return sequence.get();
+	}
+
+	/**
+	 * Called when a server sends a join or leave.
+	 *
+	 * @param server the server's identifier
+	 * @param epoch the server's epoch
+	 * @param seq the change's number
+	 * @param apply applies the change; run now, later (after the server's player list), or never
+	 */
+	public void onChange(String server, long epoch, long seq, Runnable apply)
+	{
+		if(seq <= 0)
+		{
+			apply.run();
+			return;
+		}
+
+		Peer peer = peers.computeIfAbsent(server, k -> new Peer());
+		synchronized(peer)
+		{
+			if(epoch < peer.epoch) return;
+			if(epoch > peer.epoch)
+			{
+				//The server restarted, so nothing it sent before counts anymore
+				peer.epoch = epoch;
+				peer.applied = -1;
+				peer.held.clear();
+				peer.requested = 0;
+			}
+
+			if(peer.applied >= 0 && seq <= peer.applied) return;
+			if(peer.applied >= 0 && seq == peer.applied + 1)
+			{
+				apply.run();
+				peer.applied = seq;
+
+				//It was only late, so the changes held back behind it can go too
+				drain(peer);
+				if(peer.held.isEmpty()) peer.requested = 0;
+				return;
+			}
+
+			//Something was missed; wait for the full list
+			if(peer.held.size() < maxHeld) peer.held.put(seq, apply);
+			request(server, peer);
+		}
+	}
+
+	/**
+	 * Called when a server sends its full player list.
+	 *
+	 * @param server the server's identifier
+	 * @param epoch the server's epoch
+	 * @param seq the number of the last change the list includes
+	 * @param reset replaces the server's players with the list; run now or never
+	 */
+	public void onList(String server, long epoch, long seq, Runnable reset)
+	{
+		Peer peer = peers.computeIfAbsent(server, k -> new Peer());
+		synchronized(peer)
+		{
+			if(epoch < peer.epoch || (epoch == peer.epoch && peer.applied >= 0 && seq < peer.applied)) return;
+			if(epoch > peer.epoch) peer.held.clear();
+
+			reset.run();
+			peer.epoch = epoch;
+			peer.applied = seq;
+			peer.requested = 0;
+
+			//Apply whatever came in after the list, up to the first gap
+			drain(peer);
+			if(!peer.held.isEmpty()) request(server, peer);
+		}
+	}
+
+	/**
+	 * Applies the held back changes that follow the last applied one, and drops the ones that are already covered.
+	 */
+	private void drain(Peer peer)
+	{
+		peer.held.headMap(peer.applied, true).clear();
+		while(!peer.held.isEmpty() && peer.held.firstKey() == peer.applied + 1)
+		{
+			peer.held.pollFirstEntry().getValue().run();
+			peer.applied++;
+		}
+	}
+
+	private void request(String server, Peer peer)
+	{
+		long now = System.currentTimeMillis();
+		if(peer.requested != 0 && now - peer.requested < timeout) return;
+
+		peer.requested = now;
+		requestList.accept(server);
+	}
+
+	/**
+	 * Checks if a server numbers its joins and leaves, so its other player lists (such as LilypadEssentials syncs) can be skipped.
+	 *
+	 * @param server the server's identifier
+	 * @return true if the server has sent numbered changes
+	 */
+	public boolean isTracked(String server)
+	{
+		return peers.containsKey(server);
+	}
+
+	/**
+	 * Forgets a server, such as when it's removed.
+	 *
+	 * @param server the server's identifier
+	 */
+	public void forgetPeer(String server)
+	{
+		peers.remove(server);
+	}
+}
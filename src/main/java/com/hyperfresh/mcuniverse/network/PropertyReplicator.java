@@ -0,0 +1,253 @@
+package com.hyperfresh.mcuniverse.network;
+
+import com.hyperfresh.mcuniverse.packets.Packet;
+import com.hyperfresh.mcuniverse.packets.PacketOutPropertyChanges;
+import com.hyperfresh.mcuniverse.server.PropertySlots;
+import com.hyperfresh.mcuniverse.server.ServerProperty;
+import com.hyperfresh.mcuniverse.server.ServerPropertyManager;
+import com.hyperfresh.mcuniverse.server.networked.local.LocalPropertyCache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Pushes this server's property changes to the servers that subscribed to them, and applies the changes
+ * other servers push, so their StoredServers stay up to date without asking for one property at a time.
+ *
+ * Every flush diffs the LocalPropertyCache against the values last pushed, and sends what changed (and which
+ * properties no longer have a value) to every subscriber as one numbered change set. A new subscriber gets every value
+ * first, which replaces all of its replicated values for this server, numbered like the
+ * last change set, so the change sets after it apply on top. When a change set is missed (or the sender restarted),
+ * the receiver subscribes again to get every value again.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class PropertyReplicator
+{
+	private static class Peer
+	{
+		long epoch = 0;
+
+		/**
+		 * The number of the last change set applied.
+		 */
+		long seq = 0;
+
+		/**
+		 * Whether every value has been recieved since the server started, so change sets can be applied.
+		 */
+		boolean synced = false;
+
+		/**
+		 * When the last subscription was sent, or 0 if it isn't being waited on.
+		 */
+		long requested = 0;
+	}
+
+	private final long epoch = System.currentTimeMillis();
+
+	private long seq = 0;
+
+	private final ServerPropertyManager manager;
+
+	private final LocalPropertyCache cache;
+
+	private final Predicate<ServerProperty> replicated;
+
+	private final BiConsumer<Collection<String>, Packet> sender;
+
+	private final Consumer<String> subscribe;
+
+	private final long timeout;
+
+	/**
+	 * The values in the last change set, which subscribers have.
+	 */
+	private final PropertySlots sent;
+
+	private final Set<String> subscribers = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Servers that subscribed since the last flush, and get every value in the next one.
+	 */
+	private final Set<String> joining = ConcurrentHashMap.newKeySet();
+
+	private final Map<String, Peer> peers = new ConcurrentHashMap<>();
+
+	/**
+	 * @param manager the manager to get properties from
+	 * @param cache this server's property values
+	 * @param replicated picks the properties to push (properties that change on every read, or are sent some other way, shouldn't be)
+	 * @param sender sends a packet to some servers
+	 * @param subscribe asks a server to push its changes here
+	 * @param timeout the time, in ms, to wait for every value after subscribing before subscribing again
+	 */
+	public PropertyReplicator(ServerPropertyManager manager, LocalPropertyCache cache, Predicate<ServerProperty> replicated,
+							  BiConsumer<Collection<String>, Packet> sender, Consumer<String> subscribe, long timeout)
+	{
+		this.manager = manager;
+		this.cache = cache;
+		this.replicated = replicated;
+		this.sender = sender;
+		this.subscribe = subscribe;
+		this.timeout = timeout;
+		this.sent = new PropertySlots(manager);
+	}
+
+	/**
+	 * Called when a server subscribes to this server's changes. It gets every value in the next flush.
+	 *
+	 * @param server the server's identifier
+	 */
+	public void addSubscriber(String server)
+	{
+		joining.add(server);
+	}
+
+	/**
+	 * Checks if a property's values are pushed, so a full change set replaces all of them.
+	 *
+	 * @param property the property
+	 * @return true if the property is replicated
+	 */
+	public boolean isReplicated(ServerProperty property)
+	{
+		return replicated.test(property);
+	}
+
+	/**
+	 * Sends whatever changed since the last flush to the subscribers, and every value to new subscribers.
+	 * Should be run on the main thread, since reading a property for the first time works it out there.
+	 */
+	public synchronized void flush()
+	{
+		PropertySlots changes = new PropertySlots(manager);
+		List<String> removed = new ArrayList<>();
+		for(int slot = 0; slot < manager.getSlotCount(); slot++)
+		{
+			ServerProperty property = manager.getProperty(slot);
+			if(property == null || !replicated.test(property)) continue;
+
+			Object value = cache.get(property);
+			if(!Objects.equals(value, sent.get(property)))
+			{
+				sent.set(property, value);
+				if(value == null)
+				{
+					//Slots can't hold null, so removals are listed by name
+					removed.add(manager.getKey(property));
+				}
+				else
+				{
+					changes.set(property, value);
+				}
+			}
+		}
+
+		if(changes.size() > 0 || !removed.isEmpty())
+		{
+			seq++;
+			if(!subscribers.isEmpty()) sender.accept(new ArrayList<>(subscribers), new PacketOutPropertyChanges(epoch, seq, false, changes, removed));
+		}
+
+		if(!joining.isEmpty())
+		{
+			List<String> servers = new ArrayList<>(joining);
+			joining.removeAll(servers);
+			subscribers.addAll(servers);
+			sender.accept(servers, new PacketOutPropertyChanges(epoch, seq, true, sent.copy(), new ArrayList<>()));
+		}
+	}
+
+	/**
+	 * Called when a server pushes a change set.
+	 *
+	 * @param server the server's identifier
+	 * @param epoch the server's epoch
+	 * @param seq the change set's number
+	 * @param full whether the change set has every value
+	 * @param apply applies the change set; run now or never
+	 */
+	public void onChanges(String server, long epoch, long seq, boolean full, Runnable apply)
+	{
+		Peer peer = peers.computeIfAbsent(server, k -> new Peer());
+		synchronized(peer)
+		{
+			if(epoch < peer.epoch) return;
+			if(epoch > peer.epoch)
+			{
+				//The server restarted, so the values it sent before can't be built on
+				peer.epoch = epoch;
+				peer.seq = 0;
+				peer.synced = false;
+			}
+
+			if(full)
+			{
+				if(peer.synced && seq < peer.seq) return;
+				apply.run();
+				peer.seq = seq;
+				peer.synced = true;
+				peer.requested = 0;
+				return;
+			}
+
+			if(peer.synced && seq <= peer.seq) return;
+			if(peer.synced && seq == peer.seq + 1)
+			{
+				apply.run();
+				peer.seq = seq;
+				return;
+			}
+
+			//A change set was missed (or every value hasn't come yet); get every value again
+			peer.synced = false;
+			request(server, peer);
+		}
+	}
+
+	/**
+	 * Subscribes to a server's changes, such as when it's discovered (it may have restarted and forgotten its subscribers).
+	 *
+	 * @param server the server's identifier
+	 */
+	public void resubscribe(String server)
+	{
+		Peer peer = peers.computeIfAbsent(server, k -> new Peer());
+		synchronized(peer)
+		{
+			peer.synced = false;
+			peer.requested = System.currentTimeMillis();
+			subscribe.accept(server);
+		}
+	}
+
+	private void request(String server, Peer peer)
+	{
+		long now = System.currentTimeMillis();
+		if(peer.requested != 0 && now - peer.requested < timeout) return;
+
+		peer.requested = now;
+		subscribe.accept(server);
+	}
+
+	/**
+	 * Forgets a server, both as a subscriber and as a server pushing changes here, such as when it's removed.
+	 *
+	 * @param server the server's identifier
+	 */
+	public void forgetPeer(String server)
+	{
+		subscribers.remove(server);
+		joining.remove(server);
+		peers.remove(server);
+	}
+}
@@ -0,0 +1,249 @@
+package com.hyperfresh.mcuniverse.network;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits how fast messages are sent, with one TokenBucket per destination server and one per channel.
+ * A message is only sent when both of its buckets have a token. Broadcasts share one bucket as if they
+ * had a destination of their own.
+ *
+ * Messages over the limit are deferred or shed depending on their TrafficClass.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class RateLimiter
+{
+	public enum Decision
+	{
+		SEND, DEFER, SHED
+	}
+
+	/**
+	 * The bucket key used for broadcasts.
+	 */
+	private static final String BROADCAST = "*";
+
+	/**
+	 * The rate and burst of each destination server's bucket. A rate of 0 means unlimited.
+	 */
+	private final double serverRate;
+	private final long serverBurst;
+
+	/**
+	 * The rate and burst of each channel's bucket, unless the channel has its own limit.
+	 */
+	private final double channelRate;
+	private final long channelBurst;
+
+	/**
+	 * Channels with their own rate and burst, as {rate, burst}.
+	 */
+	private final Map<String, double[]> channelLimits = new ConcurrentHashMap<>();
+
+	private final Map<String, TokenBucket> serverBuckets = new ConcurrentHashMap<>();
+
+	private final Map<String, TokenBucket> channelBuckets = new ConcurrentHashMap<>();
+
+	private final Map<Class<?>, TrafficClass> classes = new ConcurrentHashMap<>();
+
+	private final LongAdder deferred = new LongAdder();
+	private final LongAdder shed = new LongAdder();
+
+	/**
+	 * @param serverRate the messages per second to each server, or 0 for unlimited
+	 * @param serverBurst the messages that can be sent to a server at once
+	 * @param channelRate the messages per second on each channel, or 0 for unlimited
+	 * @param channelBurst the messages that can be sent on a channel at once
+	 */
+	public RateLimiter(double serverRate, long serverBurst, double channelRate, long channelBurst)
+	{
+		this.serverRate = serverRate;
+		this.serverBurst = Math.max(1, serverBurst);
+		this.channelRate = channelRate;
+		this.channelBurst = Math.max(1, channelBurst);
+	}
+
+	/**
+	 * Gives a channel its own limit.
+	 *
+	 * @param channel the channel
+	 * @param rate the messages per second, or 0 for unlimited
+	 * @param burst the messages that can be sent at once
+	 */
+	public void setChannelLimit(String channel, double rate, long burst)
+	{
+		channelLimits.put(channel, new double[]{rate, Math.max(1, burst)});
+		channelBuckets.remove(channel);
+	}
+
+	/**
+	 * Parses channel limits in the form <code>channel:rate:burst</code>, separated by commas.
+	 *
+	 * @param limits the limits
+	 */
+	public void setChannelLimits(String limits)
+	{
+		if(limits == null) return;
+
+		for(String limit: limits.split(","))
+		{
+			limit = limit.trim();
+			if(limit.isEmpty()) continue;
+
+			String[] split = limit.split(":");
+			if(split.length < 2) throw new IllegalArgumentException("Invalid channel limit '" + limit + "'");
+
+			double rate = Double.parseDouble(split[1]);
+			setChannelLimit(split[0], rate, split.length > 2 ? Long.parseLong(split[2]) : (long)Math.ceil(rate));
+		}
+	}
+
+	/**
+	 * Sets the TrafficClass of a type of packet.
+	 *
+	 * @param type the packet type
+	 * @param trafficClass the traffic class
+	 */
+	public void setTrafficClass(Class<?> type, TrafficClass trafficClass)
+	{
+		classes.put(type, trafficClass);
+	}
+
+	/**
+	 * Gets the TrafficClass of a type of packet. Plain messages and unregistered types are NORMAL.
+	 *
+	 * @param type the packet type, or null
+	 * @return the traffic class
+	 */
+	public TrafficClass getTrafficClass(Class<?> type)
+	{
+		TrafficClass trafficClass = type == null ? null : classes.get(type);
+		return trafficClass == null ? TrafficClass.NORMAL : trafficClass;
+	}
+
+	private TokenBucket getServerBucket(String server)
+	{
+		if(serverRate <= 0) return null;
+		return serverBuckets.computeIfAbsent(server == null ? BROADCAST : server, s -> new TokenBucket(serverRate, serverBurst));
+	}
+
+	private TokenBucket getChannelBucket(String channel)
+	{
+		double[] limit = channelLimits.get(channel);
+		double rate = limit == null ? channelRate : limit[0];
+		if(rate <= 0) return null;
+
+		long burst = limit == null ? channelBurst : (long)limit[1];
+		return channelBuckets.computeIfAbsent(channel, c -> new TokenBucket(rate, burst));
+	}
+
+	/**
+	 * Decides what to do with a message, taking tokens if it can be sent.
+	 *
+	 * @param message the message
+	 * @param waiting whether older messages to the same destination are still waiting for tokens
+	 * @return whether to send, defer, or shed the message
+	 */
+	public Decision acquire(OutboundMessage message, boolean waiting)
+	{
+		TokenBucket server = getServerBucket(message.server);
+		TokenBucket channel = getChannelBucket(message.channel);
+		TrafficClass trafficClass = getTrafficClass(message.type);
+
+		if(trafficClass == TrafficClass.CONTROL)
+		{
+			if(server != null) server.forceAcquire();
+			if(channel != null) channel.forceAcquire();
+			return Decision.SEND;
+		}
+
+		//Messages can't overtake older ones to the same destination
+		if(!waiting && tryAcquire(server, channel)) return Decision.SEND;
+
+		if(trafficClass == TrafficClass.BULK)
+		{
+			shed.increment();
+			return Decision.SHED;
+		}
+		deferred.increment();
+		return Decision.DEFER;
+	}
+
+	/**
+	 * Takes tokens for a deferred message, if both of its buckets have one.
+	 *
+	 * @param message the message
+	 * @return true if the message can be sent now
+	 */
+	public boolean retry(OutboundMessage message)
+	{
+		return tryAcquire(getServerBucket(message.server), getChannelBucket(message.channel));
+	}
+
+	private static boolean tryAcquire(TokenBucket server, TokenBucket channel)
+	{
+		//Only take a token from either bucket when both have one
+		if(server != null && channel != null)
+		{
+			synchronized(server)
+			{
+				if(!channel.isAvailable() || !server.tryAcquire()) return false;
+				channel.tryAcquire();
+				return true;
+			}
+		}
+		if(server != null) return server.tryAcquire();
+		if(channel != null) return channel.tryAcquire();
+		return true;
+	}
+
+	/**
+	 * Gets how long until a deferred message might be sendable.
+	 *
+	 * @param message the message
+	 * @return the time, in ns
+	 */
+	public long getWaitTime(OutboundMessage message)
+	{
+		TokenBucket server = getServerBucket(message.server);
+		TokenBucket channel = getChannelBucket(message.channel);
+		return Math.max(server == null ? 0 : server.getWaitTime(), channel == null ? 0 : channel.getWaitTime());
+	}
+
+	/**
+	 * Gets the amount of messages that had to wait for tokens.
+	 *
+	 * @return the amount of messages
+	 */
+	public long getDeferredCount()
+	{
+		return deferred.sum();
+	}
+
+	/**
+	 * Gets the amount of BULK messages that were dropped for being over the limit.
+	 *
+	 * @return the amount of messages
+	 */
+	public long getShedCount()
+	{
+		return shed.sum();
+	}
+
+	/**
+	 * Gets the destinations whose buckets are currently empty.
+	 *
+	 * @return the amount of throttled servers
+	 */
+	public int getThrottledServerCount()
+	{
+		int count = 0;
+		for(TokenBucket bucket: serverBuckets.values())
+		{
+			if(!bucket.isAvailable()) count++;
+		}
+		return count;
+	}
+}
@@ -0,0 +1,92 @@
+package com.hyperfresh.mcuniverse.network;
+
+/**
+ * Remembers which of the last <code>size</code> sequence numbers from one sender were already seen,
+ * using one bit per sequence number in a ring. Checking a sequence number is O(1) and the memory never grows.
+ *
+ * Sequence numbers older than the window can't be told apart from duplicates, so they're rejected too.
+ * Not thread-safe.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class SequenceWindow
+{
+	private final long[] bits;
+
+	/**
+	 * The amount of sequence numbers the window covers, always a multiple of 64.
+	 */
+	private final int size;
+
+	/**
+	 * The highest sequence number seen so far, or -1 if none were seen.
+	 */
+	private long highest = -1;
+
+	/**
+	 * @param size the amount of sequence numbers to remember, rounded up to a multiple of 64
+	 */
+	public SequenceWindow(int size)
+	{
+		if(size < 1) throw new IllegalArgumentException("Size must be positive");
+		this.bits = new long[(size + 63) / 64];
+		this.size = bits.length * 64;
+	}
+
+	/**
+	 * Marks a sequence number as seen.
+	 *
+	 * @param seq the sequence number, starting from 0
+	 * @return true if this sequence number wasn't seen before, false if it's a duplicate or too old to tell
+	 */
+	public boolean accept(long seq)
+	{
+		if(seq < 0) return false;
+
+		if(seq > highest)
+		{
+			//Forget the sequence numbers that slid out of the window, at most the whole window
+			long clear = Math.min(seq - highest, size);
+			for(long i = 1; i <= clear; i++)
+			{
+				long slot = (highest + i) % size;
+				if(slot % 64 == 0 && clear - i >= 63)
+				{
+					bits[(int)(slot / 64)] = 0;
+					i += 63;
+				}
+				else
+				{
+					bits[(int)(slot / 64)] &= ~(1L << (slot % 64));
+				}
+			}
+			highest = seq;
+			set(seq);
+			return true;
+		}
+
+		if(highest - seq >= size) return false;
+
+		int slot = (int)(seq % size);
+		if((bits[slot / 64] & (1L << (slot % 64))) != 0) return false;
+
+		set(seq);
+		return true;
+	}
+
+	private void set(long seq)
+	{
+		int slot = (int)(seq % size);
+		bits[slot / 64] |= 1L << (slot % 64);
+	}
+
+	public long getHighest()
+	{
+		return highest;
+	}
+
+	public int getSize()
+	{
+		return size;
+	}
+}
@@ -0,0 +1,132 @@
+package com.hyperfresh.mcuniverse.network;
+
+/**
+ * How well this server can reach another server, as measured by the HealthMonitor.
+ * Every value is an exponentially weighted moving average, so older pings matter less and less.
+ *
+ * ServerHealth is immutable; every ping result makes a new one.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class ServerHealth
+{
+	/**
+	 * The health of a server that hasn't been pinged yet.
+	 */
+	public static final ServerHealth UNKNOWN = new ServerHealth(-1, 0, 0, 0, 0, -1);
+
+	private final double rtt;
+
+	private final double jitter;
+
+	private final double loss;
+
+	private final long replies;
+
+	private final int consecutiveLosses;
+
+	private final long lastReply;
+
+	private ServerHealth(double rtt, double jitter, double loss, long replies, int consecutiveLosses, long lastReply)
+	{
+		this.rtt = rtt;
+		this.jitter = jitter;
+		this.loss = loss;
+		this.replies = replies;
+		this.consecutiveLosses = consecutiveLosses;
+		this.lastReply = lastReply;
+	}
+
+	/**
+	 * Adds a ping that was answered.
+	 *
+	 * @param sample the round trip time, in ms
+	 * @param weight how much the new sample counts, from 0 to 1
+	 * @return the new health
+	 */
+	public ServerHealth withReply(double sample, double weight)
+	{
+		if(replies == 0)
+		{
+			return new ServerHealth(sample, 0, loss * (1 - weight), 1, 0, System.currentTimeMillis());
+		}
+		return new ServerHealth(
+			rtt + weight * (sample - rtt),
+			jitter + weight * (Math.abs(sample - rtt) - jitter),
+			loss * (1 - weight),
+			replies + 1, 0, System.currentTimeMillis()
+		);
+	}
+
+	/**
+	 * Adds a ping that timed out.
+	 *
+	 * @param weight how much the new sample counts, from 0 to 1
+	 * @return the new health
+	 */
+	public ServerHealth withLoss(double weight)
+	{
+		return new ServerHealth(rtt, jitter, loss + weight * (1 - loss), replies, consecutiveLosses + 1, lastReply);
+	}
+
+	/**
+	 * Gets the average round trip time.
+	 *
+	 * @return the time, in ms, or -1 if the server never answered
+	 */
+	public double getRtt()
+	{
+		return rtt;
+	}
+
+	/**
+	 * Gets how much the round trip time usually differs from the average.
+	 *
+	 * @return the jitter, in ms
+	 */
+	public double getJitter()
+	{
+		return jitter;
+	}
+
+	/**
+	 * Gets the share of pings that timed out.
+	 *
+	 * @return the loss, from 0 to 1
+	 */
+	public double getLoss()
+	{
+		return loss;
+	}
+
+	public long getReplyCount()
+	{
+		return replies;
+	}
+
+	/**
+	 * Gets the amount of pings in a row that timed out.
+	 *
+	 * @return the amount of pings
+	 */
+	public int getConsecutiveLosses()
+	{
+		return consecutiveLosses;
+	}
+
+	/**
+	 * Gets when the server last answered a ping.
+	 *
+	 * @return the time, in ms, or -1 if the server never answered
+	 */
+	public long getLastReply()
+	{
+		return lastReply;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "ServerHealth{rtt=" + rtt + ", jitter=" + jitter + ", loss=" + loss + ", consecutiveLosses=" + consecutiveLosses + "}";
+	}
+}
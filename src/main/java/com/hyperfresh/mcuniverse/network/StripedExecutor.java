@@ -0,0 +1,140 @@
+package com.hyperfresh.mcuniverse.network;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs tasks on a fixed amount of single-threaded stripes, picking the stripe by hashing a key.
+ * Tasks with the same key always run on the same stripe, one after another in the order they were submitted,
+ * while tasks with different keys can run in parallel.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class StripedExecutor
+{
+	private final ThreadPoolExecutor[] stripes;
+
+	/**
+	 * @param name the name of the stripes' threads
+	 * @param stripes the amount of stripes
+	 */
+	public StripedExecutor(final String name, int stripes)
+	{
+		if(stripes < 1) throw new IllegalArgumentException("There must be at least one stripe");
+
+		this.stripes = new ThreadPoolExecutor[stripes];
+		for(int i = 0; i < stripes; i++)
+		{
+			final String threadName = name + " " + i;
+			this.stripes[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable ->
+			{
+				Thread thread = new Thread(runnable, threadName);
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	/**
+	 * Gets the stripe that tasks with a key run on.
+	 *
+	 * @param key the key
+	 * @return the stripe's index
+	 */
+	public int getStripe(Object key)
+	{
+		int hash = key == null ? 0 : key.hashCode();
+		hash ^= hash >>> 16;
+		return (hash & 0x7FFFFFFF) % stripes.length;
+	}
+
+	/**
+	 * Runs a task on its key's stripe, after every task submitted before it with the same key.
+	 *
+	 * @param key the key, such as the sender's identifier
+	 * @param task the task
+	 */
+	public void execute(Object key, final Runnable task)
+	{
+		stripes[getStripe(key)].execute(() ->
+		{
+			try
+			{
+				task.run();
+			}
+			catch (Exception e)
+			{
+				e.printStackTrace();
+			}
+		});
+	}
+
+	public int getStripeCount()
+	{
+		return stripes.length;
+	}
+
+	/**
+	 * Gets the amount of tasks waiting on a stripe.
+	 *
+	 * @param stripe the stripe's index
+	 * @return the amount of tasks
+	 */
+	public int getDepth(int stripe)
+	{
+		return stripes[stripe].getQueue().size();
+	}
+
+	/**
+	 * Gets the amount of tasks waiting on all stripes.
+	 *
+	 * @return the amount of tasks
+	 */
+	public int getDepth()
+	{
+		int depth = 0;
+		for(ThreadPoolExecutor stripe: stripes)
+		{
+			depth += stripe.getQueue().size();
+		}
+		return depth;
+	}
+
+	public long getCompletedCount()
+	{
+		long completed = 0;
+		for(ThreadPoolExecutor stripe: stripes)
+		{
+			completed += stripe.getCompletedTaskCount();
+		}
+		return completed;
+	}
+
+	/**
+	 * Stops the stripes after they finish the tasks they already have.
+	 */
+	public void shutdown()
+	{
+		for(ThreadPoolExecutor stripe: stripes)
+		{
+			stripe.shutdown();
+		}
+	}
+
+	/**
+	 * Waits for the stripes to stop after <code>shutdown()</code>.
+	 *
+	 * @param timeout the longest time to wait, in ms
+	 * @return true if every stripe stopped
+	 */
+	public boolean awaitTermination(long timeout) throws InterruptedException
+	{
+		long deadline = System.currentTimeMillis() + timeout;
+		for(ThreadPoolExecutor stripe: stripes)
+		{
+			if(!stripe.awaitTermination(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) return false;
+		}
+		return true;
+	}
+}
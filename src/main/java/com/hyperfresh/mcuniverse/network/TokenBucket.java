@@ -0,0 +1,91 @@
+package com.hyperfresh.mcuniverse.network;
+
+/**
+ * A token bucket: tokens refill at a steady rate up to a maximum (the burst),
+ * and every message sent takes one.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class TokenBucket
+{
+	/**
+	 * The time, in ns, it takes for one token to refill.
+	 */
+	private final long interval;
+
+	private final long burst;
+
+	/**
+	 * The time at which the bucket will be full again, in ns.
+	 * Storing this instead of the amount of tokens means refilling is just a subtraction.
+	 */
+	private long full;
+
+	/**
+	 * @param rate the amount of tokens refilled per second
+	 * @param burst the most tokens the bucket can hold
+	 */
+	public TokenBucket(double rate, long burst)
+	{
+		if(rate <= 0 || burst <= 0) throw new IllegalArgumentException("Rate and burst must be positive");
+		this.interval = Math.max(1, (long)(1000000000.0 / rate));
+		this.burst = burst;
+		this.full = System.nanoTime();
+	}
+
+	/**
+	 * Takes a token if there is one.
+	 *
+	 * @return true if a token was taken
+	 */
+	public synchronized boolean tryAcquire()
+	{
+		long now = System.nanoTime();
+		long start = Math.max(full, now);
+		if(start + interval - now > interval * burst) return false;
+
+		full = start + interval;
+		return true;
+	}
+
+	/**
+	 * Takes a token even if there isn't one, so whatever comes next waits longer.
+	 * The bucket can go at most one burst into debt.
+	 */
+	public synchronized void forceAcquire()
+	{
+		long now = System.nanoTime();
+		full = Math.min(Math.max(full, now) + interval, now + 2 * interval * burst);
+	}
+
+	/**
+	 * Checks if there's a token, without taking it.
+	 */
+	public synchronized boolean isAvailable()
+	{
+		long now = System.nanoTime();
+		return Math.max(full, now) + interval - now <= interval * burst;
+	}
+
+	/**
+	 * Gets how long until the next token is available.
+	 *
+	 * @return the time, in ns (0 if a token is available now)
+	 */
+	public synchronized long getWaitTime()
+	{
+		long now = System.nanoTime();
+		return Math.max(0, Math.max(full, now) + interval - now - interval * burst);
+	}
+
+	/**
+	 * Gets the amount of tokens in the bucket.
+	 *
+	 * @return the amount of tokens
+	 */
+	public synchronized long getTokens()
+	{
+		long now = System.nanoTime();
+		return Math.max(0, burst - (Math.max(full, now) - now + interval - 1) / interval);
+	}
+}
@@ -0,0 +1,25 @@
+package com.hyperfresh.mcuniverse.network;
+
+/**
+ * How the RateLimiter treats a type of message when it's over the limit.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public enum TrafficClass
+{
+	/**
+	 * Never limited, like pings and discovery, which the network needs to work at all.
+	 * Still uses up tokens, so other traffic backs off.
+	 */
+	CONTROL,
+
+	/**
+	 * Waits until there are tokens again.
+	 */
+	NORMAL,
+
+	/**
+	 * Dropped, for messages that will be sent again anyway, like property updates.
+	 */
+	BULK
+}
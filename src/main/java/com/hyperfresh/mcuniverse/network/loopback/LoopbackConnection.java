@@ -0,0 +1,151 @@
+package com.hyperfresh.mcuniverse.network.loopback;
+
+import com.hyperfresh.mcuniverse.NetworkConnection;
+import com.hyperfresh.mcuniverse.network.MessageReceiver;
+import com.octopod.minecraft.MinecraftPlayer;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A server's connection to a LoopbackNetwork.
+ * Messages sent to this server wait in its inbox until a delivery thread hands them to the receiver,
+ * one at a time and in order of arrival.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class LoopbackConnection implements NetworkConnection
+{
+	private final LoopbackNetwork network;
+
+	private final String server;
+
+	private final MessageReceiver receiver;
+
+	private final Queue<String[]> inbox = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * Whether a delivery thread is currently draining the inbox.
+	 */
+	private final AtomicBoolean draining = new AtomicBoolean(false);
+
+	private volatile boolean connected = false;
+
+	LoopbackConnection(LoopbackNetwork network, String server, MessageReceiver receiver)
+	{
+		this.network = network;
+		this.server = server;
+		this.receiver = receiver;
+	}
+
+	@Override
+	public String getName() {return "Loopback";}
+
+	@Override
+	public String getServerIdentifier()
+	{
+		return server;
+	}
+
+	@Override
+	public void connect()
+	{
+		connected = true;
+	}
+
+	@Override
+	public void disconnect()
+	{
+		connected = false;
+	}
+
+	@Override
+	public boolean isConnected()
+	{
+		return connected;
+	}
+
+	@Override
+	public void sendMessage(String server, String channel, String message)
+	{
+		if(connected) network.send(this.server, server, channel, message);
+	}
+
+	@Override
+	public void broadcastMessage(String channel, String message)
+	{
+		sendMessage(null, channel, message);
+	}
+
+	@Override
+	public CompletableFuture<Boolean> sendMessageAsync(String server, String channel, String message)
+	{
+		return CompletableFuture.completedFuture(connected && network.send(this.server, server, channel, message));
+	}
+
+	@Override
+	public CompletableFuture<Boolean> sendPlayerAsync(final MinecraftPlayer player, final String server)
+	{
+		final CompletableFuture<Boolean> future = new CompletableFuture<>();
+		if(!connected)
+		{
+			future.complete(false);
+			return future;
+		}
+
+		//A redirect is a round trip to the proxy
+		network.getTimer().schedule(
+			() -> future.complete(network.redirect(player.getName(), server)),
+			network.nextDelay() + network.nextDelay(), TimeUnit.MILLISECONDS
+		);
+		return future;
+	}
+
+	void enqueue(String from, String channel, String message)
+	{
+		if(!connected) return;
+
+		inbox.add(new String[]{from, channel, message});
+		if(draining.compareAndSet(false, true))
+		{
+			network.getDelivery().execute(this::drain);
+		}
+	}
+
+	private void drain()
+	{
+		String[] message;
+		while((message = inbox.poll()) != null)
+		{
+			try
+			{
+				receiver.receive(message[0], message[1], message[2]);
+			}
+			catch (Exception e)
+			{
+				e.printStackTrace();
+			}
+			network.onDelivered();
+		}
+		draining.set(false);
+
+		//Something might have arrived after the last poll, but before draining was unset
+		if(!inbox.isEmpty() && draining.compareAndSet(false, true))
+		{
+			network.getDelivery().execute(this::drain);
+		}
+	}
+
+	/**
+	 * Gets the amount of messages waiting to be delivered to this server.
+	 *
+	 * @return the inbox size
+	 */
+	public int getInboxSize()
+	{
+		return inbox.size();
+	}
+}
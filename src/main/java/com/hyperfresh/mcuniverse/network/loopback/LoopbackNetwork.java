@@ -0,0 +1,247 @@
+package com.hyperfresh.mcuniverse.network.loopback;
+
+import com.hyperfresh.mcuniverse.network.MessageReceiver;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A simulated network that lives entirely inside one JVM.
+ * Every server that joins gets a LoopbackConnection, and messages between them are passed through in-memory queues
+ * with a configurable latency, jitter and loss, so discovery, redirects and state replication can be tested
+ * and benchmarked across hundreds of servers without a Lilypad Connect server.
+ *
+ * Each server's messages are delivered in order of arrival, one at a time, by a shared pool of delivery threads.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class LoopbackNetwork
+{
+	private final Map<String, LoopbackConnection> nodes = new ConcurrentHashMap<>();
+
+	/**
+	 * Holds delayed messages until their latency has passed.
+	 */
+	private final ScheduledExecutorService timer;
+
+	/**
+	 * Delivers messages to the nodes' receivers.
+	 */
+	private final ExecutorService delivery;
+
+	private volatile long latency = 0;
+	private volatile long jitter = 0;
+	private volatile double loss = 0;
+
+	private final LongAdder sent = new LongAdder();
+	private final LongAdder delivered = new LongAdder();
+	private final LongAdder lost = new LongAdder();
+	private final LongAdder redirects = new LongAdder();
+
+	public LoopbackNetwork()
+	{
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param threads the amount of threads used to deliver messages
+	 */
+	public LoopbackNetwork(int threads)
+	{
+		final AtomicInteger count = new AtomicInteger(0);
+		this.timer = Executors.newSingleThreadScheduledExecutor((task) ->
+		{
+			Thread thread = new Thread(task, "Loopback Timer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.delivery = Executors.newFixedThreadPool(threads, (task) ->
+		{
+			Thread thread = new Thread(task, "Loopback Delivery #" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Sets the simulated one-way latency of every message.
+	 *
+	 * @param latency the latency, in ms
+	 */
+	public void setLatency(long latency)
+	{
+		this.latency = latency;
+	}
+
+	/**
+	 * Sets the simulated jitter; each message is delayed by a random extra amount of up to <code>jitter</code> ms.
+	 * Messages with jitter can arrive out of order, like they could on a real network.
+	 *
+	 * @param jitter the jitter, in ms
+	 */
+	public void setJitter(long jitter)
+	{
+		this.jitter = jitter;
+	}
+
+	/**
+	 * Sets the chance of a message being silently lost, from 0 to 1.
+	 *
+	 * @param loss the loss rate
+	 */
+	public void setLoss(double loss)
+	{
+		this.loss = loss;
+	}
+
+	public long getLatency() {return latency;}
+
+	public long getJitter() {return jitter;}
+
+	public double getLoss() {return loss;}
+
+	/**
+	 * Adds a server to the network.
+	 *
+	 * @param server the server's identifier
+	 * @param receiver where messages sent to this server are delivered
+	 * @return the server's connection to the network
+	 */
+	public LoopbackConnection join(String server, MessageReceiver receiver)
+	{
+		LoopbackConnection node = new LoopbackConnection(this, server, receiver);
+		if(nodes.putIfAbsent(server, node) != null)
+		{
+			throw new IllegalArgumentException("Server '" + server + "' is already on this network");
+		}
+		return node;
+	}
+
+	/**
+	 * Removes a server from the network. Messages still on their way to it are lost.
+	 *
+	 * @param server the server's identifier
+	 */
+	public void leave(String server)
+	{
+		nodes.remove(server);
+	}
+
+	public LoopbackConnection getConnection(String server)
+	{
+		return nodes.get(server);
+	}
+
+	public Collection<String> getServerNames()
+	{
+		return Collections.unmodifiableSet(nodes.keySet());
+	}
+
+	/**
+	 * Sends a message from one server to another, or to every server if <code>to</code> is null.
+	 * Like Lilypad, a broadcast is delivered to the server that sent it too.
+	 *
+	 * @return false if the destination isn't on the network
+	 */
+	boolean send(String from, String to, String channel, String message)
+	{
+		if(to == null)
+		{
+			for(LoopbackConnection node: nodes.values())
+			{
+				deliverLater(node, from, channel, message);
+			}
+			return true;
+		}
+
+		LoopbackConnection node = nodes.get(to);
+		if(node == null || !node.isConnected()) return false;
+		deliverLater(node, from, channel, message);
+		return true;
+	}
+
+	/**
+	 * Checks if a player could be redirected to a server.
+	 * Nothing is moved; the redirect is only counted.
+	 */
+	boolean redirect(String player, String to)
+	{
+		LoopbackConnection node = nodes.get(to);
+		if(node == null || !node.isConnected()) return false;
+		redirects.increment();
+		return true;
+	}
+
+	private void deliverLater(final LoopbackConnection node, final String from, final String channel, final String message)
+	{
+		sent.increment();
+
+		if(loss > 0 && ThreadLocalRandom.current().nextDouble() < loss)
+		{
+			lost.increment();
+			return;
+		}
+
+		long delay = nextDelay();
+		if(delay <= 0)
+		{
+			node.enqueue(from, channel, message);
+		}
+		else
+		{
+			timer.schedule(() -> node.enqueue(from, channel, message), delay, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Gets the delay of a message, in ms: the latency plus a random amount of jitter.
+	 *
+	 * @return the delay
+	 */
+	long nextDelay()
+	{
+		return latency + (jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter + 1) : 0);
+	}
+
+	ScheduledExecutorService getTimer()
+	{
+		return timer;
+	}
+
+	ExecutorService getDelivery()
+	{
+		return delivery;
+	}
+
+	void onDelivered()
+	{
+		delivered.increment();
+	}
+
+	public long getSentCount() {return sent.sum();}
+
+	public long getDeliveredCount() {return delivered.sum();}
+
+	public long getLostCount() {return lost.sum();}
+
+	public long getRedirectCount() {return redirects.sum();}
+
+	/**
+	 * Stops delivering messages. Messages that haven't been delivered yet are lost.
+	 */
+	public void shutdown()
+	{
+		timer.shutdownNow();
+		delivery.shutdownNow();
+		nodes.clear();
+	}
+}
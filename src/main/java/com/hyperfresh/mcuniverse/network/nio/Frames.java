@@ -0,0 +1,142 @@
+package com.hyperfresh.mcuniverse.network.nio;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Encodes and decodes the frames sent between NioConnections.
+ * Every frame is an int length (of everything after it), a byte type, and a body:
+ *
+ *   HELLO:   id (short string), listening port (int), nonce (short bytes)
+ *   AUTH:    proof (short bytes), a MAC of the other side's nonce and our id, keyed with the shared secret
+ *   PEERS:   count (int), then for each peer: id (short string), host (short string), port (int)
+ *   MESSAGE: channel (short string), message (long string)
+ *
+ * Short strings and bytes are prefixed with an unsigned short length; long strings are prefixed with an int length.
+ * Strings are UTF-8.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class Frames
+{
+	public static final byte HELLO = 1;
+	public static final byte PEERS = 2;
+	public static final byte MESSAGE = 3;
+	public static final byte AUTH = 4;
+
+	/**
+	 * The size of the length prefix.
+	 */
+	public static final int HEADER = 4;
+
+	private Frames() {}
+
+	public static ByteBuffer hello(String id, int port, byte[] nonce)
+	{
+		byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer buffer = allocate(1 + 2 + idBytes.length + 4 + 2 + nonce.length);
+		buffer.put(HELLO);
+		putShortString(buffer, idBytes);
+		buffer.putInt(port);
+		putShortString(buffer, nonce);
+		buffer.flip();
+		return buffer;
+	}
+
+	public static ByteBuffer auth(byte[] proof)
+	{
+		ByteBuffer buffer = allocate(1 + 2 + proof.length);
+		buffer.put(AUTH);
+		putShortString(buffer, proof);
+		buffer.flip();
+		return buffer;
+	}
+
+	public static ByteBuffer peers(Map<String, InetSocketAddress> peers)
+	{
+		int size = 1 + 4;
+		for(Map.Entry<String, InetSocketAddress> entry: peers.entrySet())
+		{
+			size += 2 + utf8Length(entry.getKey()) + 2 + utf8Length(entry.getValue().getHostString()) + 4;
+		}
+
+		ByteBuffer buffer = allocate(size);
+		buffer.put(PEERS);
+		buffer.putInt(peers.size());
+		for(Map.Entry<String, InetSocketAddress> entry: peers.entrySet())
+		{
+			putShortString(buffer, entry.getKey().getBytes(StandardCharsets.UTF_8));
+			putShortString(buffer, entry.getValue().getHostString().getBytes(StandardCharsets.UTF_8));
+			buffer.putInt(entry.getValue().getPort());
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	public static ByteBuffer message(String channel, String message)
+	{
+		byte[] channelBytes = channel.getBytes(StandardCharsets.UTF_8);
+		byte[] messageBytes = message.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer buffer = allocate(1 + 2 + channelBytes.length + 4 + messageBytes.length);
+		buffer.put(MESSAGE);
+		putShortString(buffer, channelBytes);
+		buffer.putInt(messageBytes.length);
+		buffer.put(messageBytes);
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Allocates a buffer for a frame body of <code>size</code> bytes, with the length prefix already written.
+	 */
+	private static ByteBuffer allocate(int size)
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER + size);
+		buffer.putInt(size);
+		return buffer;
+	}
+
+	private static int utf8Length(String string)
+	{
+		return string.getBytes(StandardCharsets.UTF_8).length;
+	}
+
+	private static void putShortString(ByteBuffer buffer, byte[] bytes)
+	{
+		if(bytes.length > 0xFFFF) throw new IllegalArgumentException("String is too long for a frame (" + bytes.length + " bytes)");
+		buffer.putShort((short)bytes.length);
+		buffer.put(bytes);
+	}
+
+	public static String getShortString(ByteBuffer buffer)
+	{
+		int length = buffer.getShort() & 0xFFFF;
+		if(length > buffer.remaining()) throw new IllegalArgumentException("Invalid string length " + length);
+		return getString(buffer, length);
+	}
+
+	public static byte[] getShortBytes(ByteBuffer buffer)
+	{
+		int length = buffer.getShort() & 0xFFFF;
+		if(length > buffer.remaining()) throw new IllegalArgumentException("Invalid byte array length " + length);
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return bytes;
+	}
+
+	public static String getLongString(ByteBuffer buffer)
+	{
+		int length = buffer.getInt();
+		if(length < 0 || length > buffer.remaining()) throw new IllegalArgumentException("Invalid string length " + length);
+		return getString(buffer, length);
+	}
+
+	private static String getString(ByteBuffer buffer, int length)
+	{
+		String string = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+		buffer.position(buffer.position() + length);
+		return string;
+	}
+}
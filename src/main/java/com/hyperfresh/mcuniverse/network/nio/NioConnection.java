@@ -0,0 +1,743 @@
+package com.hyperfresh.mcuniverse.network.nio;
+
+import com.hyperfresh.mcuniverse.NetworkConnection;
+import com.hyperfresh.mcuniverse.network.MessageReceiver;
+import com.octopod.minecraft.MinecraftPlayer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * A NetworkConnection that sends messages straight to other servers over TCP,
+ * instead of through the Lilypad Connect server.
+ *
+ * Every server listens on a port and dials the peers in its config. Once connected, peers say hello with their
+ * identifier and a random nonce, and prove they know the shared secret by signing the other side's nonce with it.
+ * Only then do they tell each other about the peers they know, so every server ends up connected to every other server,
+ * and a server only dials addresses from its config or from peers that have proven themselves.
+ * Messages are sent as length-prefixed frames (see Frames), and all socket I/O happens on a single selector thread.
+ *
+ * Player redirects, messages to servers that aren't connected directly, and broadcasts go through the fallback connection.
+ * Without a fallback, broadcasts only reach directly connected servers.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class NioConnection implements NetworkConnection
+{
+	private final String id;
+
+	private final SecretKeySpec secret;
+
+	private final SecureRandom random = new SecureRandom();
+
+	private final InetSocketAddress bindAddress;
+
+	private final List<InetSocketAddress> seeds;
+
+	/**
+	 * The connection used for redirects and unreachable servers, or null.
+	 */
+	private final NetworkConnection fallback;
+
+	private final MessageReceiver receiver;
+
+	/**
+	 * Called with a peer's identifier once it has said hello, or null.
+	 */
+	private volatile Consumer<String> peerListener = null;
+
+	private int maxFrameSize = 16 * 1024 * 1024;
+
+	/**
+	 * The largest frame accepted from a peer that hasn't authenticated yet. HELLO and AUTH frames are small.
+	 */
+	private static final int MAX_HANDSHAKE_FRAME = 1024;
+
+	private static final int NONCE_LENGTH = 32;
+
+	/**
+	 * How often, in ms, to dial known peers that aren't connected.
+	 */
+	private long redialInterval = 5000;
+
+	private Selector selector = null;
+
+	private ServerSocketChannel server = null;
+
+	private Thread thread = null;
+
+	private volatile boolean running = false;
+
+	/**
+	 * Connected peers that have said hello, by identifier.
+	 */
+	private final Map<String, NioPeer> peers = new ConcurrentHashMap<>();
+
+	/**
+	 * The addresses peers listen on, by identifier.
+	 */
+	private final Map<String, InetSocketAddress> known = new ConcurrentHashMap<>();
+
+	private final Queue<NioPeer> pendingFlushes = new ConcurrentLinkedQueue<>();
+
+	//These are only used by the selector thread.
+	private final Set<NioPeer> connections = new HashSet<>();
+	private final Set<InetSocketAddress> dialing = new HashSet<>();
+	private final Set<InetSocketAddress> ignored = new HashSet<>();
+	private long lastRedial = 0;
+
+	private final LongAdder framesSent = new LongAdder();
+	private final LongAdder framesReceived = new LongAdder();
+	private final LongAdder bytesSent = new LongAdder();
+	private final LongAdder bytesReceived = new LongAdder();
+
+	/**
+	 * @param id this server's identifier
+	 * @param secret the secret every server in the mesh shares
+	 * @param bindAddress the address to listen on
+	 * @param seeds the peers to dial first
+	 * @param fallback the connection for redirects and servers that aren't connected directly, or null
+	 * @param receiver where recieved messages are delivered
+	 * @throws IllegalArgumentException if the secret is empty
+	 */
+	public NioConnection(String id, String secret, InetSocketAddress bindAddress, List<InetSocketAddress> seeds, NetworkConnection fallback, MessageReceiver receiver)
+	{
+		if(secret == null || secret.isEmpty()) throw new IllegalArgumentException("The direct connection needs a shared secret");
+
+		this.id = id;
+		this.secret = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+		this.bindAddress = bindAddress;
+		this.seeds = new ArrayList<>(seeds);
+		this.fallback = fallback;
+		this.receiver = receiver;
+	}
+
+	/**
+	 * Parses a comma-separated list of <code>host:port</code> addresses.
+	 *
+	 * @param addresses the addresses
+	 * @return the parsed addresses
+	 */
+	public static List<InetSocketAddress> parseAddresses(String addresses)
+	{
+		List<InetSocketAddress> parsed = new ArrayList<>();
+		if(addresses == null) return parsed;
+
+		for(String address: addresses.split(","))
+		{
+			address = address.trim();
+			if(address.isEmpty()) continue;
+
+			int colon = address.lastIndexOf(':');
+			if(colon == -1) throw new IllegalArgumentException("Missing port in address '" + address + "'");
+			parsed.add(new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1))));
+		}
+		return parsed;
+	}
+
+	public void setMaxFrameSize(int maxFrameSize)
+	{
+		this.maxFrameSize = maxFrameSize;
+	}
+
+	public void setRedialInterval(long redialInterval)
+	{
+		this.redialInterval = redialInterval;
+	}
+
+	/**
+	 * Sets what to call when a peer connects and says hello, such as to send it what was broadcast before it was connected.
+	 * It's called on the selector thread, so it shouldn't wait on anything.
+	 *
+	 * @param peerListener called with the peer's identifier
+	 */
+	public void setPeerListener(Consumer<String> peerListener)
+	{
+		this.peerListener = peerListener;
+	}
+
+	@Override
+	public String getName() {return "Direct";}
+
+	@Override
+	public String getServerIdentifier()
+	{
+		return id;
+	}
+
+	/**
+	 * Checks if messages can reach other servers: through the fallback if there is one, or else through at least one peer.
+	 */
+	@Override
+	public boolean isConnected()
+	{
+		if(!running) return false;
+		return fallback != null ? fallback.isConnected() : !peers.isEmpty();
+	}
+
+	@Override
+	public synchronized void connect()
+	{
+		if(fallback != null) fallback.connect();
+		if(running) return;
+
+		//The last selector thread closes its selector and socket on the way out, so it has to be gone before they're replaced
+		if(thread != null)
+		{
+			try
+			{
+				thread.join();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				return;
+			}
+			thread = null;
+		}
+
+		try
+		{
+			selector = Selector.open();
+			server = ServerSocketChannel.open();
+			server.configureBlocking(false);
+			server.bind(bindAddress);
+			server.register(selector, SelectionKey.OP_ACCEPT);
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+			closeQuietly();
+			return;
+		}
+
+		running = true;
+		lastRedial = 0;
+		thread = new Thread(this::run, "Universe Direct Selector");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@Override
+	public synchronized void disconnect()
+	{
+		if(fallback != null) fallback.disconnect();
+		if(!running) return;
+
+		running = false;
+		selector.wakeup();
+		try
+		{
+			//If it takes longer, connect() waits for the rest
+			thread.join(1000);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		if(!thread.isAlive()) thread = null;
+	}
+
+	@Override
+	public void reconnect()
+	{
+		if(!running) connect();
+	}
+
+	/**
+	 * Gets the port this connection is listening on.
+	 *
+	 * @return the port, or -1 if not listening
+	 */
+	public int getLocalPort()
+	{
+		ServerSocketChannel server = this.server;
+		return server == null || !server.isOpen() ? -1 : server.socket().getLocalPort();
+	}
+
+	/**
+	 * Gets the identifiers of the servers that are connected directly.
+	 *
+	 * @return the connected servers
+	 */
+	public Collection<String> getPeers()
+	{
+		return Collections.unmodifiableSet(peers.keySet());
+	}
+
+	public boolean isPeer(String server)
+	{
+		return peers.containsKey(server);
+	}
+
+	@Override
+	public void sendMessage(String server, String channel, String message)
+	{
+		sendMessageAsync(server, channel, message);
+	}
+
+	@Override
+	public void broadcastMessage(String channel, String message)
+	{
+		//The fallback reaches every server, including the ones outside the mesh
+		if(fallback != null)
+		{
+			fallback.broadcastMessage(channel, message);
+			return;
+		}
+
+		ByteBuffer frame = Frames.message(channel, message);
+		for(NioPeer peer: peers.values())
+		{
+			enqueue(peer, frame.duplicate());
+		}
+	}
+
+	@Override
+	public CompletableFuture<Boolean> sendMessageAsync(String server, String channel, String message)
+	{
+		if(server == null)
+		{
+			broadcastMessage(channel, message);
+			return CompletableFuture.completedFuture(true);
+		}
+
+		NioPeer peer = peers.get(server);
+		if(peer != null && !peer.closed)
+		{
+			enqueue(peer, Frames.message(channel, message));
+			return CompletableFuture.completedFuture(true);
+		}
+
+		if(fallback != null) return fallback.sendMessageAsync(server, channel, message);
+		return CompletableFuture.completedFuture(false);
+	}
+
+	@Override
+	public CompletableFuture<Boolean> sendPlayerAsync(MinecraftPlayer player, String server)
+	{
+		if(fallback != null) return fallback.sendPlayerAsync(player, server);
+		return CompletableFuture.completedFuture(false);
+	}
+
+	/**
+	 * Adds a frame to a peer's outbox, and asks the selector thread to flush it.
+	 * Can be called from any thread.
+	 */
+	private void enqueue(NioPeer peer, ByteBuffer frame)
+	{
+		framesSent.increment();
+		bytesSent.add(frame.remaining());
+
+		peer.outbox.add(frame);
+		if(peer.flushScheduled.compareAndSet(false, true))
+		{
+			pendingFlushes.add(peer);
+			selector.wakeup();
+		}
+	}
+
+	private void run()
+	{
+		while(running)
+		{
+			try
+			{
+				selector.select(redialInterval);
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+				break;
+			}
+
+			Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+			while(keys.hasNext())
+			{
+				SelectionKey key = keys.next();
+				keys.remove();
+				if(!key.isValid()) continue;
+
+				NioPeer peer = (NioPeer)key.attachment();
+				try
+				{
+					if(key.isAcceptable())
+					{
+						accept();
+						continue;
+					}
+					if(key.isConnectable()) finishConnect(peer);
+					if(key.isValid() && key.isReadable()) read(peer);
+					if(key.isValid() && key.isWritable()) write(peer);
+				}
+				catch (IOException | RuntimeException e)
+				{
+					if(peer != null) close(peer);
+				}
+			}
+
+			processPendingFlushes();
+
+			long now = System.currentTimeMillis();
+			if(now - lastRedial >= redialInterval)
+			{
+				lastRedial = now;
+				redial();
+			}
+		}
+
+		for(NioPeer peer: new ArrayList<>(connections))
+		{
+			close(peer);
+		}
+		closeQuietly();
+	}
+
+	private void closeQuietly()
+	{
+		try
+		{
+			if(server != null) server.close();
+			if(selector != null) selector.close();
+		}
+		catch (IOException e) {}
+		server = null;
+	}
+
+	private void accept() throws IOException
+	{
+		SocketChannel channel = server.accept();
+		if(channel == null) return;
+
+		channel.configureBlocking(false);
+		channel.socket().setTcpNoDelay(true);
+
+		NioPeer peer = new NioPeer(channel, false, null);
+		peer.key = channel.register(selector, SelectionKey.OP_READ, peer);
+		connections.add(peer);
+		greet(peer);
+	}
+
+	private void dial(InetSocketAddress address)
+	{
+		if(ignored.contains(address) || dialing.contains(address) || isConnectedTo(address)) return;
+
+		SocketChannel channel = null;
+		try
+		{
+			channel = SocketChannel.open();
+			channel.configureBlocking(false);
+			channel.socket().setTcpNoDelay(true);
+
+			NioPeer peer = new NioPeer(channel, true, address);
+			dialing.add(address);
+			connections.add(peer);
+
+			if(channel.connect(address))
+			{
+				peer.key = channel.register(selector, SelectionKey.OP_READ, peer);
+				greet(peer);
+			}
+			else
+			{
+				peer.key = channel.register(selector, SelectionKey.OP_CONNECT, peer);
+			}
+		}
+		catch (IOException e)
+		{
+			dialing.remove(address);
+			try
+			{
+				if(channel != null) channel.close();
+			}
+			catch (IOException ex) {}
+		}
+	}
+
+	private void redial()
+	{
+		for(InetSocketAddress seed: seeds)
+		{
+			dial(seed);
+		}
+		for(Map.Entry<String, InetSocketAddress> entry: known.entrySet())
+		{
+			if(!peers.containsKey(entry.getKey())) dial(entry.getValue());
+		}
+	}
+
+	private boolean isConnectedTo(InetSocketAddress address)
+	{
+		for(NioPeer peer: connections)
+		{
+			if(address.equals(peer.dialedAddress) || address.equals(peer.listenAddress)) return true;
+		}
+		return false;
+	}
+
+	private void finishConnect(NioPeer peer) throws IOException
+	{
+		if(peer.channel.finishConnect())
+		{
+			peer.key.interestOps(SelectionKey.OP_READ);
+			greet(peer);
+		}
+	}
+
+	/**
+	 * Tells a new peer who we are, and gives it a nonce to sign.
+	 */
+	private void greet(NioPeer peer)
+	{
+		peer.nonce = new byte[NONCE_LENGTH];
+		random.nextBytes(peer.nonce);
+		enqueue(peer, Frames.hello(id, getLocalPort(), peer.nonce));
+	}
+
+	/**
+	 * Signs a nonce and a server identifier with the shared secret.
+	 */
+	private byte[] sign(byte[] nonce, String server)
+	{
+		try
+		{
+			Mac mac = Mac.getInstance("HmacSHA256");
+			mac.init(secret);
+			mac.update(nonce);
+			return mac.doFinal(server.getBytes(StandardCharsets.UTF_8));
+		}
+		catch (GeneralSecurityException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private void read(NioPeer peer) throws IOException
+	{
+		int read = peer.channel.read(peer.readBuffer);
+		if(read < 0)
+		{
+			close(peer);
+			return;
+		}
+		bytesReceived.add(read);
+
+		ByteBuffer buffer = peer.readBuffer;
+		buffer.flip();
+		int needed = 0;
+		while(buffer.remaining() >= Frames.HEADER)
+		{
+			int length = buffer.getInt(buffer.position());
+			if(length <= 0 || length > (peer.authenticated ? maxFrameSize : MAX_HANDSHAKE_FRAME)) throw new IOException("Invalid frame length " + length);
+			if(buffer.remaining() < Frames.HEADER + length)
+			{
+				needed = Frames.HEADER + length;
+				break;
+			}
+
+			int end = buffer.position() + Frames.HEADER + length;
+			buffer.position(buffer.position() + Frames.HEADER);
+			ByteBuffer frame = buffer.slice();
+			frame.limit(length);
+			buffer.position(end);
+
+			handle(peer, frame);
+			if(peer.closed) return;
+		}
+		buffer.compact();
+
+		//Make room for the rest of a partially read frame
+		if(needed > 0) peer.ensureReadCapacity(needed - buffer.position());
+	}
+
+	private void handle(NioPeer peer, ByteBuffer frame) throws IOException
+	{
+		byte type = frame.get();
+		switch(type)
+		{
+			case Frames.HELLO:
+			{
+				String peerID = Frames.getShortString(frame);
+				int port = frame.getInt();
+				byte[] nonce = Frames.getShortBytes(frame);
+				onHello(peer, peerID, port, nonce);
+				break;
+			}
+			case Frames.AUTH:
+			{
+				if(peer.id == null || peer.authenticated) throw new IOException("Unexpected auth");
+				if(!MessageDigest.isEqual(sign(peer.nonce, peer.id), Frames.getShortBytes(frame)))
+				{
+					throw new IOException("Peer " + peer.id + " doesn't know the shared secret");
+				}
+				onAuthenticated(peer);
+				break;
+			}
+			case Frames.PEERS:
+			{
+				if(!peer.authenticated) throw new IOException("Peers recieved before auth");
+				int count = frame.getInt();
+				for(int i = 0; i < count; i++)
+				{
+					String peerID = Frames.getShortString(frame);
+					String host = Frames.getShortString(frame);
+					int port = frame.getInt();
+					if(peerID.equals(id) || peers.containsKey(peerID)) continue;
+
+					InetSocketAddress address = new InetSocketAddress(host, port);
+					known.putIfAbsent(peerID, address);
+					dial(address);
+				}
+				break;
+			}
+			case Frames.MESSAGE:
+			{
+				if(!peer.authenticated) throw new IOException("Message recieved before auth");
+				String channel = Frames.getShortString(frame);
+				String message = Frames.getLongString(frame);
+				framesReceived.increment();
+				try
+				{
+					receiver.receive(peer.id, channel, message);
+				}
+				catch (Exception e)
+				{
+					e.printStackTrace();
+				}
+				break;
+			}
+			default:
+				throw new IOException("Unknown frame type " + type);
+		}
+	}
+
+	private void onHello(NioPeer peer, String peerID, int port, byte[] nonce) throws IOException
+	{
+		if(peer.id != null) throw new IOException("Second hello from " + peer.id);
+		if(peer.dialedAddress != null) dialing.remove(peer.dialedAddress);
+
+		if(peerID.equals(id))
+		{
+			//We dialed ourselves
+			if(peer.dialedAddress != null) ignored.add(peer.dialedAddress);
+			close(peer);
+			return;
+		}
+
+		peer.id = peerID;
+		peer.listenAddress = new InetSocketAddress(((InetSocketAddress)peer.channel.getRemoteAddress()).getAddress(), port);
+		enqueue(peer, Frames.auth(sign(nonce, id)));
+	}
+
+	private void onAuthenticated(NioPeer peer)
+	{
+		String peerID = peer.id;
+		peer.authenticated = true;
+		known.put(peerID, peer.listenAddress);
+		enqueue(peer, Frames.peers(new HashMap<>(known)));
+
+		NioPeer existing = peers.get(peerID);
+		if(existing != null && existing != peer && !existing.closed)
+		{
+			//Both servers dialed each other. Both sides keep the connection dialed by the lower identifier.
+			String keep = id.compareTo(peerID) < 0 ? id : peerID;
+			String existingDialer = existing.dialed ? id : peerID;
+			String newDialer = peer.dialed ? id : peerID;
+
+			if(existingDialer.equals(keep) || !newDialer.equals(keep))
+			{
+				close(peer);
+				return;
+			}
+			peers.put(peerID, peer);
+			close(existing);
+			return;
+		}
+		peers.put(peerID, peer);
+
+		Consumer<String> listener = peerListener;
+		if(listener != null) listener.accept(peerID);
+
+		//Tell everyone else about the new peer
+		ByteBuffer frame = Frames.peers(Collections.singletonMap(peerID, peer.listenAddress));
+		for(NioPeer other: peers.values())
+		{
+			if(other != peer) enqueue(other, frame.duplicate());
+		}
+	}
+
+	private void write(NioPeer peer) throws IOException
+	{
+		if(peer.flush()) peer.key.interestOps(SelectionKey.OP_READ);
+	}
+
+	private void processPendingFlushes()
+	{
+		NioPeer peer;
+		while((peer = pendingFlushes.poll()) != null)
+		{
+			peer.flushScheduled.set(false);
+			if(peer.closed || peer.key == null || !peer.key.isValid()) continue;
+			if((peer.key.interestOps() & SelectionKey.OP_CONNECT) != 0) continue;
+
+			try
+			{
+				if(!peer.flush()) peer.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+			}
+			catch (IOException e)
+			{
+				close(peer);
+			}
+		}
+	}
+
+	private void close(NioPeer peer)
+	{
+		peer.closed = true;
+		if(peer.key != null) peer.key.cancel();
+		try
+		{
+			peer.channel.close();
+		}
+		catch (IOException e) {}
+
+		connections.remove(peer);
+		if(peer.dialedAddress != null) dialing.remove(peer.dialedAddress);
+		if(peer.id != null) peers.remove(peer.id, peer);
+	}
+
+	public long getFramesSent() {return framesSent.sum();}
+
+	public long getFramesReceived() {return framesReceived.sum();}
+
+	public long getBytesSent() {return bytesSent.sum();}
+
+	public long getBytesReceived() {return bytesReceived.sum();}
+}
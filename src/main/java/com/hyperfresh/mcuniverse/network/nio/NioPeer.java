@@ -0,0 +1,120 @@
+package com.hyperfresh.mcuniverse.network.nio;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One TCP connection between two NioConnections.
+ * Reading, writing and closing only happen on the selector thread; other threads only add to the outbox.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+class NioPeer
+{
+	final SocketChannel channel;
+
+	/**
+	 * Whether we dialed this connection, as opposed to accepting it.
+	 */
+	final boolean dialed;
+
+	/**
+	 * The address we dialed, or null if the connection was accepted.
+	 */
+	final InetSocketAddress dialedAddress;
+
+	SelectionKey key;
+
+	/**
+	 * The peer's server identifier, once it has said hello.
+	 */
+	volatile String id = null;
+
+	/**
+	 * The address the peer listens on, once it has said hello.
+	 */
+	InetSocketAddress listenAddress = null;
+
+	/**
+	 * The random bytes we sent in our hello, which the peer has to prove it can sign with the shared secret.
+	 */
+	byte[] nonce = null;
+
+	/**
+	 * Whether the peer has proven it knows the shared secret. Until then, only HELLO and AUTH frames are accepted.
+	 */
+	boolean authenticated = false;
+
+	ByteBuffer readBuffer = ByteBuffer.allocate(8192);
+
+	final Queue<ByteBuffer> outbox = new ConcurrentLinkedQueue<>();
+
+	private final ByteBuffer[] batch = new ByteBuffer[64];
+
+	/**
+	 * Whether the peer is waiting for the selector thread to flush its outbox.
+	 */
+	final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+	volatile boolean closed = false;
+
+	NioPeer(SocketChannel channel, boolean dialed, InetSocketAddress dialedAddress)
+	{
+		this.channel = channel;
+		this.dialed = dialed;
+		this.dialedAddress = dialedAddress;
+	}
+
+	/**
+	 * Writes as much of the outbox as the socket will take, up to 64 frames per write.
+	 *
+	 * @return true if the outbox was emptied
+	 */
+	boolean flush() throws IOException
+	{
+		while(true)
+		{
+			int count = 0;
+			for(ByteBuffer buffer: outbox)
+			{
+				batch[count++] = buffer;
+				if(count == batch.length) break;
+			}
+			if(count == 0) return true;
+
+			channel.write(batch, 0, count);
+			for(int i = 0; i < count; i++)
+			{
+				boolean written = !batch[i].hasRemaining();
+				batch[i] = null;
+				if(!written) return false;
+				outbox.poll();
+			}
+		}
+	}
+
+	/**
+	 * Makes sure the read buffer has room for at least <code>size</code> more bytes.
+	 */
+	void ensureReadCapacity(int size)
+	{
+		if(readBuffer.remaining() >= size) return;
+
+		ByteBuffer bigger = ByteBuffer.allocate(Math.max(readBuffer.capacity() * 2, readBuffer.position() + size));
+		readBuffer.flip();
+		bigger.put(readBuffer);
+		readBuffer = bigger;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "[peer: " + id + ", dialed: " + dialed + "]";
+	}
+}
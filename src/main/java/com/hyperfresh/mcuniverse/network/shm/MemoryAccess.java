@@ -0,0 +1,136 @@
+package com.hyperfresh.mcuniverse.network.shm;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Volatile and ordered access to the memory of a MappedByteBuffer, and unmapping one when it's closed.
+ *
+ * Java 8 has no public API for either: a MappedByteBuffer's reads and writes have no ordering between processes,
+ * and its memory is only unmapped once it's garbage collected, which keeps the file in use (and locked, on Windows).
+ * VarHandles (Java 9) would cover the first. Until then, this is the only class that uses sun.misc.Unsafe.
+ * It's looked up at runtime through method handles rather than imported, so there are no compiler warnings to suppress,
+ * and the JIT inlines the handles like direct calls since they're constants.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+final class MemoryAccess
+{
+	private static final MethodHandle GET_LONG;
+	private static final MethodHandle GET_LONG_VOLATILE;
+	private static final MethodHandle PUT_ORDERED_LONG;
+
+	/**
+	 * Unsafe.invokeCleaner(ByteBuffer), or null before Java 9.
+	 */
+	private static final MethodHandle INVOKE_CLEANER;
+
+	private static final long ADDRESS_OFFSET;
+
+	static
+	{
+		try
+		{
+			Class<?> type = Class.forName("sun.misc.Unsafe");
+			Field field = type.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			Object unsafe = field.get(null);
+
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			GET_LONG = lookup.findVirtual(type, "getLong", MethodType.methodType(long.class, Object.class, long.class)).bindTo(unsafe);
+			GET_LONG_VOLATILE = lookup.findVirtual(type, "getLongVolatile", MethodType.methodType(long.class, Object.class, long.class)).bindTo(unsafe);
+			PUT_ORDERED_LONG = lookup.findVirtual(type, "putOrderedLong", MethodType.methodType(void.class, Object.class, long.class, long.class)).bindTo(unsafe);
+
+			MethodHandle invokeCleaner;
+			try
+			{
+				invokeCleaner = lookup.findVirtual(type, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class)).bindTo(unsafe);
+			}
+			catch (NoSuchMethodException e)
+			{
+				invokeCleaner = null;
+			}
+			INVOKE_CLEANER = invokeCleaner;
+
+			MethodHandle objectFieldOffset = lookup.findVirtual(type, "objectFieldOffset", MethodType.methodType(long.class, Field.class)).bindTo(unsafe);
+			ADDRESS_OFFSET = (long)objectFieldOffset.invokeExact(Buffer.class.getDeclaredField("address"));
+		}
+		catch (Throwable e)
+		{
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private MemoryAccess() {}
+
+	/**
+	 * Gets the address of a direct buffer's memory.
+	 */
+	static long address(MappedByteBuffer buffer)
+	{
+		try
+		{
+			return (long)GET_LONG.invokeExact((Object)buffer, ADDRESS_OFFSET);
+		}
+		catch (Throwable e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	static long getVolatile(long address)
+	{
+		try
+		{
+			return (long)GET_LONG_VOLATILE.invokeExact((Object)null, address);
+		}
+		catch (Throwable e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Writes a long that's seen by other threads (and processes) only after every write before it.
+	 */
+	static void putOrdered(long address, long value)
+	{
+		try
+		{
+			PUT_ORDERED_LONG.invokeExact((Object)null, address, value);
+		}
+		catch (Throwable e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Unmaps a buffer's memory right away. The buffer mustn't be used afterwards.
+	 * If it can't be unmapped, it's left for the garbage collector.
+	 */
+	static void unmap(MappedByteBuffer buffer)
+	{
+		try
+		{
+			if(INVOKE_CLEANER != null)
+			{
+				INVOKE_CLEANER.invokeExact((ByteBuffer)buffer);
+				return;
+			}
+
+			//Java 8: DirectByteBuffer.cleaner().clean()
+			Method cleaner = buffer.getClass().getMethod("cleaner");
+			cleaner.setAccessible(true);
+			Object instance = cleaner.invoke(buffer);
+			if(instance != null) instance.getClass().getMethod("clean").invoke(instance);
+		}
+		catch (Throwable e) {}
+	}
+}
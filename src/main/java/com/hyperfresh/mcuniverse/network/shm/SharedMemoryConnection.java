@@ -0,0 +1,456 @@
+package com.hyperfresh.mcuniverse.network.shm;
+
+import com.hyperfresh.mcuniverse.NetworkConnection;
+import com.hyperfresh.mcuniverse.network.MessageReceiver;
+import com.hyperfresh.mcuniverse.network.nio.Frames;
+import com.octopod.minecraft.MinecraftPlayer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A NetworkConnection for servers running on the same host, which pass messages to each other through
+ * memory-mapped SharedRings instead of sockets.
+ *
+ * Servers list themselves in a directory file inside a shared folder. Every pair of servers shares two rings there,
+ * one for each direction. A reader thread polls this server's incoming rings, spinning for a while before backing off
+ * so a busy server sees new messages within microseconds. An idle server backs off to parking for up to a millisecond at a time.
+ *
+ * A server counts as local while it's in the directory and keeps its heartbeat fresh. Messages to anything else,
+ * messages that don't fit in the ring, broadcasts, and player redirects go through the fallback connection.
+ *
+ * The two paths don't keep messages in order with each other: a message through the fallback can arrive before
+ * messages still waiting in the ring. To keep this to the moment a ring fills up, once a server's messages start going
+ * through the fallback, they keep going through it until the server has read everything in its ring.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class SharedMemoryConnection implements NetworkConnection
+{
+	private final String id;
+
+	private final SharedMemoryDirectory directory;
+
+	private final int ringCapacity;
+
+	/**
+	 * The connection used for everything that can't go through shared memory, or null.
+	 */
+	private final NetworkConnection fallback;
+
+	private final MessageReceiver receiver;
+
+	/**
+	 * How long, in ms, a server can go without a heartbeat before it isn't considered local anymore.
+	 */
+	private long heartbeatTimeout = 2000;
+
+	/**
+	 * How often, in ms, to re-read the directory file.
+	 */
+	private long refreshInterval = 500;
+
+	/**
+	 * How long, in ns, the reader thread parks for when there's nothing to read. Doubles while it stays idle, up to maxParkTime.
+	 */
+	private long parkTime = 50000;
+
+	private long maxParkTime = 1000000;
+
+	/**
+	 * How many times the reader thread checks for messages before yielding.
+	 */
+	private final int spins = Runtime.getRuntime().availableProcessors() > 1 ? 1000 : 0;
+
+	private volatile Set<String> localServers = Collections.emptySet();
+
+	private final Map<String, SharedRing> outbound = new ConcurrentHashMap<>();
+
+	/**
+	 * Local servers whose messages are going through the fallback until their ring is empty.
+	 */
+	private final Set<String> fallingBack = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Only used by the reader thread.
+	 */
+	private final Map<String, SharedRing> inbound = new HashMap<>();
+
+	private Thread reader = null;
+
+	private volatile boolean running = false;
+
+	private final LongAdder sent = new LongAdder();
+	private final LongAdder received = new LongAdder();
+	private final LongAdder fellBack = new LongAdder();
+
+	/**
+	 * @param id this server's identifier
+	 * @param directory the folder shared by servers on this host
+	 * @param ringCapacity the size, in bytes, of each ring (a power of two)
+	 * @param fallback the connection for everything that can't go through shared memory, or null
+	 * @param receiver where recieved messages are delivered
+	 */
+	public SharedMemoryConnection(String id, File directory, int ringCapacity, NetworkConnection fallback, MessageReceiver receiver)
+	{
+		this.id = id;
+		this.directory = new SharedMemoryDirectory(directory);
+		this.ringCapacity = ringCapacity;
+		this.fallback = fallback;
+		this.receiver = receiver;
+	}
+
+	public void setHeartbeatTimeout(long heartbeatTimeout)
+	{
+		this.heartbeatTimeout = heartbeatTimeout;
+	}
+
+	public void setRefreshInterval(long refreshInterval)
+	{
+		this.refreshInterval = refreshInterval;
+	}
+
+	public void setParkTime(long parkTime)
+	{
+		this.parkTime = parkTime;
+	}
+
+	public void setMaxParkTime(long maxParkTime)
+	{
+		this.maxParkTime = maxParkTime;
+	}
+
+	@Override
+	public String getName() {return "Shared Memory";}
+
+	@Override
+	public String getServerIdentifier()
+	{
+		return id;
+	}
+
+	@Override
+	public boolean isConnected()
+	{
+		//Without the fallback, only the servers on this host could be reached
+		return running && (fallback == null || fallback.isConnected());
+	}
+
+	@Override
+	public synchronized void connect()
+	{
+		if(fallback != null) fallback.connect();
+		if(running) return;
+
+		try
+		{
+			directory.join(id);
+			refresh();
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+			return;
+		}
+
+		running = true;
+		reader = new Thread(this::read, "Universe Shared Memory Reader");
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	@Override
+	public synchronized void disconnect()
+	{
+		if(fallback != null) fallback.disconnect();
+		if(!running) return;
+
+		running = false;
+		try
+		{
+			reader.join(1000);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		reader = null;
+
+		try
+		{
+			directory.leave(id);
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+
+		for(SharedRing ring: outbound.values())
+		{
+			closeQuietly(ring);
+		}
+		outbound.clear();
+		fallingBack.clear();
+	}
+
+	@Override
+	public void reconnect()
+	{
+		if(!running) connect();
+		else if(fallback != null && !fallback.isConnected()) fallback.reconnect();
+	}
+
+	/**
+	 * Gets the identifiers of the servers listed in the directory.
+	 *
+	 * @return the servers on this host
+	 */
+	public Set<String> getLocalServers()
+	{
+		return Collections.unmodifiableSet(localServers);
+	}
+
+	/**
+	 * Checks if a server can be reached through shared memory right now.
+	 *
+	 * @param server the server's identifier
+	 * @return true if the server is local and alive
+	 */
+	public boolean isLocal(String server)
+	{
+		if(!running || !localServers.contains(server)) return false;
+
+		SharedRing ring = getOutbound(server);
+		return ring != null && System.currentTimeMillis() - ring.getHeartbeat() < heartbeatTimeout;
+	}
+
+	private SharedRing getOutbound(String server)
+	{
+		SharedRing ring = outbound.get(server);
+		if(ring != null) return ring;
+
+		return outbound.computeIfAbsent(server, s ->
+		{
+			try
+			{
+				return SharedRing.open(directory.getRingFile(id, s), ringCapacity);
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+				return null;
+			}
+		});
+	}
+
+	@Override
+	public void sendMessage(String server, String channel, String message)
+	{
+		sendMessageAsync(server, channel, message);
+	}
+
+	@Override
+	public void broadcastMessage(String channel, String message)
+	{
+		//The fallback reaches every server, including the local ones
+		if(fallback != null)
+		{
+			fallback.broadcastMessage(channel, message);
+			return;
+		}
+
+		ByteBuffer frame = Frames.message(channel, message);
+		for(String server: localServers)
+		{
+			if(isLocal(server)) offer(server, frame.duplicate());
+		}
+	}
+
+	@Override
+	public CompletableFuture<Boolean> sendMessageAsync(String server, String channel, String message)
+	{
+		if(server == null)
+		{
+			broadcastMessage(channel, message);
+			return CompletableFuture.completedFuture(true);
+		}
+
+		if(isLocal(server))
+		{
+			//Until the server catches up, the ring is skipped so this doesn't overtake the messages sent through the fallback
+			boolean catchingUp = fallback != null && fallingBack.contains(server) && !getOutbound(server).isEmpty();
+			if(!catchingUp && offer(server, Frames.message(channel, message)))
+			{
+				fallingBack.remove(server);
+				return CompletableFuture.completedFuture(true);
+			}
+			fallingBack.add(server);
+		}
+
+		if(fallback != null)
+		{
+			fellBack.increment();
+			return fallback.sendMessageAsync(server, channel, message);
+		}
+		return CompletableFuture.completedFuture(false);
+	}
+
+	private boolean offer(String server, ByteBuffer frame)
+	{
+		SharedRing ring = getOutbound(server);
+		if(ring == null) return false;
+
+		boolean offered = ring.offer(frame);
+		if(offered) sent.increment();
+		return offered;
+	}
+
+	@Override
+	public CompletableFuture<Boolean> sendPlayerAsync(MinecraftPlayer player, String server)
+	{
+		if(fallback != null) return fallback.sendPlayerAsync(player, server);
+		return CompletableFuture.completedFuture(false);
+	}
+
+	/**
+	 * Re-reads the directory, and opens the rings of any new servers.
+	 */
+	private void refresh() throws IOException
+	{
+		Set<String> servers = directory.read();
+		servers.remove(id);
+		localServers = servers;
+
+		for(String server: servers)
+		{
+			if(inbound.containsKey(server)) continue;
+
+			SharedRing ring = SharedRing.open(directory.getRingFile(server, id), ringCapacity);
+			ring.discard();
+			ring.heartbeat();
+			inbound.put(server, ring);
+		}
+
+		Iterator<Map.Entry<String, SharedRing>> iterator = inbound.entrySet().iterator();
+		while(iterator.hasNext())
+		{
+			Map.Entry<String, SharedRing> entry = iterator.next();
+			if(servers.contains(entry.getKey())) continue;
+
+			closeQuietly(entry.getValue());
+			iterator.remove();
+		}
+	}
+
+	private void read()
+	{
+		long nextRefresh = 0;
+		long nextHeartbeat = 0;
+		int idle = 0;
+		long park = parkTime;
+
+		while(running)
+		{
+			boolean worked = false;
+			for(Map.Entry<String, SharedRing> entry: inbound.entrySet())
+			{
+				byte[] frame;
+				for(int i = 0; i < 256 && (frame = entry.getValue().poll()) != null; i++)
+				{
+					deliver(entry.getKey(), frame);
+					worked = true;
+				}
+			}
+
+			long now = System.currentTimeMillis();
+			if(now >= nextHeartbeat)
+			{
+				nextHeartbeat = now + heartbeatTimeout / 10;
+				for(SharedRing ring: inbound.values())
+				{
+					ring.heartbeat();
+				}
+			}
+			if(now >= nextRefresh)
+			{
+				nextRefresh = now + refreshInterval;
+				try
+				{
+					refresh();
+				}
+				catch (IOException e)
+				{
+					e.printStackTrace();
+				}
+			}
+
+			//Spin, then yield, then park for longer and longer. Spinning only steals time from the sender when there's one core.
+			if(worked)
+			{
+				idle = 0;
+				park = parkTime;
+			}
+			else if(++idle > spins + 1000)
+			{
+				LockSupport.parkNanos(park);
+				park = Math.min(park * 2, Math.max(parkTime, maxParkTime));
+			}
+			else if(idle > spins)
+			{
+				Thread.yield();
+			}
+		}
+
+		for(SharedRing ring: inbound.values())
+		{
+			closeQuietly(ring);
+		}
+		inbound.clear();
+	}
+
+	private void deliver(String server, byte[] frame)
+	{
+		ByteBuffer buffer = ByteBuffer.wrap(frame);
+		if(buffer.get() != Frames.MESSAGE) return;
+
+		received.increment();
+		try
+		{
+			receiver.receive(server, Frames.getShortString(buffer), Frames.getLongString(buffer));
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	private static void closeQuietly(SharedRing ring)
+	{
+		try
+		{
+			ring.close();
+		}
+		catch (IOException e) {}
+	}
+
+	public long getSentCount() {return sent.sum();}
+
+	public long getReceivedCount() {return received.sum();}
+
+	/**
+	 * Gets the amount of messages to single servers that went through the fallback connection.
+	 *
+	 * @return the amount of messages
+	 */
+	public long getFallbackCount() {return fellBack.sum();}
+}
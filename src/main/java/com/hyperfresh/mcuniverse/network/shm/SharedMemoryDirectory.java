@@ -0,0 +1,122 @@
+package com.hyperfresh.mcuniverse.network.shm;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * The file listing the servers on this host that can be reached through shared memory, one identifier per line.
+ * The file is locked while it's read or changed, so servers can join and leave at the same time.
+ * The folder is created so only its owner can use it, since anyone who can write a ring file can send messages as any server.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+class SharedMemoryDirectory
+{
+	private final File directory;
+
+	private final File file;
+
+	SharedMemoryDirectory(File directory)
+	{
+		this.directory = directory;
+		this.file = new File(directory, "servers.txt");
+	}
+
+	/**
+	 * Gets the file that <code>from</code> writes messages for <code>to</code> into.
+	 */
+	File getRingFile(String from, String to)
+	{
+		return new File(directory, from + "@" + to + ".ring");
+	}
+
+	void join(String server) throws IOException
+	{
+		update(server, true);
+	}
+
+	void leave(String server) throws IOException
+	{
+		update(server, false);
+	}
+
+	Set<String> read() throws IOException
+	{
+		//File locks are held by the whole JVM, so threads in the same JVM have to take turns
+		synchronized(SharedMemoryDirectory.class)
+		{
+			if(!file.exists()) return new LinkedHashSet<>();
+			try(RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileLock lock = raf.getChannel().lock())
+			{
+				return read(raf.getChannel());
+			}
+		}
+	}
+
+	private void update(String server, boolean add) throws IOException
+	{
+		synchronized(SharedMemoryDirectory.class)
+		{
+			if(!directory.exists()) createPrivate(directory);
+
+			try(RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileLock lock = raf.getChannel().lock())
+			{
+				FileChannel channel = raf.getChannel();
+				Set<String> servers = read(channel);
+				if(add ? !servers.add(server) : !servers.remove(server)) return;
+
+				StringBuilder builder = new StringBuilder();
+				for(String s: servers)
+				{
+					builder.append(s).append('\n');
+				}
+				channel.truncate(0);
+				channel.write(ByteBuffer.wrap(builder.toString().getBytes(StandardCharsets.UTF_8)), 0);
+			}
+		}
+	}
+
+	/**
+	 * Creates a folder (and its parents) that only the user running this server can open.
+	 */
+	private static void createPrivate(File directory) throws IOException
+	{
+		if(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"))
+		{
+			Files.createDirectories(directory.toPath(), PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+			return;
+		}
+
+		if(!directory.mkdirs()) throw new IOException("Couldn't create " + directory);
+		for(boolean owner: new boolean[]{false, true})
+		{
+			directory.setReadable(owner, owner);
+			directory.setWritable(owner, owner);
+			directory.setExecutable(owner, owner);
+		}
+	}
+
+	private static Set<String> read(FileChannel channel) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.allocate((int)channel.size());
+		while(buffer.hasRemaining() && channel.read(buffer, buffer.position()) > 0);
+
+		Set<String> servers = new LinkedHashSet<>();
+		for(String line: new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8).split("\n"))
+		{
+			line = line.trim();
+			if(!line.isEmpty()) servers.add(line);
+		}
+		return servers;
+	}
+}
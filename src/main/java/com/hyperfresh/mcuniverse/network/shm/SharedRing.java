@@ -0,0 +1,232 @@
+package com.hyperfresh.mcuniverse.network.shm;
+
+import com.hyperfresh.mcuniverse.network.nio.Frames;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A single-producer/single-consumer ring buffer in a memory-mapped file, so two processes on the same host can
+ * pass frames to each other without going through a socket.
+ *
+ * The file starts with a header (the producer's position, the consumer's position, and the consumer's heartbeat,
+ * each on their own cache line), followed by the data. Every record is a frame from Frames (an int length and a body),
+ * padded to 8 bytes. When a record doesn't fit before the end of the data, the producer writes a wrap marker and
+ * starts again at the beginning.
+ *
+ * Positions are published with ordered writes and read with volatile reads (see MemoryAccess), so a consumer that
+ * sees a new position also sees the data written before it. Producer methods (<code>offer</code>, and checking the
+ * consumer's heartbeat) can be called from any thread and can race with <code>close</code>. Consumer methods may only be
+ * called by one thread, which must also be the one to close the ring, since its memory is unmapped when it's closed.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class SharedRing implements Closeable
+{
+	private static final int HEAD = 0;
+	private static final int TAIL = 64;
+	private static final int HEARTBEAT = 128;
+	private static final int DATA = 192;
+
+	private static final int WRAP = -1;
+
+	private final RandomAccessFile file;
+
+	private final MappedByteBuffer buffer;
+
+	private final long address;
+
+	private final int capacity;
+
+	private final int mask;
+
+	/**
+	 * Set once the buffer is unmapped, after which its memory mustn't be touched. Guarded by this ring.
+	 */
+	private boolean closed = false;
+
+	private SharedRing(RandomAccessFile file, MappedByteBuffer buffer, int capacity)
+	{
+		this.file = file;
+		this.buffer = buffer;
+		this.address = MemoryAccess.address(buffer);
+		this.capacity = capacity;
+		this.mask = capacity - 1;
+	}
+
+	/**
+	 * Opens a ring, creating its file if it doesn't exist.
+	 * If the file already exists, its size is used instead of <code>capacity</code>.
+	 *
+	 * @param file the file
+	 * @param capacity the amount of bytes for data, which must be a power of two
+	 * @return the ring
+	 */
+	public static SharedRing open(File file, int capacity) throws IOException
+	{
+		if(capacity < 64 || Integer.bitCount(capacity) != 1) throw new IllegalArgumentException("Ring capacity must be a power of two");
+
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try
+		{
+			long length = raf.length();
+			if(length > DATA && Long.bitCount(length - DATA) == 1 && length - DATA <= Integer.MAX_VALUE)
+			{
+				capacity = (int)(length - DATA);
+			}
+			else
+			{
+				raf.setLength(DATA + capacity);
+			}
+			MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, DATA + capacity);
+			return new SharedRing(raf, buffer, capacity);
+		}
+		catch (IOException | RuntimeException e)
+		{
+			raf.close();
+			throw e;
+		}
+	}
+
+	private static int align(int size)
+	{
+		return (size + 7) & ~7;
+	}
+
+	private long getVolatile(int offset)
+	{
+		return MemoryAccess.getVolatile(address + offset);
+	}
+
+	private void putOrdered(int offset, long value)
+	{
+		MemoryAccess.putOrdered(address + offset, value);
+	}
+
+	public int getCapacity()
+	{
+		return capacity;
+	}
+
+	/**
+	 * Adds a frame to the ring. Threads in this process take turns, since a ring only has one producer.
+	 *
+	 * @param frame the frame, including its length
+	 * @return false if there isn't room for it, it's larger than the ring, or the ring is closed
+	 */
+	public synchronized boolean offer(ByteBuffer frame)
+	{
+		int size = align(frame.remaining());
+		if(closed || size > capacity) return false;
+
+		long head = getVolatile(HEAD);
+		long tail = getVolatile(TAIL);
+		int offset = (int)(head & mask);
+		int contiguous = capacity - offset;
+		long needed = contiguous < size ? contiguous + size : size;
+
+		if(head + needed - tail > capacity) return false;
+
+		if(contiguous < size)
+		{
+			buffer.putInt(DATA + offset, WRAP);
+			head += contiguous;
+			offset = 0;
+		}
+
+		ByteBuffer target = buffer.duplicate();
+		target.position(DATA + offset);
+		target.put(frame.duplicate());
+
+		putOrdered(HEAD, head + size);
+		return true;
+	}
+
+	/**
+	 * Takes the next frame from the ring. Only called by the consumer.
+	 *
+	 * @return the frame's body (without its length), or null if the ring is empty
+	 */
+	public byte[] poll()
+	{
+		long tail = getVolatile(TAIL);
+		long head = getVolatile(HEAD);
+		if(tail == head) return null;
+
+		int offset = (int)(tail & mask);
+		int length = buffer.getInt(DATA + offset);
+		if(length == WRAP)
+		{
+			tail += capacity - offset;
+			offset = 0;
+			length = buffer.getInt(DATA);
+		}
+
+		if(length <= 0 || Frames.HEADER + length > capacity - offset)
+		{
+			//The ring is corrupt (or was written by something else), so skip everything in it
+			putOrdered(TAIL, head);
+			return null;
+		}
+
+		byte[] body = new byte[length];
+		ByteBuffer source = buffer.duplicate();
+		source.position(DATA + offset + Frames.HEADER);
+		source.get(body);
+
+		putOrdered(TAIL, tail + align(Frames.HEADER + length));
+		return body;
+	}
+
+	/**
+	 * Skips everything in the ring, like leftovers from a previous run. Only called by the consumer.
+	 */
+	public void discard()
+	{
+		putOrdered(TAIL, getVolatile(HEAD));
+	}
+
+	/**
+	 * @return true if the ring is empty or closed
+	 */
+	public synchronized boolean isEmpty()
+	{
+		return closed || getVolatile(HEAD) == getVolatile(TAIL);
+	}
+
+	/**
+	 * Marks the consumer as alive. Only called by the consumer.
+	 */
+	public void heartbeat()
+	{
+		putOrdered(HEARTBEAT, System.currentTimeMillis());
+	}
+
+	/**
+	 * Gets the last time the consumer marked itself as alive.
+	 *
+	 * @return the time, in ms, or 0 if the ring is closed
+	 */
+	public synchronized long getHeartbeat()
+	{
+		return closed ? 0 : getVolatile(HEARTBEAT);
+	}
+
+	/**
+	 * Unmaps the ring and closes its file.
+	 */
+	@Override
+	public synchronized void close() throws IOException
+	{
+		if(closed) return;
+
+		closed = true;
+		MemoryAccess.unmap(buffer);
+		file.close();
+	}
+}
@@ -17,6 +17,16 @@ public abstract class Packet implements Serializable
 		com.hyperfresh.mcuniverse.UniverseAPI.getInstance().sendPacket(server, this);
 	}
 
+	/**
+	 * Sends this message to every server in a group.
+	 *
+	 * @param group the group's name
+	 */
+	public final void sendToGroup(String group)
+	{
+		com.hyperfresh.mcuniverse.UniverseAPI.getInstance().sendPacketToGroup(group, this);
+	}
+
 	/**
 	 * Sends this message to all servers.
 	 */
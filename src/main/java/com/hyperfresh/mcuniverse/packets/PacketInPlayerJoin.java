@@ -14,10 +14,26 @@ import com.hyperfresh.mcuniverse.minecraft.MinecraftUser;
 public class PacketInPlayerJoin extends Packet
 {
 	String UUID;
+	String name;
+
+	/**
+	 * The sender's epoch and the number of this change, so recievers can tell when one was missed.
+	 * 0 if the change isn't numbered.
+	 */
+	long epoch = 0;
+	long seq = 0;
+
+	public PacketInPlayerJoin(MinecraftPlayer player, long epoch, long seq)
+	{
+		this(player);
+		this.epoch = epoch;
+		this.seq = seq;
+	}
 
 	public PacketInPlayerJoin(MinecraftPlayer player)
 	{
 		UUID = player.getUUID();
+		name = player.getName();
 	}
 
 	public MinecraftUser getPlayer()
@@ -29,4 +45,19 @@ public class PacketInPlayerJoin extends Packet
 	{
 		return UUID;
 	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	public long getEpoch()
+	{
+		return epoch;
+	}
+
+	public long getSequence()
+	{
+		return seq;
+	}
 }
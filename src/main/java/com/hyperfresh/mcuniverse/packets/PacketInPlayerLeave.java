@@ -15,6 +15,20 @@ public class PacketInPlayerLeave extends Packet
 {
 	String UUID;
 
+	/**
+	 * The sender's epoch and the number of this change, so recievers can tell when one was missed.
+	 * 0 if the change isn't numbered.
+	 */
+	long epoch = 0;
+	long seq = 0;
+
+	public PacketInPlayerLeave(MinecraftPlayer player, long epoch, long seq)
+	{
+		this(player);
+		this.epoch = epoch;
+		this.seq = seq;
+	}
+
 	public PacketInPlayerLeave(MinecraftPlayer player)
 	{
 		UUID = player.getUUID();
@@ -29,4 +43,14 @@ public class PacketInPlayerLeave extends Packet
 	{
 		return UUID;
 	}
+
+	public long getEpoch()
+	{
+		return epoch;
+	}
+
+	public long getSequence()
+	{
+		return seq;
+	}
 }
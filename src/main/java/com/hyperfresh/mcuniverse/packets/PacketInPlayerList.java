@@ -0,0 +1,14 @@
+package com.hyperfresh.mcuniverse.packets;
+
+/**
+ * @author Octopod - octopodsquad@gmail.com
+ */
+
+/**
+ * Asks a server for its full player list, when some of its joins or leaves were missed.
+ * The server will return a PacketOutPlayerList.
+ */
+public class PacketInPlayerList extends Packet
+{
+
+}
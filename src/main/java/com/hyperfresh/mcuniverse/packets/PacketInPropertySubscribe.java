@@ -0,0 +1,14 @@
+package com.hyperfresh.mcuniverse.packets;
+
+/**
+ * @author Octopod - octopodsquad@gmail.com
+ */
+
+/**
+ * Asks a server to push its property changes to this server.
+ * The server will return a PacketOutPropertyChanges with every value, then one whenever its properties change.
+ */
+public class PacketInPropertySubscribe extends Packet
+{
+
+}
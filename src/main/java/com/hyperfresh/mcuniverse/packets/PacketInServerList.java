@@ -0,0 +1,14 @@
+package com.hyperfresh.mcuniverse.packets;
+
+/**
+ * @author Octopod - octopodsquad@gmail.com
+ */
+
+/**
+ * Asks a server which servers it knows, to find the ones that started while this server was down.
+ * The server will return a PacketOutServerList.
+ */
+public class PacketInServerList extends Packet
+{
+
+}
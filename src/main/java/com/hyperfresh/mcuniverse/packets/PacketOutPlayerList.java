@@ -0,0 +1,57 @@
+package com.hyperfresh.mcuniverse.packets;
+
+import com.hyperfresh.mcuniverse.UniverseAPI;
+import com.hyperfresh.mcuniverse.minecraft.MinecraftPlayer;
+import com.hyperfresh.mcuniverse.network.PresenceTracker;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Octopod - octopodsquad@gmail.com
+ */
+
+/**
+ * Sent in reply to PacketInPlayerList.
+ * Contains every player on the server, and the number of the last join or leave the list includes.
+ * Should be made on the main thread, so the list and the number agree.
+ */
+public class PacketOutPlayerList extends Packet
+{
+	long epoch;
+	long seq;
+	List<String> UUIDs = new ArrayList<>();
+	List<String> names = new ArrayList<>();
+
+	public PacketOutPlayerList()
+	{
+		PresenceTracker presence = UniverseAPI.getInstance().getPresenceTracker();
+		this.epoch = presence.getEpoch();
+		this.seq = presence.current();
+		for(MinecraftPlayer player: UniverseAPI.getInstance().getInterface().getOnlinePlayers())
+		{
+			UUIDs.add(player.getUUID());
+			names.add(player.getName());
+		}
+	}
+
+	public long getEpoch()
+	{
+		return epoch;
+	}
+
+	public long getSequence()
+	{
+		return seq;
+	}
+
+	public List<String> getUUIDs()
+	{
+		return UUIDs;
+	}
+
+	public List<String> getNames()
+	{
+		return names;
+	}
+}
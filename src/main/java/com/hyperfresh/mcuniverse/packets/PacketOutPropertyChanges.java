@@ -0,0 +1,81 @@
+package com.hyperfresh.mcuniverse.packets;
+
+import com.hyperfresh.mcuniverse.server.PropertySlots;
+import com.hyperfresh.mcuniverse.server.ServerProperty;
+import com.hyperfresh.mcuniverse.server.ServerPropertyManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Octopod - octopodsquad@gmail.com
+ */
+
+/**
+ * Pushed to the servers subscribed with PacketInPropertySubscribe.
+ * Contains the properties that changed since the last one, and the ones that no longer have a value
+ * (or every property, if <code>full</code>), numbered so a missed one can be noticed.
+ */
+public class PacketOutPropertyChanges extends Packet
+{
+	long epoch;
+	long seq;
+	boolean full;
+	PropertySlots properties;
+
+	/**
+	 * The names of the properties that no longer have a value.
+	 */
+	List<String> removed;
+
+	/**
+	 * @param removed the names (from <code>ServerPropertyManager.getKey()</code>) of the properties that no longer have a value
+	 */
+	public PacketOutPropertyChanges(long epoch, long seq, boolean full, PropertySlots properties, List<String> removed)
+	{
+		this.epoch = epoch;
+		this.seq = seq;
+		this.full = full;
+		this.properties = properties;
+		this.removed = removed;
+	}
+
+	public long getEpoch()
+	{
+		return epoch;
+	}
+
+	public long getSequence()
+	{
+		return seq;
+	}
+
+	public boolean isFull()
+	{
+		return full;
+	}
+
+	public PropertySlots getProperties()
+	{
+		return properties;
+	}
+
+	/**
+	 * Gets the properties that no longer have a value. Properties this server doesn't have are left out.
+	 *
+	 * @param manager the manager to look the properties up in
+	 * @return the properties
+	 */
+	public List<ServerProperty> getRemoved(ServerPropertyManager manager)
+	{
+		List<ServerProperty> properties = new ArrayList<>();
+		if(removed == null) return properties; //Sent by an older version
+
+		for(String key: removed)
+		{
+			ServerProperty property = manager.getProperty(key);
+			if(property != null) properties.add(property);
+		}
+		return properties;
+	}
+}
@@ -0,0 +1,54 @@
+package com.hyperfresh.mcuniverse.packets;
+
+import com.hyperfresh.mcuniverse.UniverseAPI;
+import com.hyperfresh.mcuniverse.network.ChannelRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Octopod - octopodsquad@gmail.com
+ */
+
+/**
+ * Sent when a server connects, and in reply to PacketInServerDiscover.
+ * Contains the server's channels in order of their ids, so the reciever can send it messages with channel ids,
+ * the table's epoch, so ids sent from before the server restarted can be rejected,
+ * and how many of the channels are StaticChannels, whose ids are sent without the epoch.
+ */
+public class PacketOutServerChannels extends Packet
+{
+	String epoch;
+
+	int staticChannels;
+
+	List<String> channels;
+
+	public PacketOutServerChannels()
+	{
+		this.epoch = UniverseAPI.getInstance().getChannelRegistry().getEpoch();
+		this.staticChannels = ChannelRegistry.STATIC_CHANNELS;
+		this.channels = new ArrayList<>(UniverseAPI.getInstance().getChannelRegistry().getChannels());
+	}
+
+	/**
+	 * @return the epoch of the table, or null if it was sent by an older version
+	 */
+	public String getEpoch()
+	{
+		return epoch;
+	}
+
+	/**
+	 * @return the amount of StaticChannels in the table, or 0 if it was sent by an older version
+	 */
+	public int getStaticChannels()
+	{
+		return staticChannels;
+	}
+
+	public List<String> getChannels()
+	{
+		return channels;
+	}
+}
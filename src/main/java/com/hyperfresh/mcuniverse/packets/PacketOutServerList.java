@@ -0,0 +1,34 @@
+package com.hyperfresh.mcuniverse.packets;
+
+import com.hyperfresh.mcuniverse.UniverseAPI;
+import com.hyperfresh.mcuniverse.database.ServerDatabase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Octopod - octopodsquad@gmail.com
+ */
+
+/**
+ * Sent in reply to PacketInServerList.
+ * Contains the identifiers of the servers the sender has heard from (not the stale ones it only loaded from disk).
+ */
+public class PacketOutServerList extends Packet
+{
+	List<String> servers = new ArrayList<>();
+
+	public PacketOutServerList()
+	{
+		ServerDatabase database = UniverseAPI.getInstance().getServerDatabase();
+		for(String server: database.getServerNames())
+		{
+			if(!database.isStale(server)) servers.add(server);
+		}
+	}
+
+	public List<String> getServers()
+	{
+		return servers;
+	}
+}
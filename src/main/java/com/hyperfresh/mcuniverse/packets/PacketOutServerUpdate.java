@@ -15,7 +15,7 @@ public class PacketOutServerUpdate<T> extends Packet
 	public PacketOutServerUpdate(Class<? extends ServerProperty<T>> type)
 	{
 		this.class_name = type.getName();
-		this.object = UniverseAPI.getInstance().getProperty(type).nextValue();
+		this.object = UniverseAPI.getInstance().getLocalProperties().get(UniverseAPI.getInstance().getProperty(type));
 	}
 
 	@SuppressWarnings("unchecked")
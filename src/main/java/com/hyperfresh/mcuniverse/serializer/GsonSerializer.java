@@ -5,9 +5,13 @@ import com.hyperfresh.mcuniverse.Server;
 import com.hyperfresh.mcuniverse.UniverseAPI;
 import com.hyperfresh.mcuniverse.exceptions.DeserializationException;
 import com.hyperfresh.mcuniverse.packets.Packet;
+import com.hyperfresh.mcuniverse.server.PropertySlots;
+import com.hyperfresh.mcuniverse.server.ServerProperty;
+import com.hyperfresh.mcuniverse.server.ServerPropertyManager;
 import net.minecraft.util.com.google.gson.*;
 
 import java.lang.reflect.Type;
+import java.util.Map;
 
 /**
  * @author Octopod - octopodsquad@gmail.com
@@ -25,6 +29,7 @@ public class GsonSerializer implements PacketSerializer
 		//builder.setLongSerializationPolicy(LongSerializationPolicy.STRING);
 		builder.registerTypeAdapter(Packet.class, new NetworkPacketAdapter());
 		builder.registerTypeAdapter(Server.class, new ServerAdapter());
+		builder.registerTypeAdapter(PropertySlots.class, new PropertySlotsAdapter());
 		builder.enableComplexMapKeySerialization();
 		gson = builder.create();
 	}
@@ -51,6 +56,20 @@ public class GsonSerializer implements PacketSerializer
 		return packet;
 	}
 
+	/**
+	 * The start of every encoded packet; NetworkPacketAdapter always writes the class name first.
+	 */
+	private static final String TYPE_PREFIX = "{\"_package\":\"";
+
+	@Override
+	public String getPacketType(String encoded)
+	{
+		if(!encoded.startsWith(TYPE_PREFIX)) return null;
+
+		int end = encoded.indexOf('"', TYPE_PREFIX.length());
+		return end == -1 ? null : encoded.substring(TYPE_PREFIX.length(), end);
+	}
+
 	public static class NetworkPacketAdapter implements JsonSerializer<Packet>, JsonDeserializer<Packet>
 	{
 		@Override
@@ -97,4 +116,39 @@ public class GsonSerializer implements PacketSerializer
 			return context.deserialize(element, CachedServer.class);
 		}
 	}
+
+	/**
+	 * Writes a server's properties as an object of values by property name
+	 * (the enum name of UniverseProperties, the class name of others), instead of the slot arrays.
+	 */
+	public static class PropertySlotsAdapter implements JsonSerializer<PropertySlots>, JsonDeserializer<PropertySlots>
+	{
+		@Override
+		public JsonElement serialize(PropertySlots slots, Type ttype, JsonSerializationContext context)
+		{
+			ServerPropertyManager manager = UniverseAPI.getInstance().getPropertyManager();
+			JsonObject object = new JsonObject();
+			for(Map.Entry<ServerProperty, Object> property: slots.toMap().entrySet())
+			{
+				object.add(manager.getKey(property.getKey()), context.serialize(property.getValue()));
+			}
+			return object;
+		}
+
+		@Override
+		public PropertySlots deserialize(JsonElement element, Type ttype, JsonDeserializationContext context)
+			throws JsonParseException
+		{
+			ServerPropertyManager manager = UniverseAPI.getInstance().getPropertyManager();
+			PropertySlots slots = new PropertySlots(manager);
+			for(Map.Entry<String, JsonElement> property: element.getAsJsonObject().entrySet())
+			{
+				ServerProperty key = manager.getProperty(property.getKey());
+				if(key == null) continue; //A property this server doesn't have
+
+				slots.set(key, context.deserialize(property.getValue(), key.getType()));
+			}
+			return slots;
+		}
+	}
 }
@@ -51,4 +51,11 @@ public class JavaSerializer implements PacketSerializer
 			throw new DeserializationException("Unable to deserilize this string as SwitchPacket");
 		}
 	}
+
+	@Override
+	public String getPacketType(String encoded)
+	{
+		//The class name is in the middle of the object stream, so finding it means decoding it
+		return null;
+	}
 }
@@ -0,0 +1,126 @@
+package com.hyperfresh.mcuniverse.serializer;
+
+import com.hyperfresh.mcuniverse.packets.Packet;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the encoded form of packets that describe this server's state,
+ * so that many servers asking for the same state only cost one serialization.
+ *
+ * Entries are keyed by the kind of packet, and are thrown away whenever the state version
+ * is bumped by <code>invalidate()</code> or once they are older than the maximum age.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class PacketCache
+{
+	private final PacketSerializer serializer;
+
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+	/**
+	 * The current version of the cached state.
+	 */
+	private final AtomicLong version = new AtomicLong(0);
+
+	/**
+	 * The maximum age of an entry, in ms. Values below 0 disable expiring.
+	 */
+	private volatile long maxAge;
+
+	public PacketCache(PacketSerializer serializer, long maxAge)
+	{
+		this.serializer = serializer;
+		this.maxAge = maxAge;
+	}
+
+	/**
+	 * A packet and its encoded form, along with the state version it was made from.
+	 */
+	public static class Entry
+	{
+		final Packet packet;
+		final String encoded;
+		final long version;
+		final long created;
+
+		Entry(Packet packet, String encoded, long version, long created)
+		{
+			this.packet = packet;
+			this.encoded = encoded;
+			this.version = version;
+			this.created = created;
+		}
+
+		public Packet getPacket()
+		{
+			return packet;
+		}
+
+		public String getEncoded()
+		{
+			return encoded;
+		}
+
+		public long getVersion()
+		{
+			return version;
+		}
+	}
+
+	/**
+	 * Gets the cached entry for a kind of packet.
+	 * If there isn't one for the current state version, <code>factory</code> is used to
+	 * create the packet, which is then serialized and cached.
+	 *
+	 * @param key the kind of packet
+	 * @param factory creates the packet if it isn't cached
+	 * @return the cached entry
+	 */
+	public Entry get(String key, final Supplier<? extends Packet> factory)
+	{
+		final long current = version.get();
+		final long now = System.currentTimeMillis();
+
+		return entries.compute(key, (k, entry) ->
+		{
+			if(entry != null && entry.version == current && (maxAge < 0 || now - entry.created <= maxAge))
+			{
+				return entry;
+			}
+			Packet packet = factory.get();
+			return new Entry(packet, serializer.serialize(packet), current, now);
+		});
+	}
+
+	/**
+	 * Marks the cached state as changed, causing every entry to be recreated on its next use.
+	 *
+	 * @return the new state version
+	 */
+	public long invalidate()
+	{
+		long next = version.incrementAndGet();
+		entries.clear();
+		return next;
+	}
+
+	public long getVersion()
+	{
+		return version.get();
+	}
+
+	public void setMaxAge(long maxAge)
+	{
+		this.maxAge = maxAge;
+	}
+
+	public long getMaxAge()
+	{
+		return maxAge;
+	}
+}
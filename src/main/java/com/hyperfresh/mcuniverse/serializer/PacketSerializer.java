@@ -14,4 +14,12 @@ public interface PacketSerializer
 	public String serialize(Packet packet) throws SerializationException;
 
 	public Packet deserialize(String encoded) throws DeserializationException;
+
+	/**
+	 * Gets the class name of an encoded packet without decoding the whole packet.
+	 *
+	 * @param encoded the encoded packet
+	 * @return the packet's class name, or null if it can't be found cheaply
+	 */
+	public String getPacketType(String encoded);
 }
@@ -0,0 +1,228 @@
+package com.hyperfresh.mcuniverse.server;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The property values of one server, in flat arrays indexed by each property's slot in the ServerPropertyManager.
+ * Looking up a property is an array index instead of a hash lookup, and copying every value is two array copies.
+ *
+ * Numbers and booleans (Long, Integer and Boolean properties) are kept unboxed, so the typed getters and setters
+ * don't allocate. The plain getters box them as the property's type.
+ *
+ * Not thread-safe.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class PropertySlots
+{
+	/**
+	 * Marks a slot whose value is in <code>numbers</code>.
+	 */
+	private static final Object NUMBER = new Object();
+
+	private final ServerPropertyManager manager;
+
+	/**
+	 * The value in each slot, null if there isn't one.
+	 */
+	private Object[] values;
+
+	private long[] numbers;
+
+	private int size = 0;
+
+	public PropertySlots(ServerPropertyManager manager)
+	{
+		this.manager = manager;
+		this.values = new Object[manager.getSlotCount()];
+		this.numbers = new long[values.length];
+	}
+
+	private PropertySlots(PropertySlots other)
+	{
+		this.manager = other.manager;
+		this.values = other.values.clone();
+		this.numbers = other.numbers.clone();
+		this.size = other.size;
+	}
+
+	/**
+	 * Makes slots holding every value in a map.
+	 *
+	 * @param manager the manager to get slots from
+	 * @param properties the values, by property
+	 * @return the new slots
+	 */
+	public static PropertySlots of(ServerPropertyManager manager, Map<ServerProperty, Object> properties)
+	{
+		PropertySlots slots = new PropertySlots(manager);
+		for(Map.Entry<ServerProperty, Object> property: properties.entrySet())
+		{
+			slots.set(property.getKey(), property.getValue());
+		}
+		return slots;
+	}
+
+	public PropertySlots copy()
+	{
+		return new PropertySlots(this);
+	}
+
+	private int slot(ServerProperty property)
+	{
+		int slot = manager.getSlot(property);
+		if(slot >= values.length)
+		{
+			//A property registered after these slots were made
+			int length = Math.max(slot + 1, manager.getSlotCount());
+			values = Arrays.copyOf(values, length);
+			numbers = Arrays.copyOf(numbers, length);
+		}
+		return slot;
+	}
+
+	private static boolean isNumber(Class<?> type)
+	{
+		return type == Long.class || type == Integer.class || type == Boolean.class;
+	}
+
+	/**
+	 * Gets a value.
+	 *
+	 * @param property the property
+	 * @return the value, or null if there isn't one
+	 */
+	public Object get(ServerProperty property)
+	{
+		int slot = manager.getSlot(property);
+		if(slot >= values.length) return null;
+
+		Object value = values[slot];
+		if(value != NUMBER) return value;
+
+		long number = numbers[slot];
+		Class<?> type = property.getType();
+		if(type == Integer.class) return (int)number;
+		if(type == Boolean.class) return number != 0;
+		return number;
+	}
+
+	/**
+	 * Sets a value.
+	 *
+	 * @param property the property
+	 * @param value the value, or null to remove it
+	 */
+	public void set(ServerProperty property, Object value)
+	{
+		if(value == null)
+		{
+			remove(property);
+			return;
+		}
+
+		if(isNumber(property.getType()) && (value instanceof Number || value instanceof Boolean))
+		{
+			setLong(property, value instanceof Boolean ? ((Boolean)value ? 1 : 0) : ((Number)value).longValue());
+			return;
+		}
+
+		int slot = slot(property);
+		if(values[slot] == null) size++;
+		values[slot] = value;
+	}
+
+	/**
+	 * Gets a number without boxing it.
+	 *
+	 * @param property a Long, Integer or Boolean property
+	 * @param def the number to return if there's no value
+	 * @return the number (1 or 0 for booleans)
+	 */
+	public long getLong(ServerProperty property, long def)
+	{
+		int slot = manager.getSlot(property);
+		if(slot >= values.length) return def;
+
+		Object value = values[slot];
+		if(value == NUMBER) return numbers[slot];
+		return value instanceof Number ? ((Number)value).longValue() : def;
+	}
+
+	/**
+	 * Sets a number without boxing it.
+	 *
+	 * @param property a Long, Integer or Boolean property
+	 * @param number the number (1 or 0 for booleans)
+	 */
+	public void setLong(ServerProperty property, long number)
+	{
+		int slot = slot(property);
+		if(values[slot] == null) size++;
+		values[slot] = NUMBER;
+		numbers[slot] = number;
+	}
+
+	public int getInt(ServerProperty property, int def)
+	{
+		return (int)getLong(property, def);
+	}
+
+	public boolean getBoolean(ServerProperty property, boolean def)
+	{
+		return getLong(property, def ? 1 : 0) != 0;
+	}
+
+	public boolean contains(ServerProperty property)
+	{
+		int slot = manager.getSlot(property);
+		return slot < values.length && values[slot] != null;
+	}
+
+	/**
+	 * Removes a value.
+	 *
+	 * @param property the property
+	 * @return the value that was removed, or null if there wasn't one
+	 */
+	public Object remove(ServerProperty property)
+	{
+		Object value = get(property);
+		if(value != null)
+		{
+			values[manager.getSlot(property)] = null;
+			size--;
+		}
+		return value;
+	}
+
+	/**
+	 * Gets the amount of properties that have a value.
+	 *
+	 * @return the amount of properties
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Copies every value into a map, such as for encoding them.
+	 *
+	 * @return a new map of values, by property
+	 */
+	public Map<ServerProperty, Object> toMap()
+	{
+		Map<ServerProperty, Object> map = new HashMap<>();
+		for(int slot = 0; slot < values.length; slot++)
+		{
+			if(values[slot] == null) continue;
+
+			ServerProperty property = manager.getProperty(slot);
+			map.put(property, get(property));
+		}
+		return map;
+	}
+}
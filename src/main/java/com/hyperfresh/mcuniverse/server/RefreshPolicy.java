@@ -0,0 +1,107 @@
+package com.hyperfresh.mcuniverse.server;
+
+/**
+ * How often a ServerProperty's value on this server is worked out again.
+ * The LocalPropertyCache serves the last value it worked out, and follows this to decide when to replace it.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public final class RefreshPolicy
+{
+	public enum Type
+	{
+		/**
+		 * Worked out once, and again only when everything is invalidated (when the config is reloaded).
+		 */
+		CONSTANT,
+
+		/**
+		 * Worked out again whenever something invalidates the property, such as a player joining.
+		 */
+		ON_CHANGE,
+
+		/**
+		 * Worked out again every <code>interval</code> ms, for values that change without telling anyone.
+		 */
+		PERIODIC,
+
+		/**
+		 * Worked out again when it's read more than <code>interval</code> ms after the last time.
+		 * The read still gets the old value; the new one is for the reads after it.
+		 */
+		ON_DEMAND
+	}
+
+	private static final RefreshPolicy CONSTANT = new RefreshPolicy(Type.CONSTANT, 0);
+
+	private static final RefreshPolicy ON_CHANGE = new RefreshPolicy(Type.ON_CHANGE, 0);
+
+	private final Type type;
+
+	private final long interval;
+
+	private RefreshPolicy(Type type, long interval)
+	{
+		this.type = type;
+		this.interval = interval;
+	}
+
+	public static RefreshPolicy constant()
+	{
+		return CONSTANT;
+	}
+
+	public static RefreshPolicy onChange()
+	{
+		return ON_CHANGE;
+	}
+
+	/**
+	 * @param interval the time, in ms, between refreshes
+	 */
+	public static RefreshPolicy every(long interval)
+	{
+		if(interval <= 0) throw new IllegalArgumentException("Interval must be above 0");
+		return new RefreshPolicy(Type.PERIODIC, interval);
+	}
+
+	/**
+	 * @param ttl the time, in ms, a value is served before it's refreshed;
+	 *            0 to work it out on every read instead, for values that are cheaper to work out than to cache (like the time)
+	 */
+	public static RefreshPolicy expireAfter(long ttl)
+	{
+		return new RefreshPolicy(Type.ON_DEMAND, Math.max(ttl, 0));
+	}
+
+	public Type getType()
+	{
+		return type;
+	}
+
+	/**
+	 * Gets the time, in ms, between refreshes (PERIODIC) or that a value is served for (ON_DEMAND).
+	 *
+	 * @return the interval, or 0 for the other types
+	 */
+	public long getInterval()
+	{
+		return interval;
+	}
+
+	/**
+	 * Checks if values are worked out on every read instead of being cached.
+	 *
+	 * @return true if this is ON_DEMAND with a TTL of 0
+	 */
+	public boolean isUncached()
+	{
+		return type == Type.ON_DEMAND && interval == 0;
+	}
+
+	@Override
+	public String toString()
+	{
+		return interval == 0 ? type.name() : type.name() + "(" + interval + " ms)";
+	}
+}
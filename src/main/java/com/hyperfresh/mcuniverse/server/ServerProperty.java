@@ -10,4 +10,14 @@ public interface ServerProperty<T>
 	public Class<T> getType();
 
 	public T nextValue();
+
+	/**
+	 * Gets how often this server works out its value again; reads between refreshes are served from the LocalPropertyCache.
+	 *
+	 * @return the refresh policy (by default, values are served for up to a second)
+	 */
+	public default RefreshPolicy getRefreshPolicy()
+	{
+		return RefreshPolicy.expireAfter(1000);
+	}
 }
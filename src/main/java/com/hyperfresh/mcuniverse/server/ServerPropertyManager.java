@@ -1,16 +1,31 @@
 package com.hyperfresh.mcuniverse.server;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Map;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
+ * Keeps one instance of every registered ServerProperty, and gives each property a slot:
+ * a small number that servers use as an index into a PropertySlots array instead of hashing the property.
+ *
+ * UniverseProperties always take the first slots, in order, so their slot is their ordinal.
+ * Other properties get the next free slot the first time they're registered or used. Slots are never reused.
+ *
  * @author Octopod - octopodsquad@gmail.com
  */
 public class ServerPropertyManager
 {
 	Map<Class<? extends ServerProperty>, ServerProperty> properties = new WeakHashMap<>();
 
+	private final Map<ServerProperty, Integer> slots = new ConcurrentHashMap<>();
+
+	/**
+	 * The property in each slot.
+	 */
+	private volatile ServerProperty[] bySlot = Arrays.copyOf(UniverseProperty.values(), UniverseProperty.values().length, ServerProperty[].class);
+
 	@SuppressWarnings("unchecked")
 	public void registerProperties(Class<?> c)
 	{
@@ -22,6 +37,7 @@ public class ServerPropertyManager
 				{
 					ServerProperty property = (ServerProperty)type.newInstance();
 					properties.put((Class<? extends ServerProperty>)type, property);
+					getSlot(property);
 				}
 				catch (InstantiationException | IllegalAccessException e)
 				{
@@ -41,6 +57,7 @@ public class ServerPropertyManager
 			{
 				ServerProperty<T> property = type.newInstance();
 				properties.put(type, property);
+				getSlot(property);
 			}
 			catch (InstantiationException | IllegalAccessException e)
 			{
@@ -54,4 +71,89 @@ public class ServerPropertyManager
 	{
 		return properties.values();
 	}
+
+	/**
+	 * Gets the slot of a property, giving it the next free slot if it doesn't have one yet.
+	 *
+	 * @param property the property
+	 * @return the property's slot
+	 */
+	public int getSlot(ServerProperty property)
+	{
+		if(property instanceof UniverseProperty) return ((UniverseProperty)property).ordinal();
+
+		Integer slot = slots.get(property);
+		return slot != null ? slot : assignSlot(property);
+	}
+
+	private synchronized int assignSlot(ServerProperty property)
+	{
+		Integer slot = slots.get(property);
+		if(slot != null) return slot;
+
+		ServerProperty[] grown = Arrays.copyOf(bySlot, bySlot.length + 1);
+		grown[bySlot.length] = property;
+		bySlot = grown;
+		slots.put(property, bySlot.length - 1);
+		return bySlot.length - 1;
+	}
+
+	/**
+	 * Gets the property in a slot.
+	 *
+	 * @param slot the slot
+	 * @return the property, or null if the slot isn't taken
+	 */
+	public ServerProperty getProperty(int slot)
+	{
+		ServerProperty[] properties = bySlot;
+		return slot < properties.length ? properties[slot] : null;
+	}
+
+	/**
+	 * Gets the name a property is sent by: the enum name of UniverseProperties, the class name of others.
+	 *
+	 * @param property the property
+	 * @return the property's name
+	 */
+	public String getKey(ServerProperty property)
+	{
+		return property instanceof UniverseProperty ? ((UniverseProperty)property).name() : property.getClass().getName();
+	}
+
+	/**
+	 * Gets a property by the name it's sent by.
+	 *
+	 * @param key the property's name
+	 * @return the property, or null if this server doesn't have it
+	 */
+	@SuppressWarnings("unchecked")
+	public ServerProperty getProperty(String key)
+	{
+		try
+		{
+			return UniverseProperty.valueOf(key);
+		}
+		catch (IllegalArgumentException e)
+		{
+			try
+			{
+				return getProperty((Class<? extends ServerProperty<Object>>)Class.forName(key));
+			}
+			catch (ClassNotFoundException | ClassCastException | IllegalArgumentException e2)
+			{
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Gets the amount of slots that are taken.
+	 *
+	 * @return the amount of slots
+	 */
+	public int getSlotCount()
+	{
+		return bySlot.length;
+	}
 }
@@ -12,7 +12,7 @@ import java.util.List;
  */
 public enum UniverseProperty implements ServerProperty
 {
-	NAME(new ServerProperty<String>()
+	NAME(RefreshPolicy.constant(), new ServerProperty<String>()
 	{
 		@Override
 		public String getName()
@@ -34,7 +34,7 @@ public enum UniverseProperty implements ServerProperty
 		}
 	}),	
 	
-	STATUS(new ServerProperty<ServerStatus>()
+	STATUS(RefreshPolicy.constant(), new ServerProperty<ServerStatus>()
 	{
 		public Class<ServerStatus> getType() {return ServerStatus.class;}
 	
@@ -49,7 +49,7 @@ public enum UniverseProperty implements ServerProperty
 		}
 	}),
 
-	LAST_ONLINE(new ServerProperty<Long>()
+	LAST_ONLINE(RefreshPolicy.expireAfter(0), new ServerProperty<Long>()
 	{
 		public Class<Long> getType() {return Long.class;}
 
@@ -64,7 +64,7 @@ public enum UniverseProperty implements ServerProperty
 		}
 	}),
 
-	LAST_PACKET(new ServerProperty<Long>()
+	LAST_PACKET(RefreshPolicy.expireAfter(0), new ServerProperty<Long>()
 	{
 		public Class<Long> getType() {return Long.class;}
 
@@ -79,7 +79,7 @@ public enum UniverseProperty implements ServerProperty
 		}
 	}),
 
-	ONLINE_PLAYERS(new ServerProperty<List<String>>()
+	ONLINE_PLAYERS(RefreshPolicy.onChange(), new ServerProperty<List<String>>()
 	{
 		@SuppressWarnings("unchecked")
 		public Class<List<String>> getType() {return (Class<List<String>>)(Class<?>)List.class;}
@@ -100,7 +100,7 @@ public enum UniverseProperty implements ServerProperty
 		}
 	}),
 
-	MAX_PLAYERS(new ServerProperty<Integer>()
+	MAX_PLAYERS(RefreshPolicy.every(60000), new ServerProperty<Integer>()
 	{
 		public Class<Integer> getType() {return Integer.class;}
 
@@ -115,7 +115,7 @@ public enum UniverseProperty implements ServerProperty
 		}
 	}),
 
-	WHITELIST_ENABLED(new ServerProperty<Boolean>()
+	WHITELIST_ENABLED(RefreshPolicy.every(10000), new ServerProperty<Boolean>()
 	{
 		public Class<Boolean> getType() {return Boolean.class;}
 
@@ -130,7 +130,7 @@ public enum UniverseProperty implements ServerProperty
 		}
 	}),
 
-	WHITELISTED_PLAYERS(new ServerProperty<List<String>>()
+	WHITELISTED_PLAYERS(RefreshPolicy.every(10000), new ServerProperty<List<String>>()
 	{
 		@SuppressWarnings("unchecked")
 		public Class<List<String>> getType() {return (Class<List<String>>)(Class<?>)List.class;}
@@ -149,7 +149,7 @@ public enum UniverseProperty implements ServerProperty
 	/**
 	 * Gets the hub priority of this server. If the priority is -1, then it isn't enabled.
 	 */
-	HUB_PRIORITY(new ServerProperty<Integer>()
+	HUB_PRIORITY(RefreshPolicy.constant(), new ServerProperty<Integer>()
 	{
 		public Class<Integer> getType() {return Integer.class;}
 
@@ -163,13 +163,40 @@ public enum UniverseProperty implements ServerProperty
 			YamlConfiguration config = com.hyperfresh.mcuniverse.UniverseAPI.getInstance().getConfig();
 			return config.getBoolean("hub-enabled", false) ? config.getInt("hub-priority", 0) : -1;
 		}
+	}),
+
+	/**
+	 * Gets the tags of this server, which ServerGroups can use to pick their members.
+	 */
+	TAGS(RefreshPolicy.constant(), new ServerProperty<List<String>>()
+	{
+		@SuppressWarnings("unchecked")
+		public Class<List<String>> getType() {return (Class<List<String>>)(Class<?>)List.class;}
+
+		public String getName()
+		{
+			return "Tags";
+		}
+
+		public List<String> nextValue()
+		{
+			List<String> tags = new ArrayList<>();
+			for(String tag: com.hyperfresh.mcuniverse.UniverseAPI.getInstance().getConfig().getString("server-tags", "").split(","))
+			{
+				if(!tag.trim().isEmpty()) tags.add(tag.trim());
+			}
+			return tags;
+		}
 	});
 
-	private UniverseProperty(ServerProperty<?> handle)
+	private UniverseProperty(RefreshPolicy policy, ServerProperty<?> handle)
 	{
+		this.policy = policy;
 		this.handle = handle;
 	}
 
+	private RefreshPolicy policy;
+
 	private ServerProperty<?> handle;
 
 	@Override
@@ -189,4 +216,10 @@ public enum UniverseProperty implements ServerProperty
 	{
 		return handle.nextValue();
 	}
+
+	@Override
+	public RefreshPolicy getRefreshPolicy()
+	{
+		return policy;
+	}
 }
@@ -0,0 +1,270 @@
+package com.hyperfresh.mcuniverse.server.networked;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * A set of player UUIDs, kept as pairs of longs in one open-addressing table.
+ * Adding, removing and checking a player are O(1) and allocate nothing, and each player takes
+ * about 32 bytes instead of a String, its char array and a list slot.
+ *
+ * Uses linear probing, and removes by shifting the following entries back instead of leaving tombstones,
+ * so a set that has players constantly joining and leaving never slows down.
+ *
+ * Not thread-safe.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class PlayerSet
+{
+	private static final int MIN_CAPACITY = 16;
+
+	/**
+	 * The most and least significant bits of each UUID, side by side. (0, 0) marks an empty slot.
+	 */
+	private long[] table;
+
+	private int mask;
+
+	private int size = 0;
+
+	/**
+	 * Whether the nil UUID is in the set, since its slot would look empty.
+	 */
+	private boolean hasNil = false;
+
+	public PlayerSet()
+	{
+		this(MIN_CAPACITY / 2);
+	}
+
+	/**
+	 * @param expected the amount of players the set should hold without growing
+	 */
+	public PlayerSet(int expected)
+	{
+		int capacity = MIN_CAPACITY;
+		while(capacity < expected * 2) capacity <<= 1;
+		table = new long[capacity * 2];
+		mask = capacity - 1;
+	}
+
+	private static int hash(long msb, long lsb)
+	{
+		long h = msb ^ lsb;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		return (int)h;
+	}
+
+	/**
+	 * Finds the slot holding a UUID, or the empty slot where it would go.
+	 */
+	private int slot(long msb, long lsb)
+	{
+		int slot = hash(msb, lsb) & mask;
+		while(true)
+		{
+			long m = table[slot * 2], l = table[slot * 2 + 1];
+			if((m == msb && l == lsb) || (m == 0 && l == 0)) return slot;
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	public boolean add(long msb, long lsb)
+	{
+		if(msb == 0 && lsb == 0)
+		{
+			if(hasNil) return false;
+			hasNil = true;
+			size++;
+			return true;
+		}
+
+		int slot = slot(msb, lsb);
+		if(table[slot * 2] != 0 || table[slot * 2 + 1] != 0) return false;
+
+		table[slot * 2] = msb;
+		table[slot * 2 + 1] = lsb;
+
+		//Kept at most half full, so probes stay short
+		if(++size * 2 > mask + 1) resize((mask + 1) * 2);
+		return true;
+	}
+
+	public boolean remove(long msb, long lsb)
+	{
+		if(msb == 0 && lsb == 0)
+		{
+			if(!hasNil) return false;
+			hasNil = false;
+			size--;
+			return true;
+		}
+
+		int slot = slot(msb, lsb);
+		if(table[slot * 2] == 0 && table[slot * 2 + 1] == 0) return false;
+
+		//Move back any following entries that would no longer be reachable through the emptied slot
+		int next = slot;
+		while(true)
+		{
+			next = (next + 1) & mask;
+			long m = table[next * 2], l = table[next * 2 + 1];
+			if(m == 0 && l == 0) break;
+
+			int home = hash(m, l) & mask;
+			boolean between = slot <= next ? (home > slot && home <= next) : (home > slot || home <= next);
+			if(!between)
+			{
+				table[slot * 2] = m;
+				table[slot * 2 + 1] = l;
+				slot = next;
+			}
+		}
+		table[slot * 2] = 0;
+		table[slot * 2 + 1] = 0;
+		size--;
+		return true;
+	}
+
+	public boolean contains(long msb, long lsb)
+	{
+		if(msb == 0 && lsb == 0) return hasNil;
+
+		int slot = slot(msb, lsb);
+		return table[slot * 2] != 0 || table[slot * 2 + 1] != 0;
+	}
+
+	public boolean add(UUID player)
+	{
+		return add(player.getMostSignificantBits(), player.getLeastSignificantBits());
+	}
+
+	public boolean remove(UUID player)
+	{
+		return remove(player.getMostSignificantBits(), player.getLeastSignificantBits());
+	}
+
+	public boolean contains(UUID player)
+	{
+		return contains(player.getMostSignificantBits(), player.getLeastSignificantBits());
+	}
+
+	/**
+	 * @param player the player's UUID, as a string
+	 * @throws IllegalArgumentException if the string isn't a UUID
+	 */
+	public boolean add(String player)
+	{
+		return add(UUID.fromString(player));
+	}
+
+	/**
+	 * @param player the player's UUID, as a string
+	 * @throws IllegalArgumentException if the string isn't a UUID
+	 */
+	public boolean remove(String player)
+	{
+		return remove(UUID.fromString(player));
+	}
+
+	/**
+	 * @param player the player's UUID, as a string
+	 * @throws IllegalArgumentException if the string isn't a UUID
+	 */
+	public boolean contains(String player)
+	{
+		return contains(UUID.fromString(player));
+	}
+
+	/**
+	 * Adds every player that has a valid UUID.
+	 *
+	 * @param players the players' UUIDs, as strings
+	 * @return the amount of strings that weren't UUIDs
+	 */
+	public int addAll(Collection<String> players)
+	{
+		int invalid = 0;
+		for(String player: players)
+		{
+			try
+			{
+				add(player);
+			}
+			catch (IllegalArgumentException e)
+			{
+				invalid++;
+			}
+		}
+		return invalid;
+	}
+
+	private void resize(int capacity)
+	{
+		long[] old = table;
+		table = new long[capacity * 2];
+		mask = capacity - 1;
+
+		for(int i = 0; i < old.length; i += 2)
+		{
+			if(old[i] == 0 && old[i + 1] == 0) continue;
+
+			int slot = slot(old[i], old[i + 1]);
+			table[slot * 2] = old[i];
+			table[slot * 2 + 1] = old[i + 1];
+		}
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	public void clear()
+	{
+		if(table.length > MIN_CAPACITY * 2)
+		{
+			table = new long[MIN_CAPACITY * 2];
+			mask = MIN_CAPACITY - 1;
+		}
+		else
+		{
+			Arrays.fill(table, 0);
+		}
+		size = 0;
+		hasNil = false;
+	}
+
+	public void forEach(Consumer<UUID> action)
+	{
+		if(hasNil) action.accept(new UUID(0, 0));
+		for(int i = 0; i < table.length; i += 2)
+		{
+			if(table[i] != 0 || table[i + 1] != 0) action.accept(new UUID(table[i], table[i + 1]));
+		}
+	}
+
+	/**
+	 * Gets every player's UUID as a string, such as for sending the set to another server.
+	 *
+	 * @return a new list of UUIDs
+	 */
+	public List<String> toList()
+	{
+		List<String> players = new ArrayList<>(size);
+		forEach(player -> players.add(player.toString()));
+		return players;
+	}
+}
@@ -6,6 +6,7 @@ import com.hyperfresh.mcuniverse.server.ServerProperty;
 
 import java.io.Serializable;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * @author Octopod - octopodsquad@gmail.com
@@ -46,4 +47,19 @@ public interface UniverseServer extends Serializable, MinecraftServer
 	public <T> void setProperty(ServerProperty<T> key, T value) throws IllegalArgumentException;
 
 	public boolean isOnline();
+
+	/**
+	 * Gets the amount of players on this server, without making a player object for each one.
+	 *
+	 * @return the amount of players
+	 */
+	public int getOnlinePlayerCount();
+
+	/**
+	 * Runs an action for every player on this server, without making a player object for each one.
+	 * The action shouldn't block, since the server's players may be locked while it runs.
+	 *
+	 * @param action called with each player's UUID
+	 */
+	public void forEachOnlinePlayer(Consumer<String> action);
 }
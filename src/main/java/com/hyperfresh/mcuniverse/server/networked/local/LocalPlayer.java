@@ -1,20 +1,15 @@
 package com.hyperfresh.mcuniverse.server.networked.local;
 
 import com.hyperfresh.mcuniverse.PlayerSwitchResult;
-import com.hyperfresh.mcuniverse.event.AsyncEventHandler;
-import com.hyperfresh.mcuniverse.event.events.NetworkPacketInEvent;
+import com.hyperfresh.mcuniverse.UniverseAPI;
 import com.hyperfresh.mcuniverse.minecraft.MinecraftPlayer;
 import com.hyperfresh.mcuniverse.minecraft.MinecraftWorld;
-import com.hyperfresh.mcuniverse.packets.Packet;
-import com.hyperfresh.mcuniverse.packets.PacketInPlayerSwitch;
-import com.hyperfresh.mcuniverse.packets.PacketOutPlayerSwitch;
 import com.hyperfresh.mcuniverse.server.networked.UniversePlayer;
 import com.octopod.minecraft.Location;
 import com.octopod.util.Angle;
 import com.octopod.util.Vector;
 
 import java.util.List;
-import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * An implementation for a player that is "networked", as in
@@ -37,30 +32,7 @@ public class LocalPlayer implements UniversePlayer
 	@Override
 	public PlayerSwitchResult redirect(String server)
 	{
-		final AtomicReference<PlayerSwitchResult> result = new AtomicReference<>();
-		final Packet message = new PacketInPlayerSwitch(player);
-
-		AsyncEventHandler<NetworkPacketInEvent> listener = new AsyncEventHandler<NetworkPacketInEvent>()
-		{
-			public boolean handle(NetworkPacketInEvent event)
-			{
-				if(event.getPacket() instanceof PacketOutPlayerSwitch)
-				{
-					PacketOutPlayerSwitch packet = (PacketOutPlayerSwitch)event.getPacket();
-					if(player.getUUID().equals(packet.getUUID()))
-					{
-						result.set(packet.getResult());
-					}
-					return true;
-				}
-				return false;
-			}
-		};
-
-		message.send(server);
-		listener.waitFor(500);
-
-		return result.get();
+		return UniverseAPI.getInstance().redirectPlayer(player, server);
 	}
 
 	@Override
@@ -0,0 +1,195 @@
+package com.hyperfresh.mcuniverse.server.networked.local;
+
+import com.hyperfresh.mcuniverse.server.RefreshPolicy;
+import com.hyperfresh.mcuniverse.server.ServerProperty;
+import com.hyperfresh.mcuniverse.server.ServerPropertyManager;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * The values of this server's properties, worked out ahead of time so reading one doesn't call <code>nextValue()</code>
+ * (some of which copy every online or whitelisted player from the server).
+ *
+ * Each property's RefreshPolicy decides when its value is worked out again. Refreshes run on the refresher
+ * (the main thread, since most values come from the server's API), never on the thread that's reading;
+ * only the first read of a property has to wait for its value.
+ *
+ * Values are kept in an array indexed by each property's slot, so reads never lock.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class LocalPropertyCache
+{
+	private static class Entry
+	{
+		final Object value;
+		final long time;
+
+		Entry(Object value, long time)
+		{
+			this.value = value;
+			this.time = time;
+		}
+	}
+
+	private final ServerPropertyManager manager;
+
+	private final Executor refresher;
+
+	private final ScheduledExecutorService timer;
+
+	private final Consumer<ServerProperty> onChange;
+
+	/**
+	 * The last value of each property, by slot. Replaced (not written to) when a later property needs a bigger one.
+	 */
+	private volatile AtomicReferenceArray<Entry> entries;
+
+	/**
+	 * Properties with a refresh waiting to run, so they aren't queued more than once.
+	 */
+	private final Set<ServerProperty> pending = ConcurrentHashMap.newKeySet();
+
+	private final Map<ServerProperty, ScheduledFuture<?>> periodic = new ConcurrentHashMap<>();
+
+	/**
+	 * @param manager the manager to get slots from
+	 * @param refresher runs refreshes
+	 * @param timer schedules PERIODIC refreshes
+	 * @param onChange called after a refresh changes a property's value
+	 */
+	public LocalPropertyCache(ServerPropertyManager manager, Executor refresher, ScheduledExecutorService timer, Consumer<ServerProperty> onChange)
+	{
+		this.manager = manager;
+		this.refresher = refresher;
+		this.timer = timer;
+		this.onChange = onChange;
+		this.entries = new AtomicReferenceArray<>(manager.getSlotCount());
+	}
+
+	/**
+	 * Gets a property's value.
+	 *
+	 * @param property the property
+	 * @return the last value worked out
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T get(ServerProperty<T> property)
+	{
+		RefreshPolicy policy = property.getRefreshPolicy();
+		if(policy.isUncached()) return property.nextValue();
+
+		int slot = manager.getSlot(property);
+		Entry entry = entry(slot);
+		if(entry == null)
+		{
+			//Nothing to serve yet, so this read has to wait for it
+			entry = update(property, slot);
+			if(policy.getType() == RefreshPolicy.Type.PERIODIC) schedule(property, policy.getInterval());
+		}
+		else if(policy.getType() == RefreshPolicy.Type.ON_DEMAND && System.currentTimeMillis() - entry.time >= policy.getInterval())
+		{
+			refresh(property);
+		}
+		return (T)entry.value;
+	}
+
+	/**
+	 * Works out a property's value again soon, such as when something it depends on changed.
+	 * CONSTANT properties, and properties that haven't been read yet, are left alone.
+	 *
+	 * @param property the property
+	 */
+	public void invalidate(ServerProperty property)
+	{
+		if(property.getRefreshPolicy().getType() == RefreshPolicy.Type.CONSTANT) return;
+		if(entry(manager.getSlot(property)) != null) refresh(property);
+	}
+
+	/**
+	 * Works out every property's value again soon, including CONSTANT ones, such as when the config is reloaded.
+	 */
+	public void invalidateAll()
+	{
+		AtomicReferenceArray<Entry> entries = this.entries;
+		for(int slot = 0; slot < entries.length(); slot++)
+		{
+			if(entries.get(slot) != null) refresh(manager.getProperty(slot));
+		}
+	}
+
+	/**
+	 * Stops the PERIODIC refreshes.
+	 */
+	public void close()
+	{
+		for(ScheduledFuture<?> task: periodic.values())
+		{
+			task.cancel(false);
+		}
+		periodic.clear();
+	}
+
+	private Entry entry(int slot)
+	{
+		AtomicReferenceArray<Entry> entries = this.entries;
+		return slot < entries.length() ? entries.get(slot) : null;
+	}
+
+	private void refresh(ServerProperty property)
+	{
+		if(!pending.add(property)) return;
+		refresher.execute(() -> {
+			//Cleared first, so an invalidation while this runs queues another refresh
+			pending.remove(property);
+			update(property, manager.getSlot(property));
+		});
+	}
+
+	private void schedule(ServerProperty property, long interval)
+	{
+		periodic.computeIfAbsent(property, k -> timer.scheduleAtFixedRate(() -> refresh(k), interval, interval, TimeUnit.MILLISECONDS));
+	}
+
+	/**
+	 * Works out a property's value and stores it.
+	 */
+	private Entry update(ServerProperty property, int slot)
+	{
+		Object value = property.nextValue();
+
+		//Every reader gets the same list
+		if(value instanceof List) value = Collections.unmodifiableList((List<?>)value);
+
+		Entry entry = new Entry(value, System.currentTimeMillis());
+		Entry old;
+		synchronized(this)
+		{
+			if(slot >= entries.length())
+			{
+				//A property registered after the array was made
+				AtomicReferenceArray<Entry> grown = new AtomicReferenceArray<>(Math.max(slot + 1, manager.getSlotCount()));
+				for(int i = 0; i < entries.length(); i++)
+				{
+					grown.set(i, entries.get(i));
+				}
+				entries = grown;
+			}
+			old = entries.getAndSet(slot, entry);
+		}
+
+		if(old != null && !Objects.equals(old.value, value)) onChange.accept(property);
+		return entry;
+	}
+}
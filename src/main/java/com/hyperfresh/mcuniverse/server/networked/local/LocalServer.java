@@ -14,6 +14,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * @author Octopod - octopodsquad@gmail.com
@@ -50,9 +51,10 @@ public class LocalServer implements UniverseServer
 	{
 		Map<ServerProperty, Object> properties = new HashMap<>();
 		ServerPropertyManager spm = UniverseAPI.getInstance().getPropertyManager();
+		LocalPropertyCache cache = UniverseAPI.getInstance().getLocalProperties();
 		for(ServerProperty property: spm.getProperties())
 		{
-			properties.put(property, property.nextValue());
+			properties.put(property, cache.get(property));
 		}
 		return properties;
 	}
@@ -64,7 +66,7 @@ public class LocalServer implements UniverseServer
 	@SuppressWarnings("unchecked")
 	public <T> T getProperty(ServerProperty<T> key)
 	{
-		return key.nextValue();
+		return UniverseAPI.getInstance().getLocalProperties().get(key);
 	}
 
 	@Override
@@ -157,6 +159,21 @@ public class LocalServer implements UniverseServer
 		return server.getOnlinePlayers();
 	}
 
+	@Override
+	public int getOnlinePlayerCount()
+	{
+		return server.getOnlinePlayers().size();
+	}
+
+	@Override
+	public void forEachOnlinePlayer(Consumer<String> action)
+	{
+		for(MinecraftPlayer player: server.getOnlinePlayers())
+		{
+			action.accept(player.getUUID());
+		}
+	}
+
 	@Override
 	public List<MinecraftUser> getOfflinePlayers()
 	{
@@ -213,7 +213,7 @@ public class StoredPlayer implements UniversePlayer
 	@Override
 	public String getUUID()
 	{
-		return null;
+		return UUID;
 	}
 
 	@Override
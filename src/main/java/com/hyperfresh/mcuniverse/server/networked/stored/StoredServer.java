@@ -1,17 +1,24 @@
 package com.hyperfresh.mcuniverse.server.networked.stored;
 
+import com.hyperfresh.mcuniverse.UniverseAPI;
 import com.hyperfresh.mcuniverse.UniverseVersion;
 import com.hyperfresh.mcuniverse.exceptions.PlayerOfflineException;
 import com.hyperfresh.mcuniverse.minecraft.MinecraftConsole;
 import com.hyperfresh.mcuniverse.minecraft.MinecraftPlayer;
 import com.hyperfresh.mcuniverse.minecraft.MinecraftUser;
+import com.hyperfresh.mcuniverse.server.PropertySlots;
 import com.hyperfresh.mcuniverse.server.ServerProperty;
+import com.hyperfresh.mcuniverse.server.UniverseProperty;
+import com.hyperfresh.mcuniverse.server.networked.PlayerSet;
 import com.hyperfresh.mcuniverse.server.networked.UniverseServer;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * @author Octopod - octopodsquad@gmail.com
@@ -20,7 +27,7 @@ public class StoredServer implements UniverseServer
 {
 	String server_id;
 	UniverseVersion version;
-	Map<ServerProperty, Object> properties;
+	PropertySlots properties;
 
 	/**
 	 * The display name of this server. If null, the username will be used instead.
@@ -29,7 +36,27 @@ public class StoredServer implements UniverseServer
 
 	boolean online = true;
 
-	List<String> onlinePlayers;
+	/**
+	 * The UUIDs of the players on this server. The ONLINE_PLAYERS property is read from and written to this set,
+	 * so joins and leaves don't copy a list. Transient, and filled from the property map when first used.
+	 */
+	transient PlayerSet onlinePlayers = null;
+
+	/**
+	 * The names of the players on this server, for sources that don't know UUIDs (LilypadEssentials).
+	 * Only ever replaced as a whole.
+	 */
+	transient List<String> onlinePlayerNames = null;
+
+	/**
+	 * What getOnlinePlayers() returns, until the players change.
+	 */
+	transient List<MinecraftPlayer> playerView = null;
+
+	/**
+	 * The last list getOnlinePlayers() made, to take unchanged players from.
+	 */
+	transient List<MinecraftPlayer> lastView = null;
 
 	/**
 	 * Constructor for external servers.
@@ -40,7 +67,7 @@ public class StoredServer implements UniverseServer
 	{
 		this.server_id = serverID;
 		this.version = null;
-		this.properties = new HashMap<>();
+		this.properties = new PropertySlots(UniverseAPI.getInstance().getPropertyManager());
 	}
 
 	/**
@@ -54,34 +81,150 @@ public class StoredServer implements UniverseServer
 		{
 			this.server_id = 	server.getServerUsername();
 			this.version = 		server.getPluginVersion();
-			this.properties = 	server.getPropertyMap();
+			this.properties = 	server instanceof StoredServer ?
+								((StoredServer)server).copyProperties() :
+								PropertySlots.of(UniverseAPI.getInstance().getPropertyManager(), server.getPropertyMap());
 		}
 	}
 
+	/**
+	 * Copies this server's properties, which is one copy of each slot array instead of a map.
+	 */
+	private synchronized PropertySlots copyProperties()
+	{
+		PropertySlots copy = properties.copy();
+		if(onlinePlayers != null) copy.set(UniverseProperty.ONLINE_PLAYERS, onlinePlayers.toList());
+		return copy;
+	}
+
 	public void setServerName(String name)
 	{
 		this.serverName = name;
 	}
 
-	public void setOnlinePlayers(List<String> onlinePlayers)
+	public synchronized void setOnlinePlayerNames(List<String> names)
+	{
+		this.onlinePlayerNames = names;
+		playerView = null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private synchronized PlayerSet players()
+	{
+		if(onlinePlayers == null)
+		{
+			onlinePlayers = new PlayerSet();
+			Object players = properties.remove(UniverseProperty.ONLINE_PLAYERS);
+			if(players instanceof Collection) onlinePlayers.addAll((Collection<String>)players);
+		}
+		return onlinePlayers;
+	}
+
+	/**
+	 * Records that a player joined this server.
+	 *
+	 * @param UUID the player's UUID
+	 * @throws IllegalArgumentException if the UUID isn't valid
+	 */
+	public synchronized void addOnlinePlayer(String UUID)
+	{
+		if(players().add(UUID)) playerView = null;
+	}
+
+	/**
+	 * Records that a player left this server.
+	 *
+	 * @param UUID the player's UUID
+	 * @throws IllegalArgumentException if the UUID isn't valid
+	 */
+	public synchronized void removeOnlinePlayer(String UUID)
+	{
+		if(players().remove(UUID)) playerView = null;
+	}
+
+	/**
+	 * Checks if a player is on this server.
+	 *
+	 * @param UUID the player's UUID
+	 * @return true if the player is on this server
+	 * @throws IllegalArgumentException if the UUID isn't valid
+	 */
+	public synchronized boolean hasPlayer(String UUID)
+	{
+		return players().contains(UUID);
+	}
+
+	@Override
+	public synchronized int getOnlinePlayerCount()
 	{
-		this.onlinePlayers = onlinePlayers;
+		//Names are only used for servers that never sent UUIDs
+		return players().isEmpty() && onlinePlayerNames != null ? onlinePlayerNames.size() : players().size();
 	}
 
 	@Override
-	public Map<ServerProperty, Object> getPropertyMap()
+	public synchronized Map<ServerProperty, Object> getPropertyMap()
 	{
-		return new HashMap<>(properties);
+		Map<ServerProperty, Object> map = properties.toMap();
+		map.put(UniverseProperty.ONLINE_PLAYERS, players().toList());
+		return map;
 	}
 
 	@Override
-	public <T> void setProperty(ServerProperty<T> key, T object) throws IllegalArgumentException
+	@SuppressWarnings("unchecked")
+	public synchronized <T> void setProperty(ServerProperty<T> key, T object) throws IllegalArgumentException
 	{
 		if(!key.getType().isInstance(object))
 		{
 			throw new IllegalArgumentException("Provided value does not match type " + key.getType().getName() + " (property: " + key.getName() + ")");
 		}
-		properties.put(key, object);
+		if(key == UniverseProperty.ONLINE_PLAYERS)
+		{
+			PlayerSet players = players();
+			players.clear();
+			players.addAll((Collection<String>)object);
+			playerView = null;
+			return;
+		}
+		properties.set(key, object);
+	}
+
+	/**
+	 * Removes a property's value, such as when the server it belongs to no longer has one.
+	 *
+	 * @param key the property
+	 */
+	public synchronized void removeProperty(ServerProperty<?> key)
+	{
+		if(key == UniverseProperty.ONLINE_PLAYERS)
+		{
+			players().clear();
+			playerView = null;
+			return;
+		}
+		properties.remove(key);
+	}
+
+	/**
+	 * Gets a number property without boxing it.
+	 *
+	 * @param key a Long, Integer or Boolean property
+	 * @param def the number to return if the property isn't set
+	 * @return the number (1 or 0 for booleans)
+	 */
+	public synchronized long getLong(ServerProperty<?> key, long def)
+	{
+		return properties.getLong(key, def);
+	}
+
+	/**
+	 * Sets a number property without boxing it, such as on every packet.
+	 *
+	 * @param key a Long, Integer or Boolean property
+	 * @param value the number (1 or 0 for booleans)
+	 */
+	public synchronized void setLong(ServerProperty<?> key, long value)
+	{
+		properties.setLong(key, value);
 	}
 
 	@Override
@@ -94,14 +237,18 @@ public class StoredServer implements UniverseServer
 	@SuppressWarnings("unchecked")
 	public <T> T getProperty(ServerProperty<T> key) throws ClassCastException
 	{
-		Object object = properties.get(key);
+		Object object;
+		synchronized(this)
+		{
+			object = key == UniverseProperty.ONLINE_PLAYERS ? players().toList() : properties.get(key);
+		}
 		try
 		{
 			return (T)object;
 		}
 		catch (ClassCastException e)
 		{
-			com.hyperfresh.mcuniverse.UniverseAPI.getInstance().getLogger().w("Tried to cast from " + object.getClass() + " to " + key.getType().getSimpleName());
+			UniverseAPI.getInstance().getLogger().w("Tried to cast from " + object.getClass() + " to " + key.getType().getSimpleName());
 			throw e;
 		}
 	}
@@ -202,12 +349,44 @@ public class StoredServer implements UniverseServer
 		return 0;
 	}
 
+	/**
+	 * Gets the players on this server.
+	 * The list is only made again after players join or leave, and players who were
+	 * already on the server keep the same StoredPlayer.
+	 *
+	 * @return an unmodifiable list of players
+	 */
 	@Override
-	public List<MinecraftPlayer> getOnlinePlayers()
+	public synchronized List<MinecraftPlayer> getOnlinePlayers()
 	{
-		List<MinecraftPlayer> players = new ArrayList<>();
-		onlinePlayers.stream().forEach((name) -> players.add(new StoredPlayer(this, name)));
-		return players;
+		if(playerView != null) return playerView;
+
+		Map<String, MinecraftPlayer> previous = new HashMap<>();
+		if(lastView != null)
+		{
+			for(MinecraftPlayer player: lastView) previous.put(player.getUUID(), player);
+		}
+
+		List<MinecraftPlayer> players = new ArrayList<>(getOnlinePlayerCount());
+		forEachOnlinePlayer((id) -> {
+			MinecraftPlayer player = previous.get(id);
+			players.add(player != null ? player : new StoredPlayer(this, id));
+		});
+		playerView = lastView = Collections.unmodifiableList(players);
+		return playerView;
+	}
+
+	@Override
+	public synchronized void forEachOnlinePlayer(Consumer<String> action)
+	{
+		if(players().isEmpty() && onlinePlayerNames != null)
+		{
+			onlinePlayerNames.forEach(action);
+		}
+		else
+		{
+			players().forEach((uuid) -> action.accept(uuid.toString()));
+		}
 	}
 
 	@Override
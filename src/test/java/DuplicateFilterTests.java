@@ -0,0 +1,106 @@
+import com.hyperfresh.mcuniverse.network.DuplicateFilter;
+import com.hyperfresh.mcuniverse.network.SequenceWindow;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class DuplicateFilterTests
+{
+	@Test
+	public void testWindow()
+	{
+		SequenceWindow window = new SequenceWindow(128);
+
+		assertTrue(window.accept(0));
+		assertTrue(window.accept(2));
+		assertFalse(window.accept(2));
+
+		//Late but inside the window
+		assertTrue(window.accept(1));
+		assertFalse(window.accept(1));
+
+		//A jump clears the slots it slides over, so new numbers reusing them are accepted
+		assertTrue(window.accept(1000));
+		assertTrue(window.accept(999));
+		assertTrue(window.accept(1000 - 127));
+		assertFalse(window.accept(1000 - 128));
+		assertFalse(window.accept(2));
+		assertFalse(window.accept(999));
+	}
+
+	@Test
+	public void testEveryNumberOnce()
+	{
+		SequenceWindow window = new SequenceWindow(1024);
+		int accepted = 0;
+
+		long time = System.currentTimeMillis();
+		for(long seq = 0; seq < 2000000; seq++)
+		{
+			//Every number arrives twice, the second time a little late
+			if(window.accept(seq)) accepted++;
+			if(seq >= 10 && window.accept(seq - 10)) accepted++;
+		}
+		System.out.println("Checked " + (4000000 - 10) + " sequence numbers, finished in " + (System.currentTimeMillis() - time) + " ms");
+
+		assertEquals(2000000, accepted);
+	}
+
+	@Test
+	public void testStamps()
+	{
+		DuplicateFilter sender = new DuplicateFilter(64);
+		DuplicateFilter receiver = new DuplicateFilter(64);
+
+		String message = sender.stamp("receiver", "{\"_package\":\"Packet\"}");
+		DuplicateFilter.Stamped stamped = DuplicateFilter.unstamp(message);
+		assertEquals("{\"_package\":\"Packet\"}", stamped.payload);
+		assertEquals(sender.getEpoch(), stamped.epoch);
+
+		assertFalse(stamped.broadcast);
+		assertTrue(receiver.accept("server", stamped.epoch, false, stamped.seq));
+		assertFalse(receiver.accept("server", stamped.epoch, false, stamped.seq));
+		assertTrue(receiver.accept("other", stamped.epoch, false, stamped.seq));
+		assertEquals(1, receiver.getDuplicateCount());
+
+		//A restarted server starts counting from 0 again
+		assertTrue(receiver.accept("server", stamped.epoch + 1, false, stamped.seq));
+		assertFalse(receiver.accept("server", stamped.epoch, false, stamped.seq + 1));
+
+		assertNull(DuplicateFilter.unstamp("{\"_package\":\"Packet\"}"));
+	}
+
+	/**
+	 * A broadcast sent through a slow transport shouldn't be too old once it arrives,
+	 * no matter how many messages went to single servers in the meantime.
+	 */
+	@Test
+	public void testSequencePerDestination()
+	{
+		DuplicateFilter sender = new DuplicateFilter(64);
+		DuplicateFilter receiver = new DuplicateFilter(64);
+
+		DuplicateFilter.Stamped broadcast = DuplicateFilter.unstamp(sender.stamp(null, "broadcast"));
+		assertTrue(broadcast.broadcast);
+		assertEquals("broadcast", broadcast.payload);
+
+		for(int i = 0; i < 1000; i++)
+		{
+			DuplicateFilter.Stamped direct = DuplicateFilter.unstamp(sender.stamp("receiver", "direct"));
+			assertTrue(receiver.accept("sender", direct.epoch, direct.broadcast, direct.seq));
+
+			//Numbers to other servers don't use up this receiver's window
+			sender.stamp("other", "direct");
+		}
+		assertEquals(1000, DuplicateFilter.unstamp(sender.stamp("other", "direct")).seq);
+
+		assertTrue(receiver.accept("sender", broadcast.epoch, broadcast.broadcast, broadcast.seq));
+		assertFalse(receiver.accept("sender", broadcast.epoch, broadcast.broadcast, broadcast.seq));
+	}
+}
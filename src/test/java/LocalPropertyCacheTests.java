@@ -0,0 +1,162 @@
+import com.hyperfresh.mcuniverse.server.RefreshPolicy;
+import com.hyperfresh.mcuniverse.server.ServerProperty;
+import com.hyperfresh.mcuniverse.server.ServerPropertyManager;
+import com.hyperfresh.mcuniverse.server.networked.local.LocalPropertyCache;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class LocalPropertyCacheTests
+{
+	/**
+	 * Counts up every time its value is worked out.
+	 */
+	private static class Counter implements ServerProperty<Integer>
+	{
+		final AtomicInteger count = new AtomicInteger();
+		final RefreshPolicy policy;
+
+		Counter(RefreshPolicy policy)
+		{
+			this.policy = policy;
+		}
+
+		public String getName() {return "Counter";}
+
+		public Class<Integer> getType() {return Integer.class;}
+
+		public Integer nextValue() {return count.incrementAndGet();}
+
+		public RefreshPolicy getRefreshPolicy() {return policy;}
+	}
+
+	private final List<Runnable> queued = new ArrayList<>();
+
+	private final List<ServerProperty> changed = new ArrayList<>();
+
+	//Refreshes wait in a list until the test runs them, like tasks waiting for the next tick (no timer, since none of these are PERIODIC)
+	private final LocalPropertyCache cache = new LocalPropertyCache(new ServerPropertyManager(), queued::add, null, changed::add);
+
+	private void runQueued()
+	{
+		List<Runnable> tasks = new ArrayList<>(queued);
+		queued.clear();
+		tasks.forEach(Runnable::run);
+	}
+
+	@Test
+	public void testConstant()
+	{
+		Counter counter = new Counter(RefreshPolicy.constant());
+
+		assertEquals(1, (int)cache.get(counter));
+		assertEquals(1, (int)cache.get(counter));
+
+		cache.invalidate(counter);
+		assertTrue(queued.isEmpty());
+
+		cache.invalidateAll();
+		runQueued();
+		assertEquals(2, (int)cache.get(counter));
+		assertEquals(1, changed.size());
+	}
+
+	@Test
+	public void testOnChange()
+	{
+		Counter counter = new Counter(RefreshPolicy.onChange());
+
+		assertEquals(1, (int)cache.get(counter));
+
+		//Invalidated twice before the refresh runs, but only worked out once
+		cache.invalidate(counter);
+		cache.invalidate(counter);
+		assertEquals(1, queued.size());
+		assertEquals(1, (int)cache.get(counter));
+
+		runQueued();
+		assertEquals(2, (int)cache.get(counter));
+		assertEquals(2, counter.count.get());
+	}
+
+	@Test
+	public void testOnDemand() throws InterruptedException
+	{
+		Counter counter = new Counter(RefreshPolicy.expireAfter(50));
+
+		assertEquals(1, (int)cache.get(counter));
+		assertTrue(queued.isEmpty());
+
+		//Expired, but the read still gets the old value
+		Thread.sleep(60);
+		assertEquals(1, (int)cache.get(counter));
+		runQueued();
+		assertEquals(2, (int)cache.get(counter));
+
+		Counter uncached = new Counter(RefreshPolicy.expireAfter(0));
+		assertEquals(1, (int)cache.get(uncached));
+		assertEquals(2, (int)cache.get(uncached));
+	}
+
+	@Test
+	public void testPeriodic() throws InterruptedException
+	{
+		Counter counter = new Counter(RefreshPolicy.every(20));
+
+		//Refreshes run right away on the timer's thread
+		ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+		LocalPropertyCache cache = new LocalPropertyCache(new ServerPropertyManager(), Runnable::run, timer, property -> {});
+		assertEquals(1, (int)cache.get(counter));
+		Thread.sleep(110);
+		assertTrue(cache.get(counter) >= 3);
+
+		cache.close();
+		timer.shutdownNow();
+	}
+
+	@Test
+	public void testThroughput()
+	{
+		//Like ONLINE_PLAYERS, which copies every player each time
+		ServerProperty<List<String>> players = new ServerProperty<List<String>>()
+		{
+			@SuppressWarnings("unchecked")
+			public Class<List<String>> getType() {return (Class<List<String>>)(Class<?>)List.class;}
+
+			public String getName() {return "Players";}
+
+			public List<String> nextValue()
+			{
+				List<String> list = new ArrayList<>();
+				for(int i = 0; i < 200; i++) list.add("Player" + i);
+				return list;
+			}
+
+			public RefreshPolicy getRefreshPolicy() {return RefreshPolicy.onChange();}
+		};
+
+		long time = System.currentTimeMillis();
+		for(int i = 0; i < 1000000; i++)
+		{
+			cache.get(players);
+		}
+		System.out.println("Read a cached 200 player list 1000000 times, finished in " + (System.currentTimeMillis() - time) + " ms");
+
+		time = System.currentTimeMillis();
+		for(int i = 0; i < 10000; i++)
+		{
+			players.nextValue();
+		}
+		System.out.println("Worked it out 10000 times, finished in " + (System.currentTimeMillis() - time) + " ms");
+	}
+}
@@ -0,0 +1,138 @@
+import com.hyperfresh.mcuniverse.network.loopback.LoopbackConnection;
+import com.hyperfresh.mcuniverse.network.loopback.LoopbackNetwork;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class LoopbackNetworkTests
+{
+	private static final int SERVERS = 200;
+
+	/**
+	 * Every server broadcasts a discover, and every server that recieves one (including the sender) replies to the sender,
+	 * like UniverseEventPoster does with PacketInServerDiscover.
+	 */
+	@Test
+	public void testDiscoveryStorm() throws InterruptedException
+	{
+		final LoopbackNetwork network = new LoopbackNetwork();
+		network.setLatency(1);
+		network.setJitter(2);
+
+		final int expected = SERVERS * SERVERS;
+		final CountDownLatch replies = new CountDownLatch(expected);
+
+		List<LoopbackConnection> connections = new ArrayList<>();
+		for(int i = 0; i < SERVERS; i++)
+		{
+			final String name = "server" + i;
+			connections.add(network.join(name, (server, channel, message) ->
+			{
+				if(channel.equals("discover.in"))
+				{
+					network.getConnection(name).sendMessage(server, "discover.out", name);
+				}
+				else
+				{
+					replies.countDown();
+				}
+			}));
+		}
+		connections.forEach(LoopbackConnection::connect);
+
+		long time = System.currentTimeMillis();
+		for(LoopbackConnection connection: connections)
+		{
+			connection.broadcastMessage("discover.in", connection.getServerIdentifier());
+		}
+
+		assertTrue("Discovery didn't finish", replies.await(30, TimeUnit.SECONDS));
+		System.out.println("Loopback discovery across " + SERVERS + " servers (" + network.getDeliveredCount() + " messages) finished in " + (System.currentTimeMillis() - time) + " ms");
+
+		network.shutdown();
+	}
+
+	/**
+	 * Broadcasts reach the sender too, like they do through Lilypad.
+	 */
+	@Test
+	public void testBroadcast() throws InterruptedException
+	{
+		LoopbackNetwork network = new LoopbackNetwork(1);
+
+		final CountDownLatch recievedA = new CountDownLatch(1);
+		final CountDownLatch recievedB = new CountDownLatch(1);
+		LoopbackConnection a = network.join("a", (server, channel, message) -> recievedA.countDown());
+		LoopbackConnection b = network.join("b", (server, channel, message) -> recievedB.countDown());
+		a.connect();
+		b.connect();
+
+		a.broadcastMessage("test", "message");
+		assertTrue(recievedA.await(5, TimeUnit.SECONDS));
+		assertTrue(recievedB.await(5, TimeUnit.SECONDS));
+
+		network.shutdown();
+	}
+
+	@Test
+	public void testLoss() throws InterruptedException
+	{
+		LoopbackNetwork network = new LoopbackNetwork(1);
+		network.setLoss(1);
+
+		final CountDownLatch recieved = new CountDownLatch(1);
+		LoopbackConnection a = network.join("a", (server, channel, message) -> {});
+		LoopbackConnection b = network.join("b", (server, channel, message) -> recieved.countDown());
+		a.connect();
+		b.connect();
+
+		for(int i = 0; i < 100; i++)
+		{
+			a.sendMessage("b", "test", "message");
+		}
+
+		assertTrue(!recieved.await(100, TimeUnit.MILLISECONDS));
+		assertEquals(100, network.getLostCount());
+
+		network.shutdown();
+	}
+
+	@Test
+	public void testOrdering() throws InterruptedException
+	{
+		LoopbackNetwork network = new LoopbackNetwork();
+
+		final List<String> messages = new ArrayList<>();
+		final CountDownLatch recieved = new CountDownLatch(1000);
+		LoopbackConnection a = network.join("a", (server, channel, message) -> {});
+		LoopbackConnection b = network.join("b", (server, channel, message) ->
+		{
+			messages.add(message);
+			recieved.countDown();
+		});
+		a.connect();
+		b.connect();
+
+		for(int i = 0; i < 1000; i++)
+		{
+			a.sendMessage("b", "test", Integer.toString(i));
+		}
+
+		assertTrue(recieved.await(10, TimeUnit.SECONDS));
+		for(int i = 0; i < 1000; i++)
+		{
+			assertEquals(Integer.toString(i), messages.get(i));
+		}
+
+		network.shutdown();
+	}
+}
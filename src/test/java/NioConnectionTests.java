@@ -0,0 +1,209 @@
+import com.hyperfresh.mcuniverse.network.MessageReceiver;
+import com.hyperfresh.mcuniverse.network.loopback.LoopbackConnection;
+import com.hyperfresh.mcuniverse.network.loopback.LoopbackNetwork;
+import com.hyperfresh.mcuniverse.network.nio.NioConnection;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the direct connection over localhost with the loopback network.
+ * (The Lilypad connection needs a running Connect server, so it isn't compared here)
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class NioConnectionTests
+{
+	private static final int MESSAGES = 100000;
+
+	private static final int ROUND_TRIPS = 5000;
+
+	private static NioConnection create(String id, List<InetSocketAddress> seeds, MessageReceiver receiver)
+	{
+		return create(id, "secret", seeds, receiver);
+	}
+
+	private static NioConnection create(String id, String secret, List<InetSocketAddress> seeds, MessageReceiver receiver)
+	{
+		NioConnection connection = new NioConnection(id, secret, new InetSocketAddress("127.0.0.1", 0), seeds, null, receiver);
+		connection.setRedialInterval(100);
+		connection.connect();
+		return connection;
+	}
+
+	private static void awaitPeers(NioConnection connection, int peers) throws InterruptedException
+	{
+		long deadline = System.currentTimeMillis() + 10000;
+		while(connection.getPeers().size() < peers)
+		{
+			assertTrue(connection.getServerIdentifier() + " didn't find its peers", System.currentTimeMillis() < deadline);
+			Thread.sleep(10);
+		}
+	}
+
+	/**
+	 * B and C only know about A, but should still find each other.
+	 */
+	@Test
+	public void testMesh() throws InterruptedException
+	{
+		NioConnection a = create("a", Collections.emptyList(), (server, channel, message) -> {});
+		List<InetSocketAddress> seeds = Collections.singletonList(new InetSocketAddress("127.0.0.1", a.getLocalPort()));
+		NioConnection b = create("b", seeds, (server, channel, message) -> {});
+		NioConnection c = create("c", seeds, (server, channel, message) -> {});
+
+		awaitPeers(a, 2);
+		awaitPeers(b, 2);
+		awaitPeers(c, 2);
+
+		//Every pair should end up with exactly one connection
+		Thread.sleep(200);
+		assertEquals(2, a.getPeers().size());
+		assertEquals(2, b.getPeers().size());
+		assertEquals(2, c.getPeers().size());
+
+		final CountDownLatch recieved = new CountDownLatch(2);
+		NioConnection d = create("d", seeds, (server, channel, message) -> recieved.countDown());
+		awaitPeers(d, 3);
+		awaitPeers(b, 3);
+		awaitPeers(c, 3);
+		b.sendMessage("d", "test", "hello");
+		c.sendMessage("d", "test", "hello");
+		assertTrue(recieved.await(5, TimeUnit.SECONDS));
+
+		a.disconnect();
+		b.disconnect();
+		c.disconnect();
+		d.disconnect();
+	}
+
+	/**
+	 * A server without the shared secret is disconnected, and never learns about the other peers.
+	 */
+	@Test
+	public void testWrongSecret() throws InterruptedException
+	{
+		NioConnection a = create("a", Collections.emptyList(), (server, channel, message) -> {});
+		List<InetSocketAddress> seeds = Collections.singletonList(new InetSocketAddress("127.0.0.1", a.getLocalPort()));
+		NioConnection b = create("b", seeds, (server, channel, message) -> {});
+		NioConnection c = create("c", "wrong", seeds, (server, channel, message) -> {});
+		awaitPeers(a, 1);
+		awaitPeers(b, 1);
+
+		Thread.sleep(500);
+		assertEquals(Collections.singleton("b"), a.getPeers());
+		assertEquals(Collections.singleton("a"), b.getPeers());
+		assertTrue(c.getPeers().isEmpty());
+
+		a.disconnect();
+		b.disconnect();
+		c.disconnect();
+	}
+
+	/**
+	 * Connecting again right after disconnecting shouldn't be undone by the old selector thread.
+	 */
+	@Test
+	public void testReconnect() throws InterruptedException
+	{
+		NioConnection a = create("a", Collections.emptyList(), (server, channel, message) -> {});
+		for(int i = 0; i < 20; i++)
+		{
+			a.disconnect();
+			a.connect();
+		}
+		Thread.sleep(100);
+		assertTrue(a.getLocalPort() > 0);
+
+		NioConnection b = create("b", Collections.singletonList(new InetSocketAddress("127.0.0.1", a.getLocalPort())), (server, channel, message) -> {});
+		awaitPeers(a, 1);
+		a.disconnect();
+		b.disconnect();
+	}
+
+	@Test
+	public void testThroughput() throws InterruptedException
+	{
+		final List<String> messages = new ArrayList<>();
+		final CountDownLatch recieved = new CountDownLatch(MESSAGES);
+		NioConnection a = create("a", Collections.emptyList(), (server, channel, message) -> {});
+		NioConnection b = create("b", Collections.singletonList(new InetSocketAddress("127.0.0.1", a.getLocalPort())), (server, channel, message) ->
+		{
+			messages.add(message);
+			recieved.countDown();
+		});
+		awaitPeers(a, 1);
+
+		long time = System.currentTimeMillis();
+		for(int i = 0; i < MESSAGES; i++)
+		{
+			a.sendMessage("b", "switchcore.packet", Integer.toString(i));
+		}
+		assertTrue(recieved.await(30, TimeUnit.SECONDS));
+		System.out.println("Direct: " + MESSAGES + " messages finished in " + (System.currentTimeMillis() - time) + " ms");
+
+		for(int i = 0; i < MESSAGES; i++)
+		{
+			assertEquals(Integer.toString(i), messages.get(i));
+		}
+		a.disconnect();
+		b.disconnect();
+
+		LoopbackNetwork network = new LoopbackNetwork(1);
+		final CountDownLatch loopbackRecieved = new CountDownLatch(MESSAGES);
+		LoopbackConnection c = network.join("c", (server, channel, message) -> {});
+		network.join("d", (server, channel, message) -> loopbackRecieved.countDown()).connect();
+		c.connect();
+
+		time = System.currentTimeMillis();
+		for(int i = 0; i < MESSAGES; i++)
+		{
+			c.sendMessage("d", "switchcore.packet", Integer.toString(i));
+		}
+		assertTrue(loopbackRecieved.await(30, TimeUnit.SECONDS));
+		System.out.println("Loopback: " + MESSAGES + " messages finished in " + (System.currentTimeMillis() - time) + " ms");
+
+		network.shutdown();
+	}
+
+	/**
+	 * Request/response round trips, like a ping or a discover reply.
+	 */
+	@Test
+	public void testRoundTrips() throws InterruptedException
+	{
+		final AtomicReference<NioConnection> b = new AtomicReference<>();
+		final CountDownLatch done = new CountDownLatch(1);
+		final NioConnection[] a = new NioConnection[1];
+
+		a[0] = create("a", Collections.emptyList(), (server, channel, message) ->
+		{
+			int i = Integer.parseInt(message);
+			if(i == ROUND_TRIPS) done.countDown();
+			else a[0].sendMessage(server, "ping", Integer.toString(i + 1));
+		});
+		b.set(create("b", Collections.singletonList(new InetSocketAddress("127.0.0.1", a[0].getLocalPort())), (server, channel, message) ->
+			b.get().sendMessage(server, "pong", message)
+		));
+		awaitPeers(a[0], 1);
+		awaitPeers(b.get(), 1);
+
+		long time = System.nanoTime();
+		a[0].sendMessage("b", "ping", "0");
+		assertTrue(done.await(30, TimeUnit.SECONDS));
+		long elapsed = System.nanoTime() - time;
+		System.out.println("Direct: " + ROUND_TRIPS + " round trips finished in " + elapsed / 1000000 + " ms (" + elapsed / ROUND_TRIPS / 1000 + " us each)");
+
+		a[0].disconnect();
+		b.get().disconnect();
+	}
+}
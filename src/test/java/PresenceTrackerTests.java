@@ -0,0 +1,151 @@
+import com.hyperfresh.mcuniverse.network.PresenceTracker;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class PresenceTrackerTests
+{
+	private final List<String> requested = new ArrayList<>();
+
+	private final List<String> applied = new ArrayList<>();
+
+	private final PresenceTracker tracker = new PresenceTracker(requested::add, 60000, 4);
+
+	private void change(long epoch, long seq)
+	{
+		tracker.onChange("server", epoch, seq, () -> applied.add(epoch + ":" + seq));
+	}
+
+	private void list(long epoch, long seq)
+	{
+		tracker.onList("server", epoch, seq, () -> applied.add(epoch + ":list" + seq));
+	}
+
+	@Test
+	public void testInOrder()
+	{
+		list(1, 0);
+		change(1, 1);
+		change(1, 2);
+		change(1, 2);
+		assertEquals(Arrays.asList("1:list0", "1:1", "1:2"), applied);
+		assertTrue(requested.isEmpty());
+		assertTrue(tracker.isTracked("server"));
+
+		//Numbered 0 by a server that doesn't number them, so applied right away
+		tracker.onChange("other", 1, 0, () -> applied.add("other"));
+		assertEquals("other", applied.get(3));
+		assertFalse(tracker.isTracked("other"));
+	}
+
+	@Test
+	public void testLate()
+	{
+		list(1, 0);
+
+		//2 and 3 wait behind 1, and the list is asked for only once
+		change(1, 2);
+		change(1, 3);
+		assertEquals(Arrays.asList("1:list0"), applied);
+		assertEquals(1, requested.size());
+
+		change(1, 1);
+		assertEquals(Arrays.asList("1:list0", "1:1", "1:2", "1:3"), applied);
+	}
+
+	@Test
+	public void testMissed()
+	{
+		list(1, 0);
+		change(1, 3);
+		change(1, 5);
+		assertEquals(1, requested.size());
+
+		//The list covers up to 4, so 3 is dropped and 5 follows it
+		list(1, 4);
+		assertEquals(Arrays.asList("1:list0", "1:list4", "1:5"), applied);
+
+		//An older list is ignored
+		list(1, 2);
+		assertEquals(3, applied.size());
+	}
+
+	@Test
+	public void testRestart()
+	{
+		list(1, 0);
+		change(1, 1);
+
+		//Nothing from the new epoch is applied until its list arrives
+		change(2, 1);
+		assertEquals(1, requested.size());
+		assertEquals(2, applied.size());
+
+		list(2, 0);
+		assertEquals(Arrays.asList("1:list0", "1:1", "2:list0", "2:1"), applied);
+
+		//Anything still arriving from before the restart is ignored
+		change(1, 2);
+		list(1, 2);
+		assertEquals(4, applied.size());
+	}
+
+	@Test
+	public void testForget()
+	{
+		list(1, 0);
+		change(1, 1);
+
+		//Forgotten when the server discovers again, so it's untracked until its new list arrives
+		tracker.forgetPeer("server");
+		assertFalse(tracker.isTracked("server"));
+
+		//A leave from before the restart that arrives late waits for the list, which replaces it
+		change(1, 2);
+		assertEquals(1, requested.size());
+		list(2, 0);
+		assertEquals(Arrays.asList("1:list0", "1:1", "2:list0"), applied);
+		assertTrue(tracker.isTracked("server"));
+	}
+
+	@Test
+	public void testHeldLimit()
+	{
+		list(1, 0);
+		for(long seq = 2; seq < 10; seq++)
+		{
+			change(1, seq);
+		}
+
+		//Only the first 4 are held; the rest have to come from the next list
+		change(1, 1);
+		assertEquals(Arrays.asList("1:list0", "1:1", "1:2", "1:3", "1:4", "1:5"), applied);
+	}
+
+	@Test
+	public void testThroughput()
+	{
+		PresenceTracker tracker = new PresenceTracker(server -> {}, 60000, 1024);
+		tracker.onList("server", 1, 0, () -> {});
+		final int[] count = {0};
+		Runnable apply = () -> count[0]++;
+
+		long time = System.currentTimeMillis();
+		for(long seq = 1; seq <= 2000000; seq++)
+		{
+			tracker.onChange("server", 1, seq, apply);
+		}
+		System.out.println("Applied 2000000 joins and leaves, finished in " + (System.currentTimeMillis() - time) + " ms");
+
+		assertEquals(2000000, count[0]);
+	}
+}
@@ -0,0 +1,146 @@
+import com.hyperfresh.mcuniverse.network.PropertyReplicator;
+import com.hyperfresh.mcuniverse.packets.Packet;
+import com.hyperfresh.mcuniverse.packets.PacketOutPropertyChanges;
+import com.hyperfresh.mcuniverse.server.RefreshPolicy;
+import com.hyperfresh.mcuniverse.server.ServerProperty;
+import com.hyperfresh.mcuniverse.server.ServerPropertyManager;
+import com.hyperfresh.mcuniverse.server.networked.local.LocalPropertyCache;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class PropertyReplicatorTests
+{
+	/**
+	 * A property whose value the test sets. Worked out on every read, so the cache never has to be refreshed.
+	 */
+	public static class Motd implements ServerProperty<String>
+	{
+		String value = null;
+
+		public String getName() {return "Motd";}
+
+		public Class<String> getType() {return String.class;}
+
+		public String nextValue() {return value;}
+
+		public RefreshPolicy getRefreshPolicy() {return RefreshPolicy.expireAfter(0);}
+	}
+
+	private final ServerPropertyManager manager = new ServerPropertyManager();
+
+	private final Motd motd = (Motd)manager.getProperty(Motd.class);
+
+	private final List<PacketOutPropertyChanges> pushed = new ArrayList<>();
+
+	private final List<String> subscribed = new ArrayList<>();
+
+	private final PropertyReplicator replicator = new PropertyReplicator(
+		manager,
+		new LocalPropertyCache(manager, Runnable::run, null, property -> {}),
+		property -> property == motd,
+		(servers, packet) -> pushed.add((PacketOutPropertyChanges)packet),
+		subscribed::add,
+		60000
+	);
+
+	@Test
+	public void testFlush()
+	{
+		motd.value = "Welcome";
+		replicator.addSubscriber("b");
+		replicator.flush();
+
+		//The new subscriber gets every value
+		assertEquals(1, pushed.size());
+		assertTrue(pushed.get(0).isFull());
+		assertEquals("Welcome", pushed.get(0).getProperties().get(motd));
+
+		//Nothing changed, so nothing is sent
+		replicator.flush();
+		assertEquals(1, pushed.size());
+
+		motd.value = "Maintenance";
+		replicator.flush();
+		assertEquals(2, pushed.size());
+		assertFalse(pushed.get(1).isFull());
+		assertEquals(pushed.get(0).getSequence() + 1, pushed.get(1).getSequence());
+		assertEquals("Maintenance", pushed.get(1).getProperties().get(motd));
+
+		//A value going away is pushed as a removal
+		motd.value = null;
+		replicator.flush();
+		assertEquals(3, pushed.size());
+		assertNull(pushed.get(2).getProperties().get(motd));
+		assertEquals(Collections.singletonList(motd), pushed.get(2).getRemoved(manager));
+
+		//A later subscriber's full set leaves it out
+		replicator.addSubscriber("c");
+		replicator.flush();
+		assertEquals(4, pushed.size());
+		assertTrue(pushed.get(3).isFull());
+		assertEquals(0, pushed.get(3).getProperties().size());
+	}
+
+	@Test
+	public void testChanges()
+	{
+		List<String> applied = new ArrayList<>();
+
+		//Change sets before the first full set can't be applied
+		replicator.onChanges("a", 1, 1, false, () -> applied.add("1"));
+		assertTrue(applied.isEmpty());
+		assertEquals(1, subscribed.size());
+
+		replicator.onChanges("a", 1, 1, true, () -> applied.add("full1"));
+		replicator.onChanges("a", 1, 2, false, () -> applied.add("2"));
+		replicator.onChanges("a", 1, 2, false, () -> applied.add("2"));
+		assertEquals(Arrays.asList("full1", "2"), applied);
+
+		//3 was missed, so 4 waits for the next full set
+		replicator.onChanges("a", 1, 4, false, () -> applied.add("4"));
+		assertEquals(2, applied.size());
+
+		replicator.onChanges("a", 1, 4, true, () -> applied.add("full4"));
+		assertEquals("full4", applied.get(2));
+
+		//The server restarted; what it sent before can't be built on
+		replicator.onChanges("a", 2, 1, false, () -> applied.add("restart1"));
+		replicator.onChanges("a", 1, 5, false, () -> applied.add("5"));
+		assertEquals(3, applied.size());
+
+		replicator.onChanges("a", 2, 0, true, () -> applied.add("restart-full"));
+		replicator.onChanges("a", 2, 1, false, () -> applied.add("restart1"));
+		assertEquals(Arrays.asList("full1", "2", "full4", "restart-full", "restart1"), applied);
+	}
+
+	@Test
+	public void testResubscribe()
+	{
+		List<String> applied = new ArrayList<>();
+		replicator.onChanges("a", 1, 1, true, () -> applied.add("full1"));
+
+		//Once resubscribed, change sets wait for the full set it asked for
+		replicator.resubscribe("a");
+		assertEquals(Collections.singletonList("a"), subscribed);
+		replicator.onChanges("a", 1, 2, false, () -> applied.add("2"));
+		assertEquals(1, applied.size());
+
+		//Asked again only after the timeout
+		assertEquals(1, subscribed.size());
+
+		replicator.onChanges("a", 1, 2, true, () -> applied.add("full2"));
+		assertEquals(Arrays.asList("full1", "full2"), applied);
+	}
+}
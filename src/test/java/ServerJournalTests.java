@@ -0,0 +1,157 @@
+import com.hyperfresh.mcuniverse.database.ServerJournal;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Measures how fast servers can be journaled and loaded again.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class ServerJournalTests
+{
+	private static final int SERVERS = 5000;
+
+	private static String data(int server, int revision)
+	{
+		StringBuilder players = new StringBuilder();
+		for(int i = 0; i < 20; i++)
+		{
+			players.append(i == 0 ? "" : ",").append("\"Player").append(i).append('"');
+		}
+		return "{\"name\":\"Server " + server + "\",\"properties\":{\"MAX_PLAYERS\":100,\"STATUS\":\"ONLINE\",\"LAST_ONLINE\":" + revision + ",\"WHITELISTED_PLAYERS\":[" + players + "]}}";
+	}
+
+	private static File createDirectory() throws IOException
+	{
+		File directory = Files.createTempDirectory("universe-journal").toFile();
+		directory.deleteOnExit();
+		return directory;
+	}
+
+	@Test
+	public void testThroughput() throws IOException
+	{
+		File directory = createDirectory();
+		ServerJournal journal = new ServerJournal(directory, false);
+		journal.load();
+
+		//Every server changes 10 times, journaled in batches like the writer thread would
+		long time = System.currentTimeMillis();
+		for(int revision = 0; revision < 10; revision++)
+		{
+			Map<String, String> batch = new LinkedHashMap<>();
+			for(int server = 0; server < SERVERS; server++)
+			{
+				batch.put("server" + server, data(server, revision));
+				if(batch.size() == 100)
+				{
+					journal.append(batch);
+					batch.clear();
+				}
+			}
+			journal.append(batch);
+		}
+		System.out.println("Journaled " + SERVERS * 10 + " changes, finished in " + (System.currentTimeMillis() - time) + " ms");
+
+		time = System.currentTimeMillis();
+		Map<String, String> loaded = new ServerJournal(directory, false).load();
+		System.out.println("Replayed " + SERVERS * 10 + " journal records, finished in " + (System.currentTimeMillis() - time) + " ms");
+		assertEquals(SERVERS, loaded.size());
+		assertEquals(data(7, 9), loaded.get("server7"));
+
+		time = System.currentTimeMillis();
+		journal.compact(loaded);
+		System.out.println("Compacted " + SERVERS + " servers, finished in " + (System.currentTimeMillis() - time) + " ms");
+		assertEquals(0, journal.getJournalSize());
+		journal.close();
+
+		time = System.currentTimeMillis();
+		ServerJournal reopened = new ServerJournal(directory, false);
+		loaded = reopened.load();
+		System.out.println("Loaded " + SERVERS + " servers from a snapshot, finished in " + (System.currentTimeMillis() - time) + " ms");
+		assertEquals(SERVERS, loaded.size());
+		assertEquals(data(7, 9), loaded.get("server7"));
+		reopened.close();
+	}
+
+	@Test
+	public void testTornWrite() throws IOException
+	{
+		File directory = createDirectory();
+		ServerJournal journal = new ServerJournal(directory, false);
+		journal.load();
+
+		Map<String, String> batch = new LinkedHashMap<>();
+		batch.put("a", data(1, 1));
+		batch.put("b", data(2, 1));
+		journal.append(batch);
+		batch.clear();
+		batch.put("a", null);
+		journal.append(batch);
+		journal.close();
+
+		//Cut the last record short, as if the server crashed halfway through writing it
+		File file = new File(directory, "servers.journal");
+		try(RandomAccessFile raf = new RandomAccessFile(file, "rw"))
+		{
+			raf.setLength(raf.length() - 1);
+		}
+
+		journal = new ServerJournal(directory, false);
+		Map<String, String> loaded = journal.load();
+		assertEquals(2, loaded.size());
+		assertEquals(2, journal.getJournalSize());
+
+		//New records go where the broken one was
+		batch.clear();
+		batch.put("c", data(3, 1));
+		journal.append(batch);
+		journal.close();
+
+		assertEquals(3, new ServerJournal(directory, false).load().size());
+	}
+
+	@Test
+	public void testStaleJournal() throws IOException
+	{
+		File directory = createDirectory();
+		ServerJournal journal = new ServerJournal(directory, false);
+		journal.load();
+
+		Map<String, String> batch = new LinkedHashMap<>();
+		batch.put("a", data(1, 1));
+		journal.append(batch);
+		journal.close();
+
+		//Keep the journal as it was before compacting, as if the server crashed before emptying it
+		File file = new File(directory, "servers.journal");
+		byte[] old = Files.readAllBytes(file.toPath());
+
+		journal = new ServerJournal(directory, false);
+		Map<String, String> loaded = journal.load();
+		loaded.remove("a");
+		journal.compact(loaded);
+		journal.close();
+		Files.write(file.toPath(), old);
+
+		journal = new ServerJournal(directory, false);
+		assertEquals(0, journal.load().size());
+		assertEquals(0, journal.getJournalSize());
+		journal.close();
+
+		//Compacting works without loading first
+		journal = new ServerJournal(directory, false);
+		batch.put("b", data(2, 1));
+		journal.compact(batch);
+		journal.close();
+		assertEquals(2, new ServerJournal(directory, false).load().size());
+	}
+}
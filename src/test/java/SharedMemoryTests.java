@@ -0,0 +1,108 @@
+import com.hyperfresh.mcuniverse.network.nio.Frames;
+import com.hyperfresh.mcuniverse.network.shm.SharedMemoryConnection;
+import com.hyperfresh.mcuniverse.network.shm.SharedRing;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class SharedMemoryTests
+{
+	private static final int ROUND_TRIPS = 20000;
+
+	private static File createDirectory() throws IOException
+	{
+		File directory = Files.createTempDirectory("universe").toFile();
+		directory.deleteOnExit();
+		return directory;
+	}
+
+	/**
+	 * Pushes frames of different sizes through a small ring, so it wraps around many times.
+	 */
+	@Test
+	public void testRingWrapping() throws Exception
+	{
+		File file = new File(createDirectory(), "test.ring");
+		final SharedRing producer = SharedRing.open(file, 1024);
+		final SharedRing consumer = SharedRing.open(file, 1024);
+		final int frames = 100000;
+
+		Thread thread = new Thread(() ->
+		{
+			for(int i = 0; i < frames; i++)
+			{
+				ByteBuffer frame = Frames.message("test", Integer.toString(i) + new String(new char[i % 200]));
+				while(!producer.offer(frame)) Thread.yield();
+			}
+		});
+		thread.start();
+
+		for(int i = 0; i < frames; i++)
+		{
+			byte[] frame;
+			while((frame = consumer.poll()) == null) Thread.yield();
+
+			ByteBuffer buffer = ByteBuffer.wrap(frame);
+			assertEquals(Frames.MESSAGE, buffer.get());
+			assertEquals("test", Frames.getShortString(buffer));
+			assertEquals(Integer.toString(i) + new String(new char[i % 200]), Frames.getLongString(buffer));
+		}
+		thread.join();
+		assertTrue(consumer.isEmpty());
+
+		producer.close();
+		consumer.close();
+	}
+
+	@Test
+	public void testRoundTrips() throws Exception
+	{
+		File directory = createDirectory();
+		final CountDownLatch done = new CountDownLatch(1);
+		final AtomicReference<SharedMemoryConnection> a = new AtomicReference<>();
+		final AtomicReference<SharedMemoryConnection> b = new AtomicReference<>();
+
+		a.set(new SharedMemoryConnection("a", directory, 1 << 16, null, (server, channel, message) ->
+		{
+			int i = Integer.parseInt(message);
+			if(i == ROUND_TRIPS) done.countDown();
+			else a.get().sendMessage(server, "ping", Integer.toString(i + 1));
+		}));
+		b.set(new SharedMemoryConnection("b", directory, 1 << 16, null, (server, channel, message) ->
+			b.get().sendMessage(server, "pong", message)
+		));
+		a.get().setRefreshInterval(50);
+		b.get().setRefreshInterval(50);
+		a.get().connect();
+		b.get().connect();
+
+		long deadline = System.currentTimeMillis() + 5000;
+		while(!a.get().isLocal("b") || !b.get().isLocal("a"))
+		{
+			assertTrue("Servers didn't find each other", System.currentTimeMillis() < deadline);
+			Thread.sleep(10);
+		}
+
+		long time = System.nanoTime();
+		a.get().sendMessage("b", "ping", "0");
+		assertTrue(done.await(30, TimeUnit.SECONDS));
+		long elapsed = System.nanoTime() - time;
+		System.out.println("Shared memory: " + ROUND_TRIPS + " round trips finished in " + elapsed / 1000000 + " ms (" + elapsed / ROUND_TRIPS / 1000.0 + " us each)");
+
+		assertEquals(0, a.get().getFallbackCount());
+		a.get().disconnect();
+		b.get().disconnect();
+	}
+}
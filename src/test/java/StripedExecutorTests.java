@@ -0,0 +1,138 @@
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.hyperfresh.mcuniverse.network.StripedExecutor;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares handling recieved messages on one thread (like the Lilypad callback thread)
+ * with handling them on striped threads.
+ *
+ * @author Octopod - octopodsquad@gmail.com
+ */
+public class StripedExecutorTests
+{
+	private static final int SENDERS = 32;
+
+	private static final int MESSAGES = 2000;
+
+	private static final String PACKET;
+
+	static
+	{
+		StringBuilder players = new StringBuilder();
+		for(int i = 0; i < 50; i++)
+		{
+			players.append(i == 0 ? "" : ",").append("\"Player").append(i).append('"');
+		}
+		PACKET = "{\"type\":\"PacketOutServerDiscover\",\"server\":{\"name\":\"Server\",\"players\":[" + players + "]},\"seq\":%d}";
+
+		//Warm up, so whichever test runs first isn't slower for it
+		for(int i = 0; i < 20000; i++)
+		{
+			new JsonParser().parse(String.format(PACKET, i));
+		}
+	}
+
+	/**
+	 * Decodes a message like onMessageInbound would, and records its sequence number.
+	 */
+	private static void handle(List<List<Integer>> recieved, int sender, String message)
+	{
+		JsonObject packet = new JsonParser().parse(message).getAsJsonObject();
+		int seq = packet.get("seq").getAsInt();
+		synchronized(recieved.get(sender))
+		{
+			recieved.get(sender).add(seq);
+		}
+	}
+
+	private static List<List<Integer>> createRecieved()
+	{
+		List<List<Integer>> recieved = new ArrayList<>();
+		for(int i = 0; i < SENDERS; i++)
+		{
+			recieved.add(new ArrayList<>());
+		}
+		return recieved;
+	}
+
+	private static void assertOrdered(List<List<Integer>> recieved)
+	{
+		for(List<Integer> messages: recieved)
+		{
+			assertEquals(MESSAGES, messages.size());
+			for(int i = 0; i < MESSAGES; i++)
+			{
+				assertEquals(i, (int)messages.get(i));
+			}
+		}
+	}
+
+	@Test
+	public void testSingleThread() throws InterruptedException
+	{
+		final List<List<Integer>> recieved = createRecieved();
+		final CountDownLatch done = new CountDownLatch(SENDERS * MESSAGES);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+
+		long time = System.currentTimeMillis();
+		for(int i = 0; i < MESSAGES; i++)
+		{
+			for(int sender = 0; sender < SENDERS; sender++)
+			{
+				final int s = sender;
+				final String message = String.format(PACKET, i);
+				executor.execute(() ->
+				{
+					handle(recieved, s, message);
+					done.countDown();
+				});
+			}
+		}
+		assertTrue(done.await(60, TimeUnit.SECONDS));
+		System.out.println("Single thread: " + SENDERS * MESSAGES + " messages finished in " + (System.currentTimeMillis() - time) + " ms");
+
+		assertOrdered(recieved);
+		executor.shutdown();
+	}
+
+	@Test
+	public void testStriped() throws InterruptedException
+	{
+		final List<List<Integer>> recieved = createRecieved();
+		final CountDownLatch done = new CountDownLatch(SENDERS * MESSAGES);
+		int stripes = Math.max(2, Runtime.getRuntime().availableProcessors());
+		StripedExecutor executor = new StripedExecutor("Test Inbound", stripes);
+
+		long time = System.currentTimeMillis();
+		for(int i = 0; i < MESSAGES; i++)
+		{
+			for(int sender = 0; sender < SENDERS; sender++)
+			{
+				final int s = sender;
+				final String message = String.format(PACKET, i);
+				executor.execute("server" + s, () ->
+				{
+					handle(recieved, s, message);
+					done.countDown();
+				});
+			}
+		}
+		assertTrue(done.await(60, TimeUnit.SECONDS));
+		System.out.println(stripes + " stripes: " + SENDERS * MESSAGES + " messages finished in " + (System.currentTimeMillis() - time) + " ms");
+
+		assertOrdered(recieved);
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(1000));
+	}
+}